@@ -0,0 +1,134 @@
+package com.snappfood.server;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.snappfood.model.Order;
+import com.snappfood.model.OrderStatus;
+import com.snappfood.model.Restaurant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON work around a handler: reading a {@code POST /orders} body the way
+ * the route does, and writing order and restaurant lists the way
+ * {@link RequestHandler} streams a response map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+    private static final String ORDER_BODY = "{\"delivery_address\":\"No. 12, Enghelab St, Tehran\",\"vendor_id\":42,"
+            + "\"coupon_id\":7,\"items\":[{\"item_id\":101,\"quantity\":2},{\"item_id\":102,\"quantity\":1},"
+            + "{\"item_id\":205,\"quantity\":3},{\"item_id\":207,\"quantity\":1}]}";
+
+    private final Gson gson = new Gson();
+
+    /**
+     * Response maps holding lists of a given length, and a buffer to write them to.
+     */
+    @State(Scope.Thread)
+    public static class Responses {
+
+        @Param({"10", "100"})
+        public int listSize;
+
+        private Map<String, Object> orders;
+        private Map<String, Object> restaurants;
+        private ByteArrayOutputStream out;
+
+        @Setup
+        public void setUp() {
+            out = new ByteArrayOutputStream(64 * 1024);
+            List<Order> orderList = new ArrayList<>();
+            List<Restaurant> restaurantList = new ArrayList<>();
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (int i = 0; i < listSize; i++) {
+                orderList.add(order(i, now));
+                restaurantList.add(restaurant(i));
+            }
+            orders = new HashMap<>();
+            orders.put("status", 200);
+            orders.put("orders", orderList);
+            restaurants = new HashMap<>();
+            restaurants.put("status", 200);
+            restaurants.put("restaurants", restaurantList);
+        }
+    }
+
+    @Benchmark
+    public Order parseOrderBody() {
+        return RouteTable.parseOrder(gson, ORDER_BODY);
+    }
+
+    @Benchmark
+    public int writeOrderList(Responses responses) throws IOException {
+        return write(responses.orders, responses.out);
+    }
+
+    @Benchmark
+    public int writeRestaurantList(Responses responses) throws IOException {
+        return write(responses.restaurants, responses.out);
+    }
+
+    private int write(Map<String, Object> response, ByteArrayOutputStream out) throws IOException {
+        out.reset();
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        gson.toJson(response, response.getClass(), writer);
+        writer.close();
+        return out.size();
+    }
+
+    private static Order order(int i, Timestamp now) {
+        Order order = new Order();
+        order.setId(1000 + i);
+        order.setCustomerId(17);
+        order.setRestaurantId(42);
+        order.setStatus(OrderStatus.values()[i % OrderStatus.values().length]);
+        order.setDeliveryAddress("No. " + i + ", Enghelab St, Tehran");
+        order.setRawPrice(450_000 + i);
+        order.setTaxFee(20_000);
+        order.setAdditionalFee(10_000);
+        order.setCourierFee(35_000);
+        order.setPayPrice(515_000 + i);
+        Map<Integer, Integer> items = new LinkedHashMap<>();
+        items.put(101, 2);
+        items.put(102, 1);
+        items.put(200 + i, 3);
+        order.setItems(items);
+        order.setCreatedAt(now);
+        order.setUpdatedAt(now);
+        return order;
+    }
+
+    private static Restaurant restaurant(int i) {
+        Restaurant restaurant = new Restaurant(i, "Restaurant " + i, null, "No. " + i + ", Valiasr St, Tehran",
+                "0912" + String.format("%07d", i), "10:00-23:00", "FAST_FOOD", 20_000, 10_000, "0935" + String.format("%07d", i));
+        restaurant.setLogoThumbnailUrl("/images/" + "ab".repeat(32) + "-64.png");
+        return restaurant;
+    }
+}
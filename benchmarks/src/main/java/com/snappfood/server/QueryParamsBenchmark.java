@@ -0,0 +1,40 @@
+package com.snappfood.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RequestHandler#parseQueryParams} on query strings of the shapes the
+ * API sees: none, a few plain filters, and percent-encoded search text.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryParamsBenchmark {
+
+    @Param({
+            "",
+            "status=DELIVERED&page=2&limit=20",
+            "search=%D9%BE%DB%8C%D8%AA%D8%B2%D8%A7+%D9%85%D8%AE%D8%B5%D9%88%D8%B5&vendor=Pizza+House&courier=&customer=0912"
+    })
+    public String query;
+
+    @Benchmark
+    public Map<String, String> parse() {
+        return RequestHandler.parseQueryParams(query);
+    }
+}
@@ -0,0 +1,59 @@
+package com.snappfood.server;
+
+import com.snappfood.server.routing.RouteMatch;
+import com.snappfood.server.routing.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching a request against the real route table, for a static path, paths
+ * with one and two int variables, a method the path does not allow and a path
+ * that matches nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouterBenchmark {
+
+    @Param({
+            "POST /vendors",
+            "GET /vendors/42",
+            "PUT /restaurants/7/item/311",
+            "DELETE /vendors/42",
+            "GET /no/such/path"
+    })
+    public String request;
+
+    private Router<RouteHandler> router;
+    private RouteMatch<RouteHandler> match;
+    private String method;
+    private String path;
+
+    @Setup
+    public void setUp() {
+        router = RouteTable.build();
+        match = new RouteMatch<>();
+        int space = request.indexOf(' ');
+        method = request.substring(0, space);
+        path = request.substring(space + 1);
+    }
+
+    @Benchmark
+    public RouteMatch.Status match() {
+        return router.match(method, path, match);
+    }
+}
@@ -0,0 +1,115 @@
+package com.snappfood.loadgen;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+/**
+ * Sends the requests of a journey and records each one as a step in a
+ * {@link Report}. A response with a status of 400 or above, or one that is not
+ * a JSON object, fails the step.
+ */
+public class ApiClient {
+
+    private final HttpClient http;
+    private final URI baseUri;
+    private final Duration timeout;
+    private final Gson gson = new Gson();
+
+    /**
+     * @param baseUri The server under test.
+     * @param timeout How long to wait for a response before failing the step.
+     */
+    public ApiClient(URI baseUri, Duration timeout) {
+        // HTTP/1.1 explicitly: the server does not speak HTTP/2, and the h2c
+        // upgrade header would only be noise on every request
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        this.baseUri = baseUri;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sends a request, timing it from now.
+     * @see #call(Report, String, String, String, String, Object, long)
+     */
+    public JsonObject call(Report report, String step, String method, String path, String token, Object body)
+            throws StepFailedException {
+        return call(report, step, method, path, token, body, System.nanoTime());
+    }
+
+    /**
+     * Sends a request and records its outcome.
+     * @param report     Where the outcome is recorded.
+     * @param step       The step's name in the report.
+     * @param method     The HTTP method.
+     * @param path       The path, from the root of the server.
+     * @param token      The bearer token to send, or null.
+     * @param body       What to send as JSON, or null for no body.
+     * @param startNanos When the step is counted from. The first step of a journey
+     *                   passes the journey's intended start, so that time spent waiting
+     *                   to be sent counts against the server rather than vanishing.
+     * @return The response body.
+     * @throws StepFailedException if the request failed; the failure is already recorded.
+     */
+    public JsonObject call(Report report, String step, String method, String path, String token, Object body,
+                           long startNanos) throws StepFailedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(timeout)
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(gson.toJson(body)));
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+
+        HttpResponse<String> response;
+        try {
+            response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (HttpTimeoutException e) {
+            throw fail(report, step, "timeout");
+        } catch (IOException e) {
+            throw fail(report, step, e.getClass().getSimpleName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw fail(report, step, "interrupted");
+        }
+        long elapsed = System.nanoTime() - startNanos;
+
+        if (response.statusCode() >= 400) {
+            throw fail(report, step, "HTTP " + response.statusCode());
+        }
+        JsonObject json;
+        try {
+            JsonElement parsed = JsonParser.parseString(response.body());
+            if (!parsed.isJsonObject()) {
+                throw fail(report, step, "response is not a JSON object");
+            }
+            json = parsed.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw fail(report, step, "response is not JSON");
+        }
+        report.success(step, elapsed);
+        return json;
+    }
+
+    private static StepFailedException fail(Report report, String step, String reason) {
+        report.failure(step, reason);
+        return new StepFailedException(step, reason);
+    }
+}
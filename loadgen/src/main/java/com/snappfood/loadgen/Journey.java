@@ -0,0 +1,187 @@
+package com.snappfood.loadgen;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One buyer's visit, scripted from the flows of aut_food.yaml: a new buyer
+ * registers and logs in, searches vendors, opens a vendor's menu, orders an
+ * item and pays for it online. With {@link Staff} configured, the order is
+ * then approved by the admin, prepared by the seller and delivered by a courier.
+ * <p>
+ * Each request is a step in the {@link Report}; the first failed step ends
+ * the journey.
+ */
+public class Journey {
+
+    public static final String REGISTER = "register";
+    public static final String LOGIN = "login";
+    public static final String SEARCH = "search vendors";
+    public static final String MENU = "vendor menu";
+    public static final String ORDER = "submit order";
+    public static final String PAY = "pay online";
+    public static final String APPROVE = "admin approve";
+    public static final String PREPARE = "seller prepare";
+    public static final String READY = "seller ready";
+    public static final String ACCEPT = "courier accept";
+    public static final String DELIVER = "courier deliver";
+
+    private static final List<String> BUYER_STEPS = List.of(REGISTER, LOGIN, SEARCH, MENU, ORDER, PAY);
+    private static final List<String> ALL_STEPS =
+            List.of(REGISTER, LOGIN, SEARCH, MENU, ORDER, PAY, APPROVE, PREPARE, READY, ACCEPT, DELIVER);
+
+    private static final String PASSWORD = "loadtest-password";
+    private static final String ADDRESS = "12 Load Test Street, Tehran";
+
+    private final ApiClient client;
+    private final LoadConfig config;
+    private final Staff staff;
+
+    /**
+     * @param client Sends the requests.
+     * @param config The run's options.
+     * @param staff  Who fulfils orders, or null to end journeys at payment.
+     */
+    public Journey(ApiClient client, LoadConfig config, Staff staff) {
+        this.client = client;
+        this.config = config;
+        this.staff = staff;
+    }
+
+    /**
+     * @return The steps this journey takes, in order.
+     */
+    public List<String> getSteps() {
+        return staff != null ? ALL_STEPS : BUYER_STEPS;
+    }
+
+    /**
+     * Takes one buyer through the journey.
+     * @param index          The journey's number in the run, which makes the buyer's phone
+     *                       number and random choices unique and repeatable.
+     * @param intendedStart  When, by the arrival schedule, the journey should have started.
+     * @param report         Where the steps are recorded.
+     */
+    public void run(long index, long intendedStart, Report report) {
+        Random random = new Random(config.getSeed() * 1_000_003 + index);
+        try {
+            String phone = String.format("9%06d%07d", config.getRunId(), index % 10_000_000);
+            client.call(report, REGISTER, "POST", "/auth/register", null, registration(phone), intendedStart);
+            JsonObject login = client.call(report, LOGIN, "POST", "/auth/login", null,
+                    Map.of("phone", phone, "password", PASSWORD));
+            String token = string(LOGIN, login, "token");
+
+            JsonObject vendors = client.call(report, SEARCH, "POST", "/vendors", token, Map.of("search", config.getSearch()));
+            int vendorId = chooseVendor(vendors, random);
+
+            JsonObject menu = client.call(report, MENU, "GET", "/vendors/" + vendorId, token, null);
+            int itemId = chooseItem(menu, random);
+
+            JsonObject created = client.call(report, ORDER, "POST", "/orders", token, Map.of(
+                    "delivery_address", ADDRESS,
+                    "vendor_id", vendorId,
+                    "items", List.of(Map.of("item_id", itemId, "quantity", 1 + random.nextInt(3)))));
+            if (!created.has("order") || !created.getAsJsonObject("order").has("id")) {
+                throw new StepFailedException(ORDER, "no order id in the response");
+            }
+            int orderId = created.getAsJsonObject("order").get("id").getAsInt();
+
+            client.call(report, PAY, "POST", "/payment/online", token, Map.of("order_id", orderId, "method", "online"));
+
+            if (staff != null) {
+                fulfil(report, orderId);
+            }
+            report.success(Report.JOURNEY, System.nanoTime() - intendedStart);
+        } catch (StepFailedException e) {
+            report.failure(Report.JOURNEY, e.getMessage());
+        }
+    }
+
+    private void fulfil(Report report, int orderId) throws StepFailedException {
+        client.call(report, APPROVE, "PUT", "/admin/pending-orders", staff.getAdminToken(),
+                List.of(Map.of("order_id", orderId, "status", "approved")));
+        String sellerPath = "/restaurants/" + staff.getRestaurantId() + "/orders/" + orderId;
+        client.call(report, PREPARE, "PATCH", sellerPath, staff.getSellerToken(), Map.of("status", "preparing"));
+        client.call(report, READY, "PATCH", sellerPath, staff.getSellerToken(), Map.of("status", "ready_for_pickup"));
+
+        String courier;
+        try {
+            courier = staff.borrowCourier(config.getTimeoutSeconds() * 1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StepFailedException(ACCEPT, "interrupted");
+        }
+        if (courier == null) {
+            throw new StepFailedException(ACCEPT, "no free courier (too few --couriers for the rate)");
+        }
+        try {
+            client.call(report, ACCEPT, "PATCH", "/deliveries/" + orderId, courier, Map.of("status", "accepted"));
+            client.call(report, DELIVER, "PATCH", "/deliveries/" + orderId, courier, Map.of("status", "delivered"));
+        } finally {
+            staff.returnCourier(courier);
+        }
+    }
+
+    private static Map<String, Object> registration(String phone) {
+        return Map.of(
+                "full_name", "Load Test " + phone,
+                "phone", phone,
+                "password", PASSWORD,
+                "role", "customer",
+                "address", ADDRESS,
+                "bank_info", Map.of("bank_name", "Load Test Bank", "account_number", phone));
+    }
+
+    private int chooseVendor(JsonObject vendors, Random random) throws StepFailedException {
+        if (staff != null) {
+            return staff.getRestaurantId();
+        }
+        if (config.getVendorId() != null) {
+            return config.getVendorId();
+        }
+        JsonArray restaurants = vendors.getAsJsonArray("restaurants");
+        if (restaurants == null || restaurants.isEmpty()) {
+            throw new StepFailedException(MENU, "the search found no vendors");
+        }
+        return restaurants.get(random.nextInt(restaurants.size())).getAsJsonObject().get("id").getAsInt();
+    }
+
+    /**
+     * Picks an item in stock from any of the menu's titled sections.
+     */
+    private static int chooseItem(JsonObject menu, Random random) throws StepFailedException {
+        List<Integer> inStock = new ArrayList<>();
+        JsonArray titles = menu.getAsJsonArray("menu_titles");
+        if (titles != null) {
+            for (JsonElement title : titles) {
+                JsonElement items = menu.get(title.getAsString());
+                if (items == null || !items.isJsonArray()) {
+                    continue;
+                }
+                for (JsonElement item : items.getAsJsonArray()) {
+                    JsonObject food = item.getAsJsonObject();
+                    if (!food.has("supply") || food.get("supply").getAsInt() > 0) {
+                        inStock.add(food.get("id").getAsInt());
+                    }
+                }
+            }
+        }
+        if (inStock.isEmpty()) {
+            throw new StepFailedException(ORDER, "the vendor has no items in stock");
+        }
+        return inStock.get(random.nextInt(inStock.size()));
+    }
+
+    private static String string(String step, JsonObject response, String key) throws StepFailedException {
+        if (!response.has(key) || response.get(key).isJsonNull()) {
+            throw new StepFailedException(step, "no " + key + " in the response");
+        }
+        return response.get(key).getAsString();
+    }
+}
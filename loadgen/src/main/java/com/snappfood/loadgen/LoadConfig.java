@@ -0,0 +1,269 @@
+package com.snappfood.loadgen;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options for a {@link LoadGenerator} run, parsed from command-line flags.
+ * <p>
+ * Supported flags:
+ * <ul>
+ *   <li>{@code --base-url=url} - the server under test (default http://localhost:8080)</li>
+ *   <li>{@code --rate=N} - journeys started per second, whatever the server's response times (default 10)</li>
+ *   <li>{@code --arrivals=poisson|uniform} - random or evenly spaced arrivals (default poisson)</li>
+ *   <li>{@code --duration=N} - seconds to start journeys for (default 60)</li>
+ *   <li>{@code --warmup=N} - seconds at the start whose journeys are run but not reported (default 10)</li>
+ *   <li>{@code --drain=N} - seconds to wait for journeys still running at the end (default 30)</li>
+ *   <li>{@code --timeout=N} - seconds before a single request is given up on (default 10)</li>
+ *   <li>{@code --max-in-flight=N} - journeys that may run at once before arrivals are dropped,
+ *       to protect the generator itself (default 10000)</li>
+ *   <li>{@code --seed=N} - seeds the arrival times and choices, so runs can be repeated (default 1)</li>
+ *   <li>{@code --run-id=N} - makes the phone numbers of registered buyers unique to the run
+ *       (default derived from the clock)</li>
+ *   <li>{@code --search=text} - the search term buyers send to POST /vendors (default empty)</li>
+ *   <li>{@code --vendor-id=N} - the vendor buyers order from, instead of one from the search results</li>
+ *   <li>{@code --admin=phone:password}, {@code --seller=phone:password},
+ *       {@code --couriers=phone:password,...} - accounts for taking each order through admin
+ *       approval, preparation and delivery; given together or not at all</li>
+ * </ul>
+ */
+public class LoadConfig {
+
+    /**
+     * How journey start times are spaced.
+     */
+    public enum Arrivals {
+        /** Exponentially distributed gaps, as independent users arrive. */
+        POISSON,
+        /** Equal gaps. */
+        UNIFORM
+    }
+
+    /**
+     * A phone number and password to log in with.
+     */
+    public record Account(String phone, String password) {
+    }
+
+    private URI baseUri = URI.create("http://localhost:8080");
+    private double rate = 10;
+    private Arrivals arrivals = Arrivals.POISSON;
+    private int durationSeconds = 60;
+    private int warmupSeconds = 10;
+    private int drainSeconds = 30;
+    private int timeoutSeconds = 10;
+    private int maxInFlight = 10000;
+    private long seed = 1;
+    private long runId = System.currentTimeMillis() / 1000 % 1_000_000;
+    private String search = "";
+    private Integer vendorId;
+    private Account admin;
+    private Account seller;
+    private final List<Account> couriers = new ArrayList<>();
+
+    /**
+     * Parses the given command-line flags.
+     *
+     * @param args The arguments passed to main.
+     * @return The parsed configuration.
+     * @throws IllegalArgumentException if a flag is unknown or has an invalid value.
+     */
+    public static LoadConfig fromArgs(String[] args) {
+        LoadConfig config = new LoadConfig();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "base-url":
+                    config.baseUri = URI.create(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+                    break;
+                case "rate":
+                    config.rate = parseRate(value);
+                    break;
+                case "arrivals":
+                    config.arrivals = parseArrivals(value);
+                    break;
+                case "duration":
+                    config.durationSeconds = parsePositive(name, value);
+                    break;
+                case "warmup":
+                    config.warmupSeconds = parseNonNegative(name, value);
+                    break;
+                case "drain":
+                    config.drainSeconds = parseNonNegative(name, value);
+                    break;
+                case "timeout":
+                    config.timeoutSeconds = parsePositive(name, value);
+                    break;
+                case "max-in-flight":
+                    config.maxInFlight = parsePositive(name, value);
+                    break;
+                case "seed":
+                    config.seed = parseLong(name, value);
+                    break;
+                case "run-id":
+                    config.runId = parseLong(name, value) % 1_000_000;
+                    break;
+                case "search":
+                    config.search = value;
+                    break;
+                case "vendor-id":
+                    config.vendorId = parsePositive(name, value);
+                    break;
+                case "admin":
+                    config.admin = parseAccount(name, value);
+                    break;
+                case "seller":
+                    config.seller = parseAccount(name, value);
+                    break;
+                case "couriers":
+                    for (String account : value.split(",")) {
+                        config.couriers.add(parseAccount(name, account));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        if (config.warmupSeconds >= config.durationSeconds) {
+            throw new IllegalArgumentException("--warmup must be shorter than --duration");
+        }
+        boolean anyFulfilment = config.admin != null || config.seller != null || !config.couriers.isEmpty();
+        boolean allFulfilment = config.admin != null && config.seller != null && !config.couriers.isEmpty();
+        if (anyFulfilment && !allFulfilment) {
+            throw new IllegalArgumentException("--admin, --seller and --couriers must be given together");
+        }
+        return config;
+    }
+
+    private static double parseRate(String value) {
+        try {
+            double parsed = Double.parseDouble(value);
+            if (parsed > 0 && !Double.isInfinite(parsed)) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--rate must be a positive number but got: " + value);
+    }
+
+    private static Arrivals parseArrivals(String value) {
+        switch (value.toLowerCase()) {
+            case "poisson":
+                return Arrivals.POISSON;
+            case "uniform":
+                return Arrivals.UNIFORM;
+            default:
+                throw new IllegalArgumentException("--arrivals must be 'poisson' or 'uniform' but got: " + value);
+        }
+    }
+
+    private static Account parseAccount(String name, String value) {
+        int colon = value.indexOf(':');
+        if (colon <= 0 || colon == value.length() - 1) {
+            throw new IllegalArgumentException("--" + name + " must be phone:password but got: " + value);
+        }
+        return new Account(value.substring(0, colon), value.substring(colon + 1));
+    }
+
+    private static int parsePositive(String name, String value) {
+        int parsed = parseNonNegative(name, value);
+        if (parsed == 0) {
+            throw new IllegalArgumentException("--" + name + " must be a positive integer but got: " + value);
+        }
+        return parsed;
+    }
+
+    private static int parseNonNegative(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--" + name + " must be a non-negative integer but got: " + value);
+    }
+
+    private static long parseLong(String name, String value) {
+        try {
+            return Math.abs(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be an integer but got: " + value);
+        }
+    }
+
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public Arrivals getArrivals() {
+        return arrivals;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDrainSeconds() {
+        return drainSeconds;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getRunId() {
+        return runId;
+    }
+
+    public String getSearch() {
+        return search;
+    }
+
+    public Integer getVendorId() {
+        return vendorId;
+    }
+
+    /**
+     * @return Whether orders are taken past payment, through approval and delivery.
+     */
+    public boolean isFulfilmentEnabled() {
+        return admin != null;
+    }
+
+    public Account getAdmin() {
+        return admin;
+    }
+
+    public Account getSeller() {
+        return seller;
+    }
+
+    public List<Account> getCouriers() {
+        return couriers;
+    }
+}
@@ -0,0 +1,115 @@
+package com.snappfood.loadgen;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs {@link Journey journeys} against a server at a fixed arrival rate and
+ * prints a {@link Report}.
+ * <p>
+ * The load is an open model: journeys start on a schedule set in advance,
+ * each on its own virtual thread, whether or not earlier ones have finished.
+ * A slow server therefore faces a growing number of concurrent users, as it
+ * would in production, instead of the generator politely waiting for it.
+ * Latency is measured from when a journey was due to start rather than when
+ * it actually did, so that any delay in sending it (coordinated omission)
+ * shows up in the results instead of being hidden by them.
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config;
+        try {
+            config = LoadConfig.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        ApiClient client = new ApiClient(config.getBaseUri(), Duration.ofSeconds(config.getTimeoutSeconds()));
+        Staff staff = null;
+        if (config.isFulfilmentEnabled()) {
+            try {
+                staff = Staff.logIn(client, config);
+            } catch (StepFailedException e) {
+                System.err.println("Could not set up the staff accounts: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        }
+        Journey journey = new Journey(client, config, staff);
+
+        System.out.printf("Running %.1f journeys/s (%s arrivals) against %s for %d s, the first %d s as warmup%n",
+                config.getRate(), config.getArrivals().name().toLowerCase(), config.getBaseUri(),
+                config.getDurationSeconds(), config.getWarmupSeconds());
+
+        Report warmup = new Report(journey.getSteps());
+        Report measured = new Report(journey.getSteps());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicLong measuredInFlight = new AtomicLong();
+        Random arrivals = new Random(config.getSeed());
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / config.getRate();
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        long end = start + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        long index = 0;
+        double next = start;
+        while ((long) next < end) {
+            long intendedStart = (long) next;
+            long now;
+            while ((now = System.nanoTime()) < intendedStart) {
+                LockSupport.parkNanos(intendedStart - now);
+            }
+
+            boolean isMeasured = intendedStart >= measureFrom;
+            Report report = isMeasured ? measured : warmup;
+            if (inFlight.get() >= config.getMaxInFlight()) {
+                report.dropped();
+            } else {
+                long journeyIndex = index;
+                report.started();
+                inFlight.incrementAndGet();
+                if (isMeasured) {
+                    measuredInFlight.incrementAndGet();
+                }
+                executor.execute(() -> {
+                    try {
+                        journey.run(journeyIndex, intendedStart, report);
+                    } finally {
+                        inFlight.decrementAndGet();
+                        if (isMeasured) {
+                            measuredInFlight.decrementAndGet();
+                        }
+                    }
+                });
+            }
+            index++;
+            next += config.getArrivals() == LoadConfig.Arrivals.POISSON
+                    ? -Math.log(1 - arrivals.nextDouble()) * meanGapNanos
+                    : meanGapNanos;
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(config.getDrainSeconds(), TimeUnit.SECONDS)) {
+            System.out.printf("%d journeys still running after %d s of draining; reporting without them%n",
+                    inFlight.get(), config.getDrainSeconds());
+        }
+        double seconds = (end - measureFrom) / 1e9;
+        System.out.println();
+        measured.print(System.out, seconds, config.getRate(), measuredInFlight.get());
+        executor.shutdownNow();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,137 @@
+package com.snappfood.loadgen;
+
+import com.snappfood.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the outcome of every step of every journey in a run, and prints
+ * them as one table: per step, how many succeeded and failed, the rate of
+ * successes, and latency percentiles of the successes. Failed steps are
+ * counted by reason, so that a wall of 429s is not mistaken for a wall of 500s.
+ */
+public class Report {
+
+    /** The pseudo-step timing a whole journey, from its intended start to its last response. */
+    public static final String JOURNEY = "journey";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, StepStats> steps;
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param stepNames The steps, in the order they are printed.
+     */
+    public Report(List<String> stepNames) {
+        Map<String, StepStats> byName = new LinkedHashMap<>();
+        for (String name : stepNames) {
+            byName.put(name, new StepStats());
+        }
+        byName.put(JOURNEY, new StepStats());
+        this.steps = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Records that a journey was started.
+     */
+    public void started() {
+        started.incrementAndGet();
+    }
+
+    /**
+     * Records that a journey was due but not started, because too many were
+     * already running.
+     */
+    public void dropped() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Records a step that succeeded.
+     * @param step  The step's name.
+     * @param nanos How long it took.
+     */
+    public void success(String step, long nanos) {
+        stats(step).latency.recordNanos(nanos);
+    }
+
+    /**
+     * Records a step that failed.
+     * @param step   The step's name.
+     * @param reason Why, such as "HTTP 503"; failures are grouped by it.
+     */
+    public void failure(String step, String reason) {
+        StepStats stats = stats(step);
+        stats.failures.increment();
+        stats.reasons.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    private StepStats stats(String step) {
+        StepStats stats = steps.get(step);
+        if (stats == null) {
+            throw new IllegalArgumentException("Unknown step: " + step);
+        }
+        return stats;
+    }
+
+    /**
+     * Prints the report.
+     * @param out          Where to.
+     * @param seconds      How long the measured part of the run lasted.
+     * @param targetRate   The arrival rate asked for, in journeys per second.
+     * @param unfinished   How many measured journeys were still running when the run ended.
+     */
+    public void print(PrintStream out, double seconds, double targetRate, long unfinished) {
+        StepStats journeys = steps.get(JOURNEY);
+        long completed = journeys.latency.snapshot().getCount();
+        out.printf(Locale.ROOT, "journeys: %d started, %d dropped, %d completed, %d failed, %d unfinished%n",
+                started.get(), dropped.get(), completed, journeys.failures.sum(), unfinished);
+        out.printf(Locale.ROOT, "arrivals: %.1f/s target, %.1f/s started over %.1f s%n%n",
+                targetRate, started.get() / seconds, seconds);
+
+        out.printf(Locale.ROOT, "%-16s %8s %8s %7s %9s %9s %9s %9s %9s%n",
+                "step", "ok", "errors", "err%", "ok/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms");
+        Map<String, Map<String, Long>> reasons = new LinkedHashMap<>();
+        for (Map.Entry<String, StepStats> entry : steps.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().latency.snapshot();
+            long ok = snapshot.getCount();
+            long errors = entry.getValue().failures.sum();
+            long total = ok + errors;
+            out.printf(Locale.ROOT, "%-16s %8d %8d %6.2f%% %9.1f", entry.getKey(), ok, errors,
+                    total == 0 ? 0.0 : 100.0 * errors / total, ok / seconds);
+            for (double quantile : QUANTILES) {
+                out.printf(Locale.ROOT, " %9.1f", snapshot.getValueAtQuantile(quantile) * 1000);
+            }
+            out.println();
+            if (!entry.getValue().reasons.isEmpty()) {
+                Map<String, Long> counts = new TreeMap<>();
+                entry.getValue().reasons.forEach((reason, count) -> counts.put(reason, count.sum()));
+                reasons.put(entry.getKey(), counts);
+            }
+        }
+
+        if (!reasons.isEmpty()) {
+            out.println();
+            out.println("errors:");
+            reasons.forEach((step, counts) -> counts.forEach((reason, count) ->
+                    out.printf(Locale.ROOT, "  %-16s %8d  %s%n", step, count, reason)));
+        }
+    }
+
+    private static final class StepStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder failures = new LongAdder();
+        final Map<String, LongAdder> reasons = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,108 @@
+package com.snappfood.loadgen;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The admin, seller and couriers who take an order past payment. They are
+ * logged in once before the run, and their requests are reported as steps of
+ * the buyer's journey.
+ * <p>
+ * A courier can carry one order at a time, so couriers are lent to journeys
+ * from a queue; a journey that finds none free within the request timeout
+ * fails its accept step without sending it.
+ */
+public class Staff {
+
+    private static final String SETUP = "setup";
+
+    private final String adminToken;
+    private final String sellerToken;
+    private final int restaurantId;
+    private final BlockingQueue<String> courierTokens;
+
+    private Staff(String adminToken, String sellerToken, int restaurantId, BlockingQueue<String> courierTokens) {
+        this.adminToken = adminToken;
+        this.sellerToken = sellerToken;
+        this.restaurantId = restaurantId;
+        this.courierTokens = courierTokens;
+    }
+
+    /**
+     * Logs in the accounts given in the configuration and finds the seller's
+     * restaurant.
+     * @param client Where to log in.
+     * @param config The accounts, and optionally which of the seller's restaurants to use.
+     * @return The logged-in staff.
+     * @throws StepFailedException if a login fails or the seller has no approved restaurant.
+     */
+    public static Staff logIn(ApiClient client, LoadConfig config) throws StepFailedException {
+        Report setup = new Report(List.of(SETUP));
+        String adminToken = logIn(client, setup, config.getAdmin());
+        String sellerToken = logIn(client, setup, config.getSeller());
+        BlockingQueue<String> courierTokens = new LinkedBlockingQueue<>();
+        for (LoadConfig.Account courier : config.getCouriers()) {
+            courierTokens.add(logIn(client, setup, courier));
+        }
+
+        int restaurantId;
+        if (config.getVendorId() != null) {
+            restaurantId = config.getVendorId();
+        } else {
+            JsonObject mine = client.call(setup, SETUP, "GET", "/restaurants/mine", sellerToken, null);
+            JsonArray approved = mine.getAsJsonArray("approved_restaurants");
+            if (approved == null || approved.isEmpty()) {
+                throw new StepFailedException(SETUP, "the seller has no approved restaurant");
+            }
+            restaurantId = approved.get(0).getAsJsonObject().get("id").getAsInt();
+        }
+        return new Staff(adminToken, sellerToken, restaurantId, courierTokens);
+    }
+
+    private static String logIn(ApiClient client, Report setup, LoadConfig.Account account) throws StepFailedException {
+        JsonObject response = client.call(setup, SETUP, "POST", "/auth/login", null,
+                Map.of("phone", account.phone(), "password", account.password()));
+        if (!response.has("token")) {
+            throw new StepFailedException(SETUP, "no token in the login response for " + account.phone());
+        }
+        return response.get("token").getAsString();
+    }
+
+    /**
+     * @return The restaurant buyers order from, which the seller runs.
+     */
+    public int getRestaurantId() {
+        return restaurantId;
+    }
+
+    public String getAdminToken() {
+        return adminToken;
+    }
+
+    public String getSellerToken() {
+        return sellerToken;
+    }
+
+    /**
+     * Lends out a free courier.
+     * @param timeoutMillis How long to wait for one.
+     * @return The courier's token, or null if none became free in time.
+     */
+    public String borrowCourier(long timeoutMillis) throws InterruptedException {
+        return courierTokens.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a courier lent by {@link #borrowCourier}.
+     * @param token The courier's token.
+     */
+    public void returnCourier(String token) {
+        courierTokens.add(token);
+    }
+}
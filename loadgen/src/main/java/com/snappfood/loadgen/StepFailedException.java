@@ -0,0 +1,28 @@
+package com.snappfood.loadgen;
+
+/**
+ * Thrown when a step of a journey fails, ending the journey. A failed request
+ * has already been recorded against its step by the time this is thrown; a
+ * journey that cannot go on for want of something in an earlier response is
+ * recorded only as a failed journey.
+ */
+public class StepFailedException extends Exception {
+
+    private final String step;
+
+    /**
+     * @param step   The step that failed.
+     * @param reason Why.
+     */
+    public StepFailedException(String step, String reason) {
+        super(step + ": " + reason);
+        this.step = step;
+    }
+
+    /**
+     * @return The step that failed.
+     */
+    public String getStep() {
+        return step;
+    }
+}
@@ -17,10 +17,17 @@ import java.util.Map;
 
 public class AdminController {
 
-    private final UserDAO userDAO = new UserDAO();
-    private final OrderDAO orderDAO = new OrderDAO();
-    private final RestaurantDAO restaurantDAO = new RestaurantDAO();
-    private final WalletDAO walletDAO = new WalletDAO();
+    private final UserDAO userDAO;
+    private final OrderDAO orderDAO;
+    private final RestaurantDAO restaurantDAO;
+    private final WalletDAO walletDAO;
+
+    public AdminController(UserDAO userDAO, OrderDAO orderDAO, RestaurantDAO restaurantDAO, WalletDAO walletDAO) {
+        this.userDAO = userDAO;
+        this.orderDAO = orderDAO;
+        this.restaurantDAO = restaurantDAO;
+        this.walletDAO = walletDAO;
+    }
 
     public List<User> getPendingSellersAndCouriers() {
         try {
@@ -17,9 +17,15 @@ import java.util.Map;
  */
 public class CourierController {
 
-    private final OrderController orderController = new OrderController();
-    private final OrderDAO orderDAO = new OrderDAO();
-    private final UserDAO userDAO = new UserDAO();
+    private final OrderController orderController;
+    private final OrderDAO orderDAO;
+    private final UserDAO userDAO;
+
+    public CourierController(OrderController orderController, OrderDAO orderDAO, UserDAO userDAO) {
+        this.orderController = orderController;
+        this.orderDAO = orderDAO;
+        this.userDAO = userDAO;
+    }
 
     /**
      * Handles fetching available delivery jobs for a courier.
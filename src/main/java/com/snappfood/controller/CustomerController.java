@@ -18,10 +18,17 @@ import java.util.Map;
  */
 public class CustomerController {
 
-    private final RestaurantDAO restaurantDAO = new RestaurantDAO();
-    private final UserDAO userDAO = new UserDAO();
-    private final OrderDAO orderDAO = new OrderDAO();
-    private final RatingDAO ratingDAO = new RatingDAO();
+    private final RestaurantDAO restaurantDAO;
+    private final UserDAO userDAO;
+    private final OrderDAO orderDAO;
+    private final RatingDAO ratingDAO;
+
+    public CustomerController(RestaurantDAO restaurantDAO, UserDAO userDAO, OrderDAO orderDAO, RatingDAO ratingDAO) {
+        this.restaurantDAO = restaurantDAO;
+        this.userDAO = userDAO;
+        this.orderDAO = orderDAO;
+        this.ratingDAO = ratingDAO;
+    }
 
     /**
      * Handles fetching the detailed view of a single restaurant, including its menus and food items.
@@ -50,7 +57,7 @@ public class CustomerController {
         for (Menu menu : menus) {
             menuTitles.add(menu.getTitle());
             List<Food> foodItems = restaurantDAO.getFoodItemsForMenu(menu.getId());
-            response.put(menu.getTitle(), foodItems);
+            response.put(menu.getTitle(), GenerallController.withImageThumbnails(foodItems));
         }
         response.put("menu_titles", menuTitles);
 
@@ -135,7 +142,7 @@ public class CustomerController {
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
-        response.put("restaurants", favoriteRestaurants);
+        response.put("restaurants", GenerallController.withLogoThumbnails(favoriteRestaurants));
         return response;
     }
 
@@ -259,7 +266,7 @@ public class CustomerController {
         List<Restaurant> restaurants = restaurantDAO.findActiveRestaurants(filters);
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
-        response.put("restaurants", restaurants);
+        response.put("restaurants", GenerallController.withLogoThumbnails(restaurants));
         return response;
     }
 
@@ -290,7 +297,7 @@ public class CustomerController {
         List<Food> foodItems = restaurantDAO.findActiveFoodItems(filters);
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
-        response.put("items", foodItems);
+        response.put("items", GenerallController.withImageThumbnails(foodItems));
         return response;
     }
 
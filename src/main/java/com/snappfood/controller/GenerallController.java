@@ -1,26 +1,79 @@
 package com.snappfood.controller;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import com.snappfood.exception.InvalidInputException;
+import com.snappfood.model.Food;
+import com.snappfood.model.Restaurant;
+import com.snappfood.storage.ImageInfo;
+import com.snappfood.storage.ImageRef;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ImageValidator;
+import com.snappfood.storage.ThumbnailGenerator;
+
+import java.io.IOException;
 import java.util.Base64;
+import java.util.Collection;
 
 public class GenerallController {
 
+    /**
+     * Checks that the bytes are an image of a supported type, reading only its header.
+     * Size limits are not applied; see {@link ImageValidator} for those.
+     */
     public static boolean isValidImage(byte[] imageBytes) {
         if (imageBytes == null || imageBytes.length == 0) {
             return false;
         }
-        try {
-            ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-            BufferedImage image = ImageIO.read(bis);
-            if (image == null) {
-                return false;
+        return ImageInfo.read(imageBytes) != null;
+    }
+
+    /**
+     * Checks that an uploaded request body is an acceptable image and writes it to the store.
+     *
+     * @param imageValidator The checks to apply.
+     * @param imageStore     The store to write to.
+     * @param imageBytes     The raw request body.
+     * @return The id of the stored image.
+     * @throws InvalidInputException if the body is not an acceptable image.
+     * @throws IOException if the image cannot be written.
+     */
+    public static String saveImage(ImageValidator imageValidator, ImageStore imageStore, byte[] imageBytes)
+            throws InvalidInputException, IOException {
+        ImageInfo info = imageValidator.checkHeader(imageBytes);
+        return imageStore.save(imageBytes, info.getType());
+    }
+
+    /**
+     * Prepares restaurants for a list response: each uploaded logo is replaced
+     * by its thumbnail, which the full logo is one request away from.
+     *
+     * @param restaurants The restaurants to list.
+     * @return The same restaurants.
+     */
+    public static <T extends Collection<Restaurant>> T withLogoThumbnails(T restaurants) {
+        for (Restaurant restaurant : restaurants) {
+            if (restaurant.getLogoUrl() != null) {
+                restaurant.setLogoThumbnailUrl(ImageRef.thumbnailUrl(restaurant.getLogoUrl(), ThumbnailGenerator.SMALL));
+                restaurant.setLogoUrl(null);
+            }
+        }
+        return restaurants;
+    }
+
+    /**
+     * Prepares food items for a list response: each uploaded image is replaced
+     * by its thumbnail, which the full image is one request away from.
+     *
+     * @param foodItems The food items to list.
+     * @return The same food items.
+     */
+    public static <T extends Collection<Food>> T withImageThumbnails(T foodItems) {
+        for (Food food : foodItems) {
+            if (food.getImageUrl() != null) {
+                food.setImageThumbnailUrl(ImageRef.thumbnailUrl(food.getImageUrl(), ThumbnailGenerator.MEDIUM));
+                food.setImageUrl(null);
             }
-            return true;
-        } catch (Exception e) {
-            return false;
         }
+        return foodItems;
     }
 
     /**
@@ -18,13 +18,20 @@ import java.util.Map;
  */
 public class OrderController {
 
-    private final OrderDAO orderDAO = new OrderDAO();
-    private final RestaurantDAO restaurantDAO = new RestaurantDAO();
-    private final UserDAO userDAO = new UserDAO();
-    private final WalletDAO walletDAO = new WalletDAO();
+    private final OrderDAO orderDAO;
+    private final RestaurantDAO restaurantDAO;
+    private final UserDAO userDAO;
+    private final WalletDAO walletDAO;
 
     private static final int COURIER_FEE = 50000; //Toman
 
+    public OrderController(OrderDAO orderDAO, RestaurantDAO restaurantDAO, UserDAO userDAO, WalletDAO walletDAO) {
+        this.orderDAO = orderDAO;
+        this.restaurantDAO = restaurantDAO;
+        this.userDAO = userDAO;
+        this.walletDAO = walletDAO;
+    }
+
     /**
      * Handles the creation of a new order.
      * Corresponds to POST /orders
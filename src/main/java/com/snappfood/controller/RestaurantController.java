@@ -1,82 +1,80 @@
 package com.snappfood.controller;
 
+import com.snappfood.dao.CatalogVersions;
 import com.snappfood.dao.OrderDAO;
 import com.snappfood.dao.RestaurantDAO;
 import com.snappfood.dao.UserDAO;
 import com.snappfood.exception.*;
 import com.snappfood.model.*;
+import com.snappfood.ratelimit.RateLimitPolicy;
+import com.snappfood.ratelimit.RateLimiterRegistry;
+import com.snappfood.storage.ImageInfo;
+import com.snappfood.storage.ImageRef;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ImageValidator;
+import com.snappfood.storage.ThumbnailGenerator;
 
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles the business logic for restaurant and food-related operations.
  */
 public class RestaurantController {
 
-    private final RestaurantDAO restaurantDAO = new RestaurantDAO();
-    private final UserDAO userDAO = new UserDAO();
-    private final OrderDAO orderDAO = new OrderDAO();
-    private final OrderController orderController = new OrderController();
-
-
-    private static final int MAX_RESTAURANT_CREATION_REQUESTS = 3;
-    private static final long CREATION_RATE_LIMIT_WINDOW_MS = 3600000; // 1 hour
-    private final Map<Integer, RequestTracker> restaurantCreationTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_FETCH_RESTAURANTS_REQUESTS = 20;
-    private static final long FETCH_RATE_LIMIT_WINDOW_MS = 60000; // 1 minute
-    private final Map<Integer, RequestTracker> fetchRestaurantsTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_ADD_FOOD_REQUESTS = 30;
-    private static final long ADD_FOOD_RATE_LIMIT_WINDOW_MS = 3600000; // 1 hour
-    private final Map<Integer, RequestTracker> addFoodItemTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_UPDATE_RESTAURANT_REQUESTS = 10;
-    private static final long UPDATE_RESTAURANT_RATE_LIMIT_WINDOW_MS = 60000; // 1 minute
-    private final Map<Integer, RequestTracker> updateRestaurantTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_UPDATE_FOOD_REQUESTS = 20;
-    private static final long UPDATE_FOOD_RATE_LIMIT_WINDOW_MS = 60000; // 1 minute
-    private final Map<Integer, RequestTracker> updateFoodItemTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_DELETE_FOOD_REQUESTS = 15;
-    private static final long DELETE_FOOD_RATE_LIMIT_WINDOW_MS = 3600000; // 1 hour
-    private final Map<Integer, RequestTracker> deleteFoodItemTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_CREATE_MENU_REQUESTS = 10;
-    private static final long CREATE_MENU_RATE_LIMIT_WINDOW_MS = 3600000; // 1 hour
-    private final Map<Integer, RequestTracker> createMenuTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_DELETE_MENU_REQUESTS = 10;
-    private static final long DELETE_MENU_RATE_LIMIT_WINDOW_MS = 3600000; // 1 hour
-    private final Map<Integer, RequestTracker> deleteMenuTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_ADD_ITEM_TO_MENU_REQUESTS = 50;
-    private static final long ADD_ITEM_TO_MENU_RATE_LIMIT_WINDOW_MS = 3600000; // 1 hour
-    private final Map<Integer, RequestTracker> addItemToMenuTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_REMOVE_ITEM_FROM_MENU_REQUESTS = 50;
-    private static final long REMOVE_ITEM_FROM_MENU_RATE_LIMIT_WINDOW_MS = 3600000; // 1 hour
-    private final Map<Integer, RequestTracker> removeItemFromMenuTrackers = new ConcurrentHashMap<>();
-
-    private static final int MAX_GET_MENU_REQUESTS = 30;
-    private static final long GET_MENU_RATE_LIMIT_WINDOW_MS = 60000; // 1 minute
-    private final Map<String, RequestTracker> getMenuTrackers = new ConcurrentHashMap<>();
-
+    private final RestaurantDAO restaurantDAO;
+    private final UserDAO userDAO;
+    private final OrderDAO orderDAO;
+    private final OrderController orderController;
+    private final CatalogVersions catalogVersions;
+    private final ImageStore imageStore;
+    private final ImageValidator imageValidator;
+    private final ThumbnailGenerator thumbnailGenerator;
+    private final RateLimiterRegistry rateLimits;
+
+
+    // per seller
+    private static final RateLimitPolicy CREATE_RESTAURANT_LIMIT = new RateLimitPolicy("POST /restaurants", 3, Duration.ofHours(1),
+            "You have made too many restaurant creation requests. Please try again later.");
+    private static final RateLimitPolicy FETCH_RESTAURANTS_LIMIT = new RateLimitPolicy("GET /restaurants/mine", 20, Duration.ofMinutes(1),
+            "Too many requests. Please try again later.");
+    private static final RateLimitPolicy UPDATE_RESTAURANT_LIMIT = new RateLimitPolicy("PUT /restaurants/{id:int}", 10, Duration.ofMinutes(1),
+            "You are updating this restaurant too frequently. Please try again later.");
+    private static final RateLimitPolicy DELETE_FOOD_LIMIT = new RateLimitPolicy("DELETE /restaurants/{id:int}/item/{itemId:int}", 15, Duration.ofHours(1),
+            "You are deleting food items too frequently. Please try again later.");
+    private static final RateLimitPolicy CREATE_MENU_LIMIT = new RateLimitPolicy("POST /restaurants/{id:int}/menu", 10, Duration.ofHours(1),
+            "You are creating menus too frequently. Please try again later.");
+    private static final RateLimitPolicy DELETE_MENU_LIMIT = new RateLimitPolicy("DELETE /restaurants/{id:int}/menu/{title}", 10, Duration.ofHours(1),
+            "You are deleting menus too frequently. Please try again later.");
+    private static final RateLimitPolicy ADD_ITEM_TO_MENU_LIMIT = new RateLimitPolicy("PUT /restaurants/{id:int}/menu/{title}", 50, Duration.ofHours(1),
+            "You are adding items to menus too frequently. Please try again later.");
+    private static final RateLimitPolicy REMOVE_ITEM_FROM_MENU_LIMIT = new RateLimitPolicy("DELETE /restaurants/{id:int}/menu/{title}/{itemId:int}", 50, Duration.ofHours(1),
+            "You are removing items from menus too frequently. Please try again later.");
+
+
+    public RestaurantController(RestaurantDAO restaurantDAO, UserDAO userDAO, OrderDAO orderDAO, OrderController orderController,
+                                CatalogVersions catalogVersions, ImageStore imageStore, ImageValidator imageValidator,
+                                ThumbnailGenerator thumbnailGenerator, RateLimiterRegistry rateLimits) {
+        this.restaurantDAO = restaurantDAO;
+        this.userDAO = userDAO;
+        this.orderDAO = orderDAO;
+        this.orderController = orderController;
+        this.catalogVersions = catalogVersions;
+        this.imageStore = imageStore;
+        this.imageValidator = imageValidator;
+        this.thumbnailGenerator = thumbnailGenerator;
+        this.rateLimits = rateLimits;
+    }
 
     public Map<String, Object> handleCreateRestaurant(Restaurant restaurant, Integer sellerId) throws Exception {
         if (sellerId == null) {
             throw new UnauthorizedException("You must be logged in to create a restaurant.");
         }
-        RequestTracker tracker = restaurantCreationTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_RESTAURANT_CREATION_REQUESTS, CREATION_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("You have made too many restaurant creation requests. Please try again later.");
-        }
+        rateLimits.acquire(CREATE_RESTAURANT_LIMIT, sellerId);
         User seller = userDAO.findUserById(sellerId);
         if (seller == null || seller.getRole() != Role.SELLER) {
             throw new ForbiddenException("Only users with the 'seller' role can create restaurants.");
@@ -123,10 +121,7 @@ public class RestaurantController {
         if (sellerId == null) {
             throw new UnauthorizedException("You must be logged in to view your restaurants.");
         }
-        RequestTracker tracker = fetchRestaurantsTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_FETCH_RESTAURANTS_REQUESTS, FETCH_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("Too many requests. Please try again later.");
-        }
+        rateLimits.acquire(FETCH_RESTAURANTS_LIMIT, sellerId);
         User seller = userDAO.findUserById(sellerId);
         if (seller == null) {
             throw new ResourceNotFoundException("The specified seller account does not exist.");
@@ -143,11 +138,22 @@ public class RestaurantController {
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
-        response.put("approved_restaurants", approvedRestaurants);
-        response.put("pending_restaurants", pendingRestaurants);
+        response.put("approved_restaurants", GenerallController.withLogoThumbnails(approvedRestaurants));
+        response.put("pending_restaurants", GenerallController.withLogoThumbnails(pendingRestaurants));
         return response;
     }
 
+    /**
+     * Checks that a seller may read a restaurant's master food list, as
+     * {@link #handleGetMasterFoodList} does, without reading the list.
+     * @param sellerId The ID of the authenticated seller.
+     * @param restaurantId The ID of the restaurant.
+     * @throws Exception if the seller may not read the list.
+     */
+    public void authorizeMasterFoodList(int sellerId, int restaurantId) throws Exception {
+        authorizeSellerAction(sellerId, restaurantId);
+    }
+
     /**
      * Handles fetching the master food list for a restaurant.
      * @param sellerId The ID of the authenticated seller.
@@ -162,7 +168,7 @@ public class RestaurantController {
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
-        response.put("items", masterList);
+        response.put("items", GenerallController.withImageThumbnails(masterList));
         return response;
     }
 
@@ -194,6 +200,7 @@ public class RestaurantController {
         food.setCategory(food.getCategory() != null ? food.getCategory() : FoodCategory.UNDEFINED);
         int foodId = restaurantDAO.addFoodItem(food);
         food.setId(foodId);
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -218,16 +225,14 @@ public class RestaurantController {
             throw new ResourceNotFoundException("Food item with ID " + foodItemId + " not found in this restaurant's master list.");
         }
 
-        RequestTracker tracker = addItemToMenuTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_ADD_ITEM_TO_MENU_REQUESTS, ADD_ITEM_TO_MENU_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("You are adding items to menus too frequently. Please try again later.");
-        }
+        rateLimits.acquire(ADD_ITEM_TO_MENU_LIMIT, sellerId);
 
         Menu menu = restaurantDAO.getMenuByTitle(restaurantId, menuTitle);
         if (menu == null) {
             throw new ResourceNotFoundException("Menu with title '" + menuTitle + "' not found.");
         }
         restaurantDAO.addFoodItemToMenu((int)menu.getId(), (int)foodItemId);
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -264,7 +269,7 @@ public class RestaurantController {
             if (updatedFood.getImageBase64().equals(updatedFood.getImageBase64())) {
                 throw new InvalidInputException("New image must be different from the current image.");
             }
-            if (!GenerallController.isValidImage(updatedFood.getImageBase64())) {
+            if (!imageValidator.isAcceptable(GenerallController.toByteArray(updatedFood.getImageBase64()))) {
                 throw new InvalidInputException("Invalid image format. Please provide a valid Base64 encoded image.");
             }
             existingFood.setImageBase64(updatedFood.getImageBase64());
@@ -317,6 +322,7 @@ public class RestaurantController {
         }
 
         restaurantDAO.updateFoodItem(existingFood);
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -345,12 +351,10 @@ public class RestaurantController {
             throw new ConflictException("Cannot delete food item. It is currently part of an active order. Please complete or cancel the order first.");
         }
 
-        RequestTracker tracker = deleteFoodItemTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_DELETE_FOOD_REQUESTS, DELETE_FOOD_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("You are deleting food items too frequently. Please try again later.");
-        }
+        rateLimits.acquire(DELETE_FOOD_LIMIT, sellerId);
 
         restaurantDAO.deleteFoodItem(itemId);
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -374,10 +378,7 @@ public class RestaurantController {
             throw new ResourceNotFoundException("Restaurant with ID " + restaurantId + " not found.");
         }
 
-        RequestTracker tracker = createMenuTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_CREATE_MENU_REQUESTS, CREATE_MENU_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("You are creating menus too frequently. Please try again later.");
-        }
+        rateLimits.acquire(CREATE_MENU_LIMIT, sellerId);
 
         if (restaurantDAO.menuTitleExists(restaurantId, title)) {
             throw new ConflictException("A menu with this title already exists for this restaurant.");
@@ -386,6 +387,7 @@ public class RestaurantController {
         Menu newMenu = new Menu(restaurantId, title);
         int menuId = restaurantDAO.createMenu(newMenu);
         newMenu.setId(menuId);
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -408,10 +410,7 @@ public class RestaurantController {
             throw new ResourceNotFoundException("Restaurant with ID " + restaurantId + " not found.");
         }
 
-        RequestTracker tracker = deleteMenuTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_DELETE_MENU_REQUESTS, DELETE_MENU_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("You are deleting menus too frequently. Please try again later.");
-        }
+        rateLimits.acquire(DELETE_MENU_LIMIT, sellerId);
 
         if (!restaurantDAO.menuTitleExists(restaurantId, menuTitle)) {
             throw new ResourceNotFoundException("Menu with title '" + menuTitle + "' does not exist for this restaurant.");
@@ -427,6 +426,7 @@ public class RestaurantController {
         }
 
         restaurantDAO.deleteMenuById(menu.getId());
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -454,12 +454,10 @@ public class RestaurantController {
             throw new ConflictException("Can not remove the food item 'cause it's in an active order.");
         }
 
-        RequestTracker tracker = removeItemFromMenuTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_REMOVE_ITEM_FROM_MENU_REQUESTS, REMOVE_ITEM_FROM_MENU_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("You are removing items from menus too frequently. Please try again later.");
-        }
+        rateLimits.acquire(REMOVE_ITEM_FROM_MENU_LIMIT, sellerId);
 
         restaurantDAO.removeItemFromMenu(menu.getId(), itemId);
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -500,6 +498,69 @@ public class RestaurantController {
         return seller;
     }
 
+    /**
+     * Checks and stores an uploaded logo or food image, and queues its thumbnails.
+     * @param image The request body.
+     * @return The id of the stored image.
+     * @throws Exception if the image is not acceptable or cannot be stored.
+     */
+    private String saveCatalogImage(byte[] image) throws Exception {
+        ImageInfo info = imageValidator.checkHeader(image);
+        String imageId = imageStore.save(image, info.getType());
+        thumbnailGenerator.generate(imageId, image);
+        return imageId;
+    }
+
+    /**
+     * Handles uploading a restaurant's logo as raw image bytes.
+     * @param restaurantId The ID of the restaurant.
+     * @param sellerId The ID of the authenticated seller.
+     * @param image The request body.
+     * @return A map with the URL the logo is served from.
+     * @throws Exception for authorization errors or an invalid image.
+     */
+    public Map<String, Object> handleUploadLogo(int restaurantId, int sellerId, byte[] image) throws Exception {
+        authorizeSellerAction(sellerId, restaurantId);
+
+        String imageId = saveCatalogImage(image);
+        restaurantDAO.updateRestaurantLogo(restaurantId, imageId);
+        catalogVersions.bump(restaurantId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", 200);
+        response.put("message", "Logo uploaded successfully.");
+        response.put("logoUrl", ImageRef.url(imageId));
+        return response;
+    }
+
+    /**
+     * Handles uploading a food item's image as raw image bytes.
+     * @param restaurantId The ID of the restaurant the item belongs to.
+     * @param itemId The ID of the food item.
+     * @param sellerId The ID of the authenticated seller.
+     * @param image The request body.
+     * @return A map with the URL the image is served from.
+     * @throws Exception for authorization errors, a missing item or an invalid image.
+     */
+    public Map<String, Object> handleUploadFoodImage(int restaurantId, int itemId, int sellerId, byte[] image) throws Exception {
+        authorizeSellerAction(sellerId, restaurantId);
+
+        Food food = restaurantDAO.getFoodItemById(itemId);
+        if (food == null || food.getRestaurantId() != restaurantId) {
+            throw new ResourceNotFoundException("Food item with ID " + itemId + " not found in this restaurant.");
+        }
+
+        String imageId = saveCatalogImage(image);
+        restaurantDAO.updateFoodItemImage(itemId, imageId);
+        catalogVersions.bump(restaurantId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", 200);
+        response.put("message", "Food image uploaded successfully.");
+        response.put("imageUrl", ImageRef.url(imageId));
+        return response;
+    }
+
     /**
      * Handles updating an existing restaurant's details.
      * @param restaurantId The ID of the restaurant to update.
@@ -519,10 +580,7 @@ public class RestaurantController {
             isUpdated = true;
         }
 
-        RequestTracker tracker = updateRestaurantTrackers.computeIfAbsent(sellerId, k -> new RequestTracker(MAX_UPDATE_RESTAURANT_REQUESTS, UPDATE_RESTAURANT_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("You are updating this restaurant too frequently. Please try again later.");
-        }
+        rateLimits.acquire(UPDATE_RESTAURANT_LIMIT, sellerId);
 
         //403
         User seller = userDAO.findUserById(sellerId);
@@ -579,6 +637,7 @@ public class RestaurantController {
         if (!success) {
             throw new InternalServerErrorException("Failed to update restaurant details.");
         }
+        catalogVersions.bump(restaurantId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("status", 200);
@@ -587,55 +646,6 @@ public class RestaurantController {
         return response;
     }
 
-    public Map<String, Object> handleGetRestaurantMenu(Integer restaurantId, String clientIp) throws Exception {
-        if (restaurantId == null || restaurantId <= 0) {
-            throw new InvalidInputException("Invalid restaurant ID.");
-        }
-
-        if (!userDAO.isUserCustomer(clientIp)) {
-            throw new ForbiddenException("Only customers can view restaurant menus.");
-        }
-
-        RequestTracker tracker = getMenuTrackers.computeIfAbsent(clientIp,
-                k -> new RequestTracker(MAX_GET_MENU_REQUESTS, GET_MENU_RATE_LIMIT_WINDOW_MS));
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("Too many menu requests. Please try again later.");
-        }
-
-        Restaurant restaurant = restaurantDAO.getRestaurantById(restaurantId);
-        if (restaurant == null) {
-            throw new ResourceNotFoundException("Restaurant with ID " + restaurantId + " not found.");
-        }
-
-        if (restaurantDAO.isRestaurantPending(restaurantId)) {
-            throw new ForbiddenException("Cannot view menus of a restaurant that is pending approval.");
-        }
-
-        List<Menu> menus = restaurantDAO.getMenusByRestaurantId(restaurantId);
-        Map<String, List<Food>> menuItems = new HashMap<>();
-
-        for (Menu menu : menus) {
-            List<Food> foodItems = restaurantDAO.getFoodItemsByMenuId(menu.getId());
-            menuItems.put(menu.getTitle(), foodItems);
-        }
-
-        List<Menu> menues = restaurantDAO.getMenusByRestaurantId(restaurantId);
-        List<String> menuTitles = new ArrayList<>();
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", 200);
-        response.put("vendor", restaurant);
-
-        for (Menu menu : menues) {
-            menuTitles.add(menu.getTitle());
-            List<Food> foodItems = restaurantDAO.getFoodItemsByMenuId(menu.getId());
-            response.put(menu.getTitle(), foodItems);
-        }
-        response.put("menu_titles", menuTitles);
-
-
-        return response;
-    }
-
     public Map<String, Object> handleGetRestaurantOrders(Integer sellerId, int restaurantId, Map<String, String> filters) throws Exception {
         User seller = authorizeSellerAction(sellerId, restaurantId);
 
@@ -678,32 +688,4 @@ public class RestaurantController {
         response.put("message", "Order status updated successfully.");
         return response;
     }
-
-    private static class RequestTracker {
-        private int requestCount;
-        private long windowStartTime;
-        private final int maxRequests;
-        private final long windowMs;
-
-        public RequestTracker(int maxRequests, long windowMs) {
-            this.maxRequests = maxRequests;
-            this.windowMs = windowMs;
-            this.requestCount = 0;
-            this.windowStartTime = System.currentTimeMillis();
-        }
-
-        public synchronized boolean allowRequest() {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - windowStartTime > windowMs) {
-                windowStartTime = currentTime;
-                requestCount = 1;
-                return true;
-            }
-            if (requestCount < maxRequests) {
-                requestCount++;
-                return true;
-            }
-            return false;
-        }
-    }
 }
\ No newline at end of file
@@ -9,33 +9,73 @@ import com.snappfood.model.BankInfo;
 import com.snappfood.model.Role;
 import com.snappfood.model.Seller;
 import com.snappfood.model.User;
+import com.snappfood.ratelimit.RateLimitPolicy;
+import com.snappfood.ratelimit.RateLimiterRegistry;
 import com.snappfood.server.SessionRegistry;
+import com.snappfood.storage.ImageRef;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ImageValidator;
 import org.mindrot.jbcrypt.BCrypt;
 
 import java.lang.reflect.Type;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 public class UserController {
 
-    private final UserDAO userDAO = new UserDAO();
-    private final Gson gson = new Gson();
+    private final UserDAO userDAO;
+    private final Gson gson;
+    private final ImageStore imageStore;
+    private final ImageValidator imageValidator;
+    private final RateLimiterRegistry rateLimits;
     private static final int MAX_FAILED_ATTEMPTS = 5;
     private static final int LOCK_TIME_IN_MINUTES = 1;
 
-    private static final int MAX_LOGOUT_REQUESTS = 5;
-    private static final long LOGOUT_RATE_LIMIT_WINDOW_MS = 60000; // 1 minute
-    private final Map<Integer, LogoutRequestTracker> logoutRequestTrackers = new ConcurrentHashMap<>();
+    private static final RateLimitPolicy LOGOUT_LIMIT = new RateLimitPolicy("POST /auth/logout", 5, Duration.ofMinutes(1),
+            "Too many logout requests. Please try again later.");
 
 
     private static final Pattern EMAIL_PATTERN = Pattern.compile(
             "^[a-zA-Z0-9_+&*-]+(?:\\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,7}$");
 
 
+    public UserController(UserDAO userDAO, Gson gson, ImageStore imageStore, ImageValidator imageValidator,
+                          RateLimiterRegistry rateLimits) {
+        this.userDAO = userDAO;
+        this.gson = gson;
+        this.imageStore = imageStore;
+        this.imageValidator = imageValidator;
+        this.rateLimits = rateLimits;
+    }
+
+    /**
+     * Handles uploading the user's profile image as raw image bytes.
+     *
+     * @param userId The ID of the authenticated user.
+     * @param image  The request body.
+     * @return A map with the URL the image is served from.
+     * @throws Exception if the user is not logged in or the image is invalid.
+     */
+    public Map<String, Object> handleUploadProfileImage(Integer userId, byte[] image) throws Exception {
+        if (userId == null) {
+            throw new UnauthorizedException("Invalid token");
+        }
+        String imageId = GenerallController.saveImage(imageValidator, imageStore, image);
+        if (!userDAO.updateProfileImage(userId, imageId)) {
+            throw new ResourceNotFoundException("User profile not found.");
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", 200);
+        response.put("message", "Profile image uploaded successfully.");
+        response.put("profileImageUrl", ImageRef.url(imageId));
+        return response;
+    }
+
     /**
      * Handles the logic for updating a user's profile.
      *
@@ -95,7 +135,7 @@ public class UserController {
         if (updatedData.containsKey("profileImageBase64")) {
             String imageBase64 = (String) updatedData.get("profileImageBase64");
             existingUser.setProfileImageBase64(imageBase64);
-            if (!GenerallController.isValidImage(imageBase64)) {
+            if (!imageValidator.isAcceptable(GenerallController.toByteArray(imageBase64))) {
                 throw new InvalidInputException("Invalid image");
             }
         }
@@ -279,7 +319,7 @@ public class UserController {
                 || !Role.isValid(user.getRole().getValue())) {
             throw new InvalidInputException("Invalid role");
         }
-        if (user.getProfileImageBase64() != null && !GenerallController.isValidImage(user.getProfileImageBase64())) {
+        if (user.getProfileImageBase64() != null && !imageValidator.isAcceptable(GenerallController.toByteArray(user.getProfileImageBase64()))) {
             throw new InvalidInputException("Invalid profile image");
         }
         if (user.getRole() == Role.ADMIN) {
@@ -367,11 +407,7 @@ public class UserController {
         }
 
         //429
-        logoutRequestTrackers.computeIfAbsent(userId, k -> new LogoutRequestTracker());
-        LogoutRequestTracker tracker = logoutRequestTrackers.get(userId);
-        if (!tracker.allowRequest()) {
-            throw new TooManyRequestsException("Too many logout requests. Please try again later.");
-        }
+        rateLimits.acquire(LOGOUT_LIMIT, userId);
 
 
         //403
@@ -393,33 +429,6 @@ public class UserController {
         return response;
     }
 
-    private static class LogoutRequestTracker {
-        private int requestCount;
-        private long windowStartTime;
-
-        public LogoutRequestTracker() {
-            this.requestCount = 0;
-            this.windowStartTime = System.currentTimeMillis();
-        }
-
-        public synchronized boolean allowRequest() {
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - windowStartTime > LOGOUT_RATE_LIMIT_WINDOW_MS) {
-                // Reset window
-                windowStartTime = currentTime;
-                requestCount = 1;
-                return true;
-            }
-
-            if (requestCount < MAX_LOGOUT_REQUESTS) {
-                requestCount++;
-                return true;
-            }
-
-            return false;
-        }
-    }
-
     /**
      * Creates a map representation of a User object suitable for API responses,
      * excluding sensitive information like the password.
@@ -436,6 +445,7 @@ public class UserController {
         userMap.put("role", user.getRole().getValue());
         userMap.put("address", user.getAddress());
         userMap.put("profileImageBase64", user.getProfileImageBase64());
+        userMap.put("profileImageUrl", user.getProfileImageUrl());
         userMap.put("bank_info", user.getBankInfo());
 
         //seller-specific fields
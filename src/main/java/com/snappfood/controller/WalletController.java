@@ -19,9 +19,15 @@ import java.util.Map;
  */
 public class WalletController {
 
-    private final WalletDAO walletDAO = new WalletDAO();
-    private final UserDAO userDAO = new UserDAO();
-    private final OrderDAO orderDAO = new OrderDAO();
+    private final WalletDAO walletDAO;
+    private final UserDAO userDAO;
+    private final OrderDAO orderDAO;
+
+    public WalletController(WalletDAO walletDAO, UserDAO userDAO, OrderDAO orderDAO) {
+        this.walletDAO = walletDAO;
+        this.userDAO = userDAO;
+        this.orderDAO = orderDAO;
+    }
 
     /**
      * Handles a user's request to top up their wallet.
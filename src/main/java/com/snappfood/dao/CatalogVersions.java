@@ -0,0 +1,54 @@
+package com.snappfood.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory version numbers for each restaurant's public catalog: the
+ * restaurant itself, its menus and its food items, including their stock.
+ * <p>
+ * Every committed write to any of these bumps the restaurant's version.
+ * Versions come from one global sequence, so a reader that notes
+ * {@link #current()} before reading the catalog, and finds the restaurant's
+ * version no higher afterwards, knows nothing it read was changed underneath it.
+ * The epoch is the boot time, so versions handed out before a restart are never
+ * mistaken for current ones. Writes made by another process are not seen.
+ */
+public class CatalogVersions {
+
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Records a committed change to a restaurant's catalog.
+     * @param restaurantId The restaurant whose catalog changed.
+     */
+    public void bump(int restaurantId) {
+        long version = sequence.incrementAndGet();
+        versions.merge(restaurantId, version, Math::max);
+    }
+
+    /**
+     * @param restaurantId The restaurant.
+     * @return The restaurant's current version, or 0 if it has not changed since startup.
+     */
+    public long version(int restaurantId) {
+        return versions.getOrDefault(restaurantId, 0L);
+    }
+
+    /**
+     * @return The highest version handed out so far, across all restaurants.
+     */
+    public long current() {
+        return sequence.get();
+    }
+
+    /**
+     * @return When this server started, in epoch milliseconds.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+}
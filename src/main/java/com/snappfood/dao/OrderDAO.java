@@ -23,6 +23,12 @@ public class OrderDAO {
     private static final String USERS_TABLE = "users";
     private static final String RESTAURANTS_TABLE = "restaurants";
 
+    private final CatalogVersions catalogVersions;
+
+    public OrderDAO(CatalogVersions catalogVersions) {
+        this.catalogVersions = catalogVersions;
+    }
+
     /**
      * Creates a new order in the database within a single transaction.
      * This includes creating the order record, adding items, and decrementing stock.
@@ -87,6 +93,7 @@ public class OrderDAO {
             updateStockStmt.executeBatch();
 
             conn.commit();
+            catalogVersions.bump(order.getRestaurantId());
             return order;
 
         } catch (SQLException e) {
@@ -135,6 +142,7 @@ public class OrderDAO {
 
             PreparedStatement checkStmt = conn.prepareStatement(checkOrderSql);
             PreparedStatement updateStmt = conn.prepareStatement(updateStatusSql);
+            List<Integer> restockedRestaurants = new ArrayList<>();
 
             for (Order update : orderUpdates) {
                 checkStmt.setInt(1, update.getId());
@@ -152,12 +160,15 @@ public class OrderDAO {
                     updateStmt.setString(1, OrderStatus.REJECTED_BY_ADMIN.name());
                     updateStmt.setInt(2, update.getId());
                     updateStmt.addBatch();
-                    returnStockForOrder(update.getId(), conn);
+                    restockedRestaurants.add(returnStockForOrder(update.getId(), conn));
                 }
             }
 
             updateStmt.executeBatch();
             conn.commit(); // Commit transaction
+            for (int restaurantId : restockedRestaurants) {
+                catalogVersions.bump(restaurantId);
+            }
 
         } catch (SQLException e) {
             if (conn != null) {
@@ -174,9 +185,11 @@ public class OrderDAO {
 
     /**
      * Helper method to return stock for a cancelled or rejected order.
+     * @return The ID of the order's restaurant, whose catalog version the caller bumps after committing.
      */
-    private void returnStockForOrder(int orderId, Connection conn) throws SQLException {
+    private int returnStockForOrder(int orderId, Connection conn) throws SQLException {
         String getItemsSql = "SELECT food_item_id, quantity FROM " + ORDER_ITEMS_TABLE + " WHERE order_id = ?";
+        String getRestaurantSql = "SELECT restaurant_id FROM " + ORDERS_TABLE + " WHERE id = ?";
         String updateStockSql = "UPDATE " + FOOD_ITEMS_TABLE + " SET supply = supply + ? WHERE id = ?";
 
         Map<Integer, Integer> itemsToReturn = new HashMap<>();
@@ -189,6 +202,16 @@ public class OrderDAO {
             }
         }
 
+        int restaurantId = -1;
+        try (PreparedStatement stmt = conn.prepareStatement(getRestaurantSql)) {
+            stmt.setInt(1, orderId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    restaurantId = rs.getInt("restaurant_id");
+                }
+            }
+        }
+
         try (PreparedStatement stmt = conn.prepareStatement(updateStockSql)) {
             for (Map.Entry<Integer, Integer> item : itemsToReturn.entrySet()) {
                 stmt.setInt(1, item.getValue()); // quantity
@@ -197,6 +220,7 @@ public class OrderDAO {
             }
             stmt.executeBatch();
         }
+        return restaurantId;
     }
 
     private Order extractOrderFromResultSet(ResultSet rs) throws SQLException {
@@ -331,13 +355,15 @@ public class OrderDAO {
             updateSql = "UPDATE " + ORDERS_TABLE + " SET status = ?, updated_at = ? WHERE id = ?";
         }
 
+        int restockedRestaurant = -1;
+
         try {
             conn = DatabaseManager.getConnection();
             conn.setAutoCommit(false);
 
             // If the new status is a cancellation or rejection, return stock
             if (newStatus == OrderStatus.CANCELLED || newStatus == OrderStatus.REJECTED_BY_VENDOR) {
-                returnStockForOrder(orderId, conn);
+                restockedRestaurant = returnStockForOrder(orderId, conn);
             }
 
             try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
@@ -355,6 +381,9 @@ public class OrderDAO {
             }
 
             conn.commit();
+            if (restockedRestaurant >= 0) {
+                catalogVersions.bump(restockedRestaurant);
+            }
 
         } catch (SQLException | ResourceNotFoundException e) {
             if (conn != null) {
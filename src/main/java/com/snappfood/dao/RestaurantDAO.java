@@ -2,9 +2,14 @@ package com.snappfood.dao;
 
 import com.snappfood.database.DatabaseManager;
 import com.snappfood.model.*;
+import com.snappfood.storage.ImageRef;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ImageType;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 
@@ -24,7 +29,7 @@ public class RestaurantDAO {
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, restaurant.getName());
-            stmt.setString(2, restaurant.getLogoBase64());
+            stmt.setString(2, ImageRef.column(restaurant.getLogoBase64(), restaurant.getLogoUrl()));
             stmt.setString(3, restaurant.getAddress());
             stmt.setString(4, restaurant.getPhoneNumber());
             stmt.setString(5, restaurant.getWorkingHours());
@@ -77,7 +82,7 @@ public class RestaurantDAO {
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, restaurant.getName());
-            stmt.setString(2, restaurant.getLogoBase64());
+            stmt.setString(2, ImageRef.column(restaurant.getLogoBase64(), restaurant.getLogoUrl()));
             stmt.setString(3, restaurant.getAddress());
             stmt.setString(4, restaurant.getPhoneNumber());
             stmt.setString(5, restaurant.getWorkingHours());
@@ -87,6 +92,96 @@ public class RestaurantDAO {
         }
     }
 
+    /**
+     * Points a restaurant's logo at a stored image.
+     * @param restaurantId The restaurant to update.
+     * @param imageId      The id of the image in the image store.
+     * @return true if the restaurant exists.
+     */
+    public boolean updateRestaurantLogo(int restaurantId, String imageId) throws SQLException {
+        String sql = "UPDATE " + RESTAURANTS_TABLE + " SET logo_base64 = ? WHERE id = ?";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, ImageRef.toColumn(imageId));
+            stmt.setInt(2, restaurantId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Points a food item's image at a stored image.
+     * @param foodId  The food item to update.
+     * @param imageId The id of the image in the image store.
+     * @return true if the food item exists.
+     */
+    public boolean updateFoodItemImage(int foodId, String imageId) throws SQLException {
+        String sql = "UPDATE " + FOOD_ITEMS_TABLE + " SET image_base64 = ? WHERE id = ?";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, ImageRef.toColumn(imageId));
+            stmt.setInt(2, foodId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Moves restaurant logos and food images still stored as Base64 into the
+     * image store, leaving a reference in their place.
+     * @param imageStore The store to move images into.
+     * @return How many images were moved.
+     */
+    public int migrateImages(ImageStore imageStore) throws SQLException, IOException {
+        return migrateImageColumn(imageStore, RESTAURANTS_TABLE, "logo_base64")
+                + migrateImageColumn(imageStore, FOOD_ITEMS_TABLE, "image_base64");
+    }
+
+    /**
+     * Rows are loaded one at a time, so only one image is in memory at once.
+     * Values that are not Base64 of a known image type are left alone.
+     */
+    private int migrateImageColumn(ImageStore imageStore, String table, String column) throws SQLException, IOException {
+        String findSql = "SELECT id FROM " + table + " WHERE LENGTH(" + column + ") > 0 AND " + column + " NOT LIKE 'image:%'";
+        String loadSql = "SELECT " + column + " FROM " + table + " WHERE id = ?";
+        String updateSql = "UPDATE " + table + " SET " + column + " = ? WHERE id = ?";
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(findSql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getInt("id"));
+            }
+        }
+
+        int moved = 0;
+        for (int id : ids) {
+            try (Connection conn = DatabaseManager.getConnection();
+                 PreparedStatement load = conn.prepareStatement(loadSql);
+                 PreparedStatement update = conn.prepareStatement(updateSql)) {
+                load.setInt(1, id);
+                String base64 = null;
+                try (ResultSet rs = load.executeQuery()) {
+                    if (rs.next()) {
+                        base64 = rs.getString(column);
+                    }
+                }
+                byte[] image;
+                try {
+                    image = base64 != null ? Base64.getDecoder().decode(base64) : null;
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                ImageType type = ImageType.sniff(image);
+                if (type == null) {
+                    continue;
+                }
+                update.setString(1, ImageRef.toColumn(imageStore.save(image, type)));
+                update.setInt(2, id);
+                moved += update.executeUpdate();
+            }
+        }
+        return moved;
+    }
+
     public boolean deleteRestaurant(int restaurantId) throws SQLException {
         String sql = "DELETE FROM " + RESTAURANTS_TABLE + " WHERE id = ?";
         try (Connection conn = DatabaseManager.getConnection();
@@ -104,7 +199,7 @@ public class RestaurantDAO {
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, food.getName());
-            stmt.setString(2, food.getImageBase64());
+            stmt.setString(2, ImageRef.column(food.getImageBase64(), food.getImageUrl()));
             stmt.setString(3, food.getDescription());
             stmt.setInt(4, food.getPrice());
             stmt.setString(5, food.getCategory().getDisplayName());
@@ -208,7 +303,7 @@ public class RestaurantDAO {
             stmt.setInt(3, food.getPrice());
             stmt.setInt(4, food.getSupply());
             stmt.setString(5, food.getCategory().getDisplayName());
-            stmt.setString(6, food.getImageBase64());
+            stmt.setString(6, ImageRef.column(food.getImageBase64(), food.getImageUrl()));
             if (food.getKeywords() != null && !food.getKeywords().isEmpty()) {
                 stmt.setString(7, String.join(",", food.getKeywords()));
             } else {
@@ -281,7 +376,13 @@ public class RestaurantDAO {
         Restaurant restaurant = new Restaurant(rs.getInt("tax_fee"), rs.getInt("additional_fee"));
         restaurant.setId(rs.getInt("id"));
         restaurant.setName(rs.getString("name"));
-        restaurant.setLogoBase64(rs.getString("logo_base64"));
+        String logo = rs.getString("logo_base64");
+        String logoId = ImageRef.idFromColumn(logo);
+        if (logoId != null) {
+            restaurant.setLogoUrl(ImageRef.url(logoId));
+        } else {
+            restaurant.setLogoBase64(logo);
+        }
         restaurant.setAddress(rs.getString("address"));
         restaurant.setPhoneNumber(rs.getString("phone_number"));
         restaurant.setWorkingHours(rs.getString("working_hours"));
@@ -350,7 +451,7 @@ public class RestaurantDAO {
 
                 if ("approved".equalsIgnoreCase(update.getStatus())) {
                     insertStmt.setString(1, pendingRestaurant.getName());
-                    insertStmt.setString(2, pendingRestaurant.getLogoBase64());
+                    insertStmt.setString(2, ImageRef.column(pendingRestaurant.getLogoBase64(), pendingRestaurant.getLogoUrl()));
                     insertStmt.setString(3, pendingRestaurant.getAddress());
                     insertStmt.setString(4, pendingRestaurant.getPhoneNumber());
                     insertStmt.setString(5, pendingRestaurant.getWorkingHours());
@@ -399,7 +500,13 @@ public class RestaurantDAO {
         Food food = new Food();
         food.setId(rs.getInt("id"));
         food.setName(rs.getString("name"));
-        food.setImageBase64(rs.getString("image_base64"));
+        String image = rs.getString("image_base64");
+        String imageId = ImageRef.idFromColumn(image);
+        if (imageId != null) {
+            food.setImageUrl(ImageRef.url(imageId));
+        } else {
+            food.setImageBase64(image);
+        }
         food.setDescription(rs.getString("description"));
         food.setPrice(rs.getInt("price"));
         food.setCategory(FoodCategory.fromString(rs.getString("category")));
@@ -2,7 +2,13 @@ package com.snappfood.dao;
 
 import com.snappfood.controller.GenerallController;
 import com.snappfood.database.DatabaseManager;
+import com.snappfood.metrics.RequestTrace;
 import com.snappfood.model.*;
+import com.snappfood.storage.ImageRef;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ImageType;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 
@@ -15,6 +21,12 @@ public class UserDAO {
     private static final String USERS_TABLE = "users";
     private static final String PENDING_USERS_TABLE = "pending_users";
 
+    private final WalletDAO walletDAO;
+
+    public UserDAO(WalletDAO walletDAO) {
+        this.walletDAO = walletDAO;
+    }
+
     public void incrementFailedLoginAttempts(String phone) throws SQLException {
         boolean updated = updateFailedAttemptsInTable(USERS_TABLE, phone);
         if (!updated) {
@@ -97,7 +109,7 @@ public class UserDAO {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     int userId = generatedKeys.getInt(1);
-                    new WalletDAO().createWallet(userId, conn);
+                    walletDAO.createWallet(userId, conn);
                 } else {
                     throw new SQLException("Creating user failed, no ID obtained.");
                 }
@@ -143,7 +155,7 @@ public class UserDAO {
             try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                 if (generatedKeys.next()) {
                     int userId = generatedKeys.getInt(1);
-                    new WalletDAO().createWallet(userId, conn);
+                    walletDAO.createWallet(userId, conn);
                 } else {
                     throw new SQLException("Creating user failed, no ID obtained.");
                 }
@@ -193,7 +205,12 @@ public class UserDAO {
         }
     }
 
+    /**
+     * Loads a user by ID. Most handlers start with this as their authorization
+     * check, so its time is traced as a phase of its own.
+     */
     public User findUserById(int userId) throws SQLException {
+        long startNanos = System.nanoTime();
         String sql = "SELECT * FROM users WHERE id = ?";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -203,6 +220,8 @@ public class UserDAO {
                     return extractUserFromResultSet(rs);
                 }
             }
+        } finally {
+            RequestTrace.record(RequestTrace.Phase.USER_LOOKUP, startNanos);
         }
         return null;
     }
@@ -389,7 +408,10 @@ public class UserDAO {
         user.setAddress(rs.getString("address"));
 
         byte[] profileImageBytes = rs.getBytes("profile_image");
-        if (profileImageBytes != null) {
+        String profileImageId = ImageRef.idFromColumn(profileImageBytes);
+        if (profileImageId != null) {
+            user.setProfileImageUrl(ImageRef.url(profileImageId));
+        } else if (profileImageBytes != null) {
             user.setProfileImageBase64(GenerallController.toBase64(profileImageBytes));
         } else {
             user.setProfileImageBase64(null);
@@ -419,7 +441,7 @@ public class UserDAO {
             stmt.setString(2, user.getPhone());
             stmt.setString(3, user.getEmail());
             stmt.setString(4, user.getAddress());
-            stmt.setBytes(5, Base64.getDecoder().decode(user.getProfileImageBase64()));
+            stmt.setBytes(5, profileImageColumn(user));
 
             BankInfo bankInfo = user.getBankInfo();
             if (bankInfo != null) {
@@ -443,6 +465,73 @@ public class UserDAO {
         }
     }
 
+    /**
+     * Points a user's profile image at a stored image.
+     * @param userId  The user to update.
+     * @param imageId The id of the image in the image store.
+     * @return true if the user exists.
+     */
+    public boolean updateProfileImage(int userId, String imageId) throws SQLException {
+        String sql = "UPDATE users SET profile_image = ? WHERE id = ?";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setBytes(1, ImageRef.toColumn(imageId).getBytes(StandardCharsets.US_ASCII));
+            stmt.setInt(2, userId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Moves profile images still stored in the users table into the image store,
+     * leaving a reference in their place. Rows are loaded one at a time, so only
+     * one image is in memory at once. Bytes that are not a known image type are left alone.
+     * @param imageStore The store to move images into.
+     * @return How many images were moved.
+     */
+    public int migrateProfileImages(ImageStore imageStore) throws SQLException, IOException {
+        String findSql = "SELECT id FROM users WHERE LENGTH(profile_image) > 0 AND profile_image NOT LIKE 'image:%'";
+        String loadSql = "SELECT profile_image FROM users WHERE id = ?";
+        List<Integer> userIds = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(findSql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                userIds.add(rs.getInt("id"));
+            }
+        }
+
+        int moved = 0;
+        for (int userId : userIds) {
+            byte[] image = null;
+            try (Connection conn = DatabaseManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(loadSql)) {
+                stmt.setInt(1, userId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        image = rs.getBytes("profile_image");
+                    }
+                }
+            }
+            ImageType type = ImageType.sniff(image);
+            if (type != null && updateProfileImage(userId, imageStore.save(image, type))) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * @return The bytes to store in profile_image: the image itself for a Base64
+     * image, a reference for an uploaded one, or null if the user has neither.
+     */
+    private static byte[] profileImageColumn(User user) {
+        if (user.getProfileImageBase64() != null) {
+            return Base64.getDecoder().decode(user.getProfileImageBase64());
+        }
+        String column = ImageRef.column(null, user.getProfileImageUrl());
+        return column != null ? column.getBytes(StandardCharsets.US_ASCII) : null;
+    }
+
     /**
      * Processes a batch of user approval/rejection decisions within a single transaction.
      * @param userUpdates A list of UserStatusUpdate objects.
@@ -1,17 +1,33 @@
 package com.snappfood.database;
 
+import com.snappfood.exception.DeadlineExceededException;
+import com.snappfood.metrics.RequestTrace;
 import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.pool.HikariPool;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DatabaseManager {
     private static final String URL = "jdbc:mysql://localhost:3306/snappfood";
     private static final String USER = "root";
     private static final String PASSWORD = "Zahrasheikhi22";
 
-    private static HikariDataSource dataSource;
+    private static final int MAX_POOL_SIZE = 10;
+    private static final long CONNECTION_TIMEOUT_MS = 30000; // 30 seconds
+
+    // the pool itself rather than a HikariDataSource, whose getConnection() always waits the full connection timeout
+    private static HikariPool pool;
+
+    // caps concurrent JDBC use at the pool size, so that with virtual threads
+    // thousands of handlers queue here instead of inside the pool
+    private static final Semaphore connectionPermits = new Semaphore(MAX_POOL_SIZE, true);
 
     // seting up connection pool
     static {
@@ -20,9 +36,9 @@ public class DatabaseManager {
         config.setUsername(USER);
         config.setPassword(PASSWORD);
 
-        config.setMaximumPoolSize(10);
+        config.setMaximumPoolSize(MAX_POOL_SIZE);
         config.setMinimumIdle(5);
-        config.setConnectionTimeout(30000); // 30 seconds
+        config.setConnectionTimeout(CONNECTION_TIMEOUT_MS);
         config.setIdleTimeout(600000); // 10 minutes
         config.setMaxLifetime(1800000); // 30 minutes
 
@@ -30,15 +46,178 @@ public class DatabaseManager {
         config.addDataSourceProperty("prepStmtCacheSize", "250");
         config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
 
-        dataSource = new HikariDataSource(config);
+        config.validate();
+        pool = new HikariPool(config);
     }
 
     /**
-     * Gets a connection from the pool.
+     * Gets a connection from the pool. The caller first waits for one of the
+     * permits that cap concurrent database use; the permit is returned when
+     * the connection is closed. If the thread is handling a request with a
+     * {@link RequestDeadline}, both that wait and the pool's own wait for a
+     * connection end with the deadline, and every statement created on the
+     * connection gets the time left as its query timeout.
+     * The wait and the statements' execution are timed in the thread's {@link RequestTrace}.
      * @return A database connection.
-     * @throws SQLException if a database access error occurs.
+     * @throws SQLException if a database access error occurs or no permit frees up in time.
+     * @throws DeadlineExceededException if the request's deadline passes first.
      */
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        long startNanos = System.nanoTime();
+        try {
+            return acquireConnection();
+        } finally {
+            RequestTrace.record(RequestTrace.Phase.DB_CONNECT, startNanos);
+        }
+    }
+
+    private static Connection acquireConnection() throws SQLException {
+        RequestDeadline deadline = RequestDeadline.current();
+        long waitNanos = TimeUnit.MILLISECONDS.toNanos(CONNECTION_TIMEOUT_MS);
+        if (deadline != null) {
+            waitNanos = Math.min(waitNanos, deadline.remainingNanos());
+            if (waitNanos <= 0) {
+                throw new DeadlineExceededException("The request ran out of time before getting a database connection.");
+            }
+        }
+        try {
+            if (!connectionPermits.tryAcquire(waitNanos, TimeUnit.NANOSECONDS)) {
+                if (deadline != null && deadline.isExpired()) {
+                    throw new DeadlineExceededException("The request ran out of time waiting for a database connection.");
+                }
+                throw new SQLException("Timed out waiting for a database connection.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", e);
+        }
+
+        Connection connection;
+        try {
+            long timeoutMs = CONNECTION_TIMEOUT_MS;
+            if (deadline != null) {
+                // the permit wait may have used most of the budget; the pool gets only what is left
+                timeoutMs = Math.min(timeoutMs, TimeUnit.NANOSECONDS.toMillis(Math.max(0, deadline.remainingNanos())));
+            }
+            connection = pool.getConnection(timeoutMs);
+        } catch (SQLException e) {
+            connectionPermits.release();
+            if (deadline != null && deadline.isExpired()) {
+                throw new DeadlineExceededException("The request ran out of time waiting for a database connection.", e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            connectionPermits.release();
+            throw e;
+        }
+        return releasingPermitOnClose(connection);
+    }
+
+    /**
+     * Closes the connection pool. Called once, at shutdown, after the request handlers have stopped.
+     */
+    public static void close() {
+        try {
+            pool.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The number of threads currently holding a database permit.
+     */
+    public static int getActivePermits() {
+        return MAX_POOL_SIZE - connectionPermits.availablePermits();
+    }
+
+    /**
+     * @return The number of threads waiting for a database permit.
+     */
+    public static int getQueuedForPermit() {
+        return connectionPermits.getQueueLength();
+    }
+
+    /**
+     * Wraps a pooled connection so that closing it also returns its permit, exactly
+     * once, and so that statements it creates inherit the request's deadline and
+     * are timed in its trace.
+     */
+    private static Connection releasingPermitOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                DatabaseManager.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && method.getParameterCount() == 0) {
+                        try {
+                            connection.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                connectionPermits.release();
+                            }
+                        }
+                        return null;
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        applyDeadline((Statement) result);
+                        if (RequestTrace.current() != null) {
+                            return timingExecution((Statement) result, method.getReturnType());
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Wraps a statement so that the time its execute methods take is added to
+     * the current request's trace.
+     * @param statement The statement.
+     * @param type      The statement interface the caller asked for.
+     */
+    private static Object timingExecution(Statement statement, Class<?> type) {
+        return Proxy.newProxyInstance(
+                DatabaseManager.class.getClassLoader(),
+                new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                    long startNanos = System.nanoTime();
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        RequestTrace.record(RequestTrace.Phase.DB_QUERY, startNanos);
+                        RequestTrace.countQuery();
+                    }
+                });
+    }
+
+    /**
+     * Limits a statement to the time the current request has left.
+     */
+    private static void applyDeadline(Statement statement) throws SQLException {
+        RequestDeadline deadline = RequestDeadline.current();
+        if (deadline == null) {
+            return;
+        }
+        try {
+            statement.setQueryTimeout(deadline.remainingSeconds());
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
     }
 }
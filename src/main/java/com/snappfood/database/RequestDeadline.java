@@ -0,0 +1,72 @@
+package com.snappfood.database;
+
+import com.snappfood.exception.DeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which the request being handled on the current thread
+ * must be done. The request handler binds it for the duration of a request;
+ * {@link DatabaseManager} reads it to bound how long the thread waits for a
+ * connection and how long each statement may run, so DAO code needs no changes.
+ * Works the same on pooled and virtual threads.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Binds a deadline to the current thread.
+     * @param startNanos When the request's clock started, from {@link System#nanoTime()}.
+     * @param budgetMs   How long the request may take in total.
+     * @return The bound deadline; call {@link #clear()} when the request is done.
+     */
+    public static RequestDeadline start(long startNanos, long budgetMs) {
+        RequestDeadline deadline = new RequestDeadline(startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMs));
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * @return The current thread's deadline, or null outside a request.
+     */
+    public static RequestDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Unbinds the current thread's deadline. Pooled threads are reused, so this must always run.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return The time left, in nanoseconds; zero or negative once the deadline has passed.
+     */
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * @return The time left in whole seconds, rounded up, as JDBC query timeouts need.
+     * @throws DeadlineExceededException if no time is left.
+     */
+    public int remainingSeconds() throws DeadlineExceededException {
+        long remaining = remainingNanos();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException("The request ran out of time.");
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (remaining + 999_999_999L) / 1_000_000_000L);
+    }
+}
@@ -0,0 +1,18 @@
+package com.snappfood.exception;
+
+import java.sql.SQLTimeoutException;
+
+/**
+ * Thrown when a request runs out of its time budget, either before it gets a
+ * database connection or because a query outlived it. It is an SQLException so
+ * that it travels through DAO signatures unchanged.
+ */
+public class DeadlineExceededException extends SQLTimeoutException {
+  public DeadlineExceededException(String message) {
+    super(message);
+  }
+
+  public DeadlineExceededException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,18 @@
+package com.snappfood.exception;
+
+/**
+ * Thrown while parsing raw request bytes when the request cannot be read as HTTP.
+ * Carries the status code that should be sent back before the connection is closed.
+ */
+public class MalformedRequestException extends Exception {
+  private final int statusCode;
+
+  public MalformedRequestException(int statusCode, String message) {
+    super(message);
+    this.statusCode = statusCode;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+}
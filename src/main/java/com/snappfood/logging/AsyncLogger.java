@@ -0,0 +1,136 @@
+package com.snappfood.logging;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A logger that never blocks its callers. Events go into a lock-free ring
+ * buffer and a background thread formats them and appends them to a rolling
+ * file. When the buffer is full the event is dropped and counted instead of
+ * making the caller wait.
+ */
+public class AsyncLogger {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int MAX_BATCH = 1024;
+
+    private final MpscRingBuffer<LogEvent> buffer;
+    private final RollingFileWriter out;
+    private final Thread writerThread;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Opens the log file and starts the writer thread.
+     * @param file           The active log file.
+     * @param capacity       How many events may wait to be written before new ones are dropped.
+     * @param maxFileBytes   The size at which the file is rolled over.
+     * @param maxBackups     How many rolled-over files are kept.
+     * @throws IOException if the log file cannot be opened.
+     */
+    public AsyncLogger(Path file, int capacity, long maxFileBytes, int maxBackups) throws IOException {
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.out = new RollingFileWriter(file, maxFileBytes, maxBackups);
+        this.writerThread = new Thread(this::drainLoop, "log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues an event for writing.
+     * @param event The event.
+     * @return false if the buffer was full and the event was dropped.
+     */
+    public boolean log(LogEvent event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Queues a plain message, stamped with the current time.
+     * @param message The message.
+     * @return false if the message was dropped.
+     */
+    public boolean info(String message) {
+        long timestamp = System.currentTimeMillis();
+        return log(line -> line.append(Instant.ofEpochMilli(timestamp)).append(" INFO ").append(message));
+    }
+
+    /**
+     * @return The number of events dropped because the buffer was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of events written so far.
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return The number of events waiting to be written.
+     */
+    public int getQueued() {
+        return buffer.size();
+    }
+
+    /**
+     * Stops the writer thread after it has written everything already queued.
+     * @param timeoutMs How long to wait for the queue to drain.
+     */
+    public void close(long timeoutMs) {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(512);
+        while (true) {
+            int batch = 0;
+            LogEvent event;
+            while (batch < MAX_BATCH && (event = buffer.poll()) != null) {
+                line.setLength(0);
+                try {
+                    event.format(line);
+                    out.writeLine(line);
+                    written.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Could not write log event: " + e.getMessage());
+                }
+                batch++;
+            }
+            if (batch == 0) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    System.err.println("Could not flush log file: " + e.getMessage());
+                }
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Could not close log file: " + e.getMessage());
+        }
+    }
+}
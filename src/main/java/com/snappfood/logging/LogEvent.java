@@ -0,0 +1,15 @@
+package com.snappfood.logging;
+
+/**
+ * Something that can be written to a log. Events are created on request
+ * threads but formatted on the logger's writer thread, so formatting cost
+ * never lands on the request path.
+ */
+public interface LogEvent {
+
+    /**
+     * Appends this event as one line, without the trailing newline.
+     * @param out The line being built.
+     */
+    void format(StringBuilder out);
+}
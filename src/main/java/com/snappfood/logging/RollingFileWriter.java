@@ -0,0 +1,77 @@
+package com.snappfood.logging;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends lines to a log file and rolls it over once it reaches a size limit.
+ * On rollover {@code name.log} becomes {@code name.log.1}, {@code name.log.1}
+ * becomes {@code name.log.2} and so on; the oldest file is deleted.
+ * Not thread-safe: owned by the logger's writer thread.
+ */
+class RollingFileWriter {
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxBackups;
+    private BufferedWriter writer;
+    private long written;
+
+    RollingFileWriter(Path file, long maxBytes, int maxBackups) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxBackups = maxBackups;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        open();
+    }
+
+    void writeLine(CharSequence line) throws IOException {
+        if (written >= maxBytes) {
+            roll();
+        }
+        writer.append(line).append('\n');
+        written += line.length() + 1; // close enough for a size limit
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    void close() throws IOException {
+        writer.close();
+    }
+
+    private void open() throws IOException {
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        written = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        for (int i = maxBackups - 1; i >= 1; i--) {
+            Path from = backup(i);
+            if (Files.exists(from)) {
+                Files.move(from, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxBackups > 0) {
+            Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        open();
+    }
+
+    private Path backup(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,130 @@
+package com.snappfood.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with log-linear buckets, in the manner of
+ * HdrHistogram. Every power of two is split into {@value #SUB_BUCKETS} equal
+ * buckets, so any recorded value is known to within about 6% whatever its
+ * magnitude, while the whole range from a microsecond to hours fits in a few
+ * hundred counters.
+ * <p>
+ * Recording is one array increment and one addition, with no locks and no
+ * allocation; reading takes a snapshot of the counters that may be slightly
+ * inconsistent with recordings made at the same moment.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36; // 2^36 us is about 19 hours
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalMicros = new AtomicLong();
+
+    /**
+     * Records one observation.
+     * @param nanos The observed latency in nanoseconds.
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(Math.min(micros, MAX_VALUE)));
+        totalMicros.addAndGet(micros);
+    }
+
+    /**
+     * @return A copy of the counters, for computing quantiles.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalMicros.get());
+    }
+
+    /**
+     * Values below {@value #SUB_BUCKETS} have a bucket each; above that, the
+     * bucket is found from the position of the highest set bit and the
+     * {@value #SUB_BUCKET_BITS} bits below it.
+     */
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return The smallest value, in microseconds, that falls in the bucket.
+     */
+    static long lowestValueAt(int index) {
+        int block = index >>> SUB_BUCKET_BITS;
+        long sub = index & (SUB_BUCKETS - 1);
+        return block == 0 ? sub : (SUB_BUCKETS + sub) << (block - 1);
+    }
+
+    /**
+     * @return The largest value, in microseconds, that falls in the bucket.
+     */
+    static long highestValueAt(int index) {
+        return index + 1 < BUCKET_COUNT ? lowestValueAt(index + 1) - 1 : MAX_VALUE;
+    }
+
+    /**
+     * The counters of a histogram at one moment.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long totalMicros;
+
+        private Snapshot(long[] counts, long count, long totalMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+        }
+
+        /**
+         * @return How many values were recorded.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The sum of the recorded values, in seconds.
+         */
+        public double getSumSeconds() {
+            return totalMicros / 1e6;
+        }
+
+        /**
+         * @param quantile A fraction from 0 to 1, such as 0.99.
+         * @return The value, in seconds, that that fraction of recordings did not
+         * exceed, as the midpoint of its bucket; 0 if nothing was recorded.
+         */
+        public double getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return (lowestValueAt(i) + highestValueAt(i)) / 2.0 / 1e6;
+                }
+            }
+            return highestValueAt(counts.length - 1) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.snappfood.metrics;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, version 0.0.4.
+ * Each metric family is introduced once with its HELP and TYPE lines, followed
+ * by its samples; label values are escaped as the format requires.
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder out = new StringBuilder(4096);
+
+    /**
+     * Starts a metric family.
+     * @param name The metric's name.
+     * @param type counter, gauge or summary.
+     * @param help A one-line description.
+     * @return this writer, for chaining.
+     */
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a single unlabelled value as its own family.
+     * @return this writer, for chaining.
+     */
+    public PrometheusWriter single(String name, String type, String help, double value) {
+        return family(name, type, help).sample(name, value);
+    }
+
+    /**
+     * Writes one sample.
+     * @param name   The sample's name.
+     * @param value  Its value.
+     * @param labels Alternating label names and values.
+     * @return this writer, for chaining.
+     */
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                out.append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes a histogram as a summary: its quantiles, sum and count.
+     * @param name      The family's name.
+     * @param histogram The histogram's counters.
+     * @param labels    Alternating label names and values.
+     * @return this writer, for chaining.
+     */
+    public PrometheusWriter summary(String name, LatencyHistogram.Snapshot histogram, String... labels) {
+        String[] withQuantile = new String[labels.length + 2];
+        System.arraycopy(labels, 0, withQuantile, 0, labels.length);
+        withQuantile[labels.length] = "quantile";
+        for (double quantile : QUANTILES) {
+            withQuantile[labels.length + 1] = Double.toString(quantile);
+            sample(name, histogram.getValueAtQuantile(quantile), withQuantile);
+        }
+        sample(name + "_sum", histogram.getSumSeconds(), labels);
+        return sample(name + "_count", histogram.getCount(), labels);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.snappfood.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Latency histograms and byte counters for every route, split by response
+ * status. Requests that matched no route are counted together under
+ * {@link #UNMATCHED}, so clients probing random paths cannot grow the set.
+ * <p>
+ * A route's entry and its histogram for a status are created the first time
+ * they are needed; from then on recording a request only looks them up and
+ * updates atomic counters.
+ */
+public class RequestMetrics {
+
+    /** The method and route label of requests that matched no route. */
+    public static final String UNMATCHED = "-";
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private final Map<String, Map<String, Route>> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Records a finished request.
+     * @param method        The request method.
+     * @param template      The matched route template, or null if no route matched.
+     * @param status        The response status.
+     * @param durationNanos How long the request took.
+     * @param bytesIn       The size of the request body.
+     * @param bytesOut      The size of the response body.
+     */
+    public void record(String method, String template, int status, long durationNanos, long bytesIn, long bytesOut) {
+        Route route = template == null ? route(UNMATCHED, UNMATCHED) : route(method, template);
+        route.latency(status).recordNanos(durationNanos);
+        route.bytesIn.addAndGet(bytesIn);
+        route.bytesOut.addAndGet(bytesOut);
+    }
+
+    /**
+     * Visits every route that has seen a request.
+     * @param visitor Called once per route.
+     */
+    public void forEach(Consumer<Route> visitor) {
+        for (Map<String, Route> byTemplate : routes.values()) {
+            byTemplate.values().forEach(visitor);
+        }
+    }
+
+    private Route route(String method, String template) {
+        Map<String, Route> byTemplate = routes.get(method);
+        if (byTemplate == null) {
+            byTemplate = routes.computeIfAbsent(method, m -> new ConcurrentHashMap<>());
+        }
+        Route route = byTemplate.get(template);
+        if (route == null) {
+            route = byTemplate.computeIfAbsent(template, t -> new Route(method, t));
+        }
+        return route;
+    }
+
+    /**
+     * What has been recorded for one method and route template.
+     */
+    public static final class Route {
+
+        private final String method;
+        private final String template;
+        private final AtomicReferenceArray<LatencyHistogram> byStatus = new AtomicReferenceArray<>(MAX_STATUS - MIN_STATUS + 1);
+        private final AtomicLong bytesIn = new AtomicLong();
+        private final AtomicLong bytesOut = new AtomicLong();
+
+        private Route(String method, String template) {
+            this.method = method;
+            this.template = template;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public long getBytesIn() {
+            return bytesIn.get();
+        }
+
+        public long getBytesOut() {
+            return bytesOut.get();
+        }
+
+        /**
+         * Visits the histogram of every status this route has answered with.
+         * @param visitor Called with each status and its histogram.
+         */
+        public void forEachStatus(StatusVisitor visitor) {
+            for (int i = 0; i < byStatus.length(); i++) {
+                LatencyHistogram histogram = byStatus.get(i);
+                if (histogram != null) {
+                    visitor.visit(MIN_STATUS + i, histogram);
+                }
+            }
+        }
+
+        private LatencyHistogram latency(int status) {
+            int index = Math.max(MIN_STATUS, Math.min(MAX_STATUS, status)) - MIN_STATUS;
+            LatencyHistogram histogram = byStatus.get(index);
+            if (histogram == null) {
+                byStatus.compareAndSet(index, null, new LatencyHistogram());
+                histogram = byStatus.get(index);
+            }
+            return histogram;
+        }
+    }
+
+    @FunctionalInterface
+    public interface StatusVisitor {
+        void visit(int status, LatencyHistogram histogram);
+    }
+}
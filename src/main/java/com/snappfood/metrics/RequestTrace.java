@@ -0,0 +1,161 @@
+package com.snappfood.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * The trace of the request being handled on the current thread: its id, sent
+ * back as {@code X-Request-Id}, and how long it spent in each {@link Phase}.
+ * The request handler binds it for the duration of a request, the way it binds
+ * the request's deadline, so the database layer can add to it without being
+ * passed anything.
+ * <p>
+ * Phase times are sums: a request that runs five queries has their times added
+ * up. Phases may nest; the user lookup and the queries run inside the handler.
+ */
+public final class RequestTrace {
+
+    /**
+     * The stages a request's time is split into.
+     */
+    public enum Phase {
+        /** Waiting for a worker thread after admission. */
+        QUEUE("queue"),
+        /** Parsing the query string, looking up the session and matching the route. */
+        ROUTE("route"),
+        /** Running the route's handler, everything it calls included. */
+        HANDLER("handler"),
+        /** Loading the authenticated user, as most handlers do first. */
+        USER_LOOKUP("user_lookup"),
+        /** Waiting for a database permit and a pooled connection. */
+        DB_CONNECT("db_connect"),
+        /** Executing SQL statements. */
+        DB_QUERY("db_query"),
+        /** Turning the response into JSON and handing it to the connection. */
+        SERIALIZE("serialize"),
+        /** Waiting for a slow client to read earlier parts of the response. */
+        WRITE("write");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+    private static final Pattern CLIENT_ID = Pattern.compile("[A-Za-z0-9._:-]{1,64}");
+    private static final Phase[] PHASES = Phase.values();
+
+    private final String id;
+    private final long[] phaseNanos = new long[PHASES.length];
+    private int queries;
+
+    private RequestTrace(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Binds a new trace to the current thread.
+     * @param clientId The id the client sent, if any; used when it is short and plain.
+     * @return The bound trace; call {@link #clear()} when the request is done.
+     */
+    public static RequestTrace start(String clientId) {
+        RequestTrace trace = new RequestTrace(idFor(clientId));
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * @return The current thread's trace, or null outside a request.
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Unbinds the current thread's trace. Pooled threads are reused, so this must always run.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Adds the time since {@code startNanos} to a phase of the current thread's trace, if any.
+     * @param phase      The phase.
+     * @param startNanos When the phase started, from {@link System#nanoTime()}.
+     */
+    public static void record(Phase phase, long startNanos) {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.add(phase, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Counts a statement executed for the current thread's request, if any.
+     */
+    public static void countQuery() {
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.queries++;
+        }
+    }
+
+    /**
+     * @param clientId The id the client sent, or null.
+     * @return The client's id if it is short and plain, otherwise a new one.
+     */
+    public static String idFor(String clientId) {
+        return clientId != null && CLIENT_ID.matcher(clientId).matches() ? clientId : newId();
+    }
+
+    /**
+     * @return A random 16-digit hex id.
+     */
+    public static String newId() {
+        String hex = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+
+    /**
+     * @param phase The phase.
+     * @param nanos Time to add to it.
+     */
+    public void add(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * @return The time spent in a phase so far, in nanoseconds.
+     */
+    public long get(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return How many SQL statements the request executed.
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * Appends the phase times as {@code name_us=N} fields.
+     * @param out Where to append.
+     */
+    public void describe(StringBuilder out) {
+        for (Phase phase : PHASES) {
+            out.append(' ').append(phase.getLabel()).append("_us=").append(phaseNanos[phase.ordinal()] / 1000);
+        }
+        out.append(" queries=").append(queries);
+    }
+}
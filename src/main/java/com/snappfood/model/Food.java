@@ -18,6 +18,12 @@ public class Food {
     @SerializedName("imageBase64")
     private String imageBase64;
 
+    @SerializedName("imageUrl")
+    private String imageUrl;
+
+    @SerializedName("imageThumbnailUrl")
+    private String imageThumbnailUrl;
+
     @SerializedName("description")
     private String description;
 
@@ -74,6 +80,11 @@ public class Food {
     public void setName(String name) { this.name = name; }
     public String getImageBase64() { return imageBase64; }
     public void setImageBase64(String imageBase64) { this.imageBase64 = imageBase64; }
+    public String getImageUrl() { return imageUrl; }
+    public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+
+    public String getImageThumbnailUrl() { return imageThumbnailUrl; }
+    public void setImageThumbnailUrl(String imageThumbnailUrl) { this.imageThumbnailUrl = imageThumbnailUrl; }
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
     public int getRestaurantId() { return restaurantId; }
@@ -20,6 +20,12 @@ public class Restaurant {
     @SerializedName("logoBase64")
     private String logoBase64;
 
+    @SerializedName("logoUrl")
+    private String logoUrl;
+
+    @SerializedName("logoThumbnailUrl")
+    private String logoThumbnailUrl;
+
     @SerializedName("address")
     private String address;
 
@@ -102,6 +108,28 @@ public class Restaurant {
         this.logoBase64 = logoBase64;
     }
 
+    /**
+     * @return The path of the uploaded logo, or null if the logo is Base64 or missing.
+     */
+    public String getLogoUrl() {
+        return logoUrl;
+    }
+
+    public void setLogoUrl(String logoUrl) {
+        this.logoUrl = logoUrl;
+    }
+
+    /**
+     * @return The path of the logo's thumbnail; only set in lists, in place of the logo itself.
+     */
+    public String getLogoThumbnailUrl() {
+        return logoThumbnailUrl;
+    }
+
+    public void setLogoThumbnailUrl(String logoThumbnailUrl) {
+        this.logoThumbnailUrl = logoThumbnailUrl;
+    }
+
     public String getAddress() {
         return address;
     }
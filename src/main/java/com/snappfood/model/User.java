@@ -38,6 +38,9 @@ public class User {
     @SerializedName("profileImageBase64")
     private String profileImageBase64;
 
+    @SerializedName("profileImageUrl")
+    private String profileImageUrl;
+
     @SerializedName("bank_info")
     private BankInfo bankInfo;
 
@@ -122,6 +125,17 @@ public class User {
         this.profileImageBase64 = profileImageBase64;
     }
 
+    /**
+     * @return The path of the uploaded profile image, or null if the image is Base64 or missing.
+     */
+    public String getProfileImageUrl() {
+        return profileImageUrl;
+    }
+
+    public void setProfileImageUrl(String profileImageUrl) {
+        this.profileImageUrl = profileImageUrl;
+    }
+
     public BankInfo getBankInfo() {
         return bankInfo;
     }
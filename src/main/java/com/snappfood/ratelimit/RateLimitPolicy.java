@@ -0,0 +1,59 @@
+package com.snappfood.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * How often one client may call one route: up to {@code capacity} calls at
+ * once, refilled evenly so that {@code capacity} more are allowed per
+ * {@code period}. Policies are declared as constants next to the handlers they
+ * guard and compared by identity.
+ */
+public final class RateLimitPolicy {
+
+    private final String route;
+    private final int capacity;
+    private final long nanosPerToken;
+    private final String message;
+
+    /**
+     * @param route    The route the policy guards, as in the route table; used in metrics.
+     * @param capacity How many calls a client may make in a burst.
+     * @param period   How long it takes for a whole burst to be allowed again.
+     * @param message  The message of the 429 sent when a call is refused.
+     */
+    public RateLimitPolicy(String route, int capacity, Duration period, String message) {
+        if (capacity <= 0 || period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("Capacity and period must be positive.");
+        }
+        this.route = route;
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1, period.toNanos() / capacity);
+        this.message = message;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return How long it takes for one call to be allowed again.
+     */
+    public long getNanosPerToken() {
+        return nanosPerToken;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return How far ahead of now a bucket may be drawn before it refuses calls.
+     */
+    long getBurstNanos() {
+        return nanosPerToken * capacity;
+    }
+}
@@ -0,0 +1,176 @@
+package com.snappfood.ratelimit;
+
+import com.snappfood.exception.TooManyRequestsException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The per-client rate limits of every route, kept as one {@link TokenBucket}
+ * per policy and client. Checking a limit takes no lock.
+ * <p>
+ * A bucket is only worth keeping while it is not full: a full one allows
+ * exactly what a new one would. Buckets are therefore filed in a ring of
+ * one-second slots by the time they will be full again, and whichever request
+ * first sees a new second sweeps the slots that have come due, dropping the
+ * buckets that are full and refiling the rest. Memory thus follows the number
+ * of clients that have used a route within its refill period, rather than
+ * every client since startup, and no background thread is needed.
+ */
+public class RateLimiterRegistry {
+
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int SLOTS = 128; // a power of two; buckets due later wait a turn
+
+    private final Map<RateLimitPolicy, PolicyState> policies = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<TokenBucket>[] slots;
+    private final long originNanos = System.nanoTime();
+    private final AtomicLong sweptTick = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public RateLimiterRegistry() {
+        this.slots = (ConcurrentLinkedQueue<TokenBucket>[]) new ConcurrentLinkedQueue[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Counts a call against a client's limit for a route.
+     * @param policy The route's policy.
+     * @param key    Who is calling, such as a user id.
+     * @throws TooManyRequestsException with the policy's message if the client is over the limit.
+     */
+    public void acquire(RateLimitPolicy policy, Object key) throws TooManyRequestsException {
+        if (!tryAcquire(policy, key)) {
+            throw new TooManyRequestsException(policy.getMessage());
+        }
+    }
+
+    /**
+     * Counts a call against a client's limit for a route.
+     * @param policy The route's policy.
+     * @param key    Who is calling, such as a user id.
+     * @return Whether the call is allowed.
+     */
+    public boolean tryAcquire(RateLimitPolicy policy, Object key) {
+        long now = System.nanoTime();
+        sweep(now);
+        PolicyState state = policies.get(policy);
+        if (state == null) {
+            state = policies.computeIfAbsent(policy, p -> new PolicyState());
+        }
+        while (true) {
+            TokenBucket bucket = state.buckets.get(key);
+            if (bucket == null) {
+                TokenBucket created = new TokenBucket(policy, key, now);
+                bucket = state.buckets.putIfAbsent(key, created);
+                if (bucket == null) {
+                    bucket = created;
+                    file(bucket, sweptTick.get());
+                }
+            }
+            int result = bucket.tryTake(now);
+            if (result == TokenBucket.TAKEN) {
+                return true;
+            }
+            if (result == TokenBucket.REFUSED) {
+                state.refused.increment();
+                return false;
+            }
+            // swept between the lookup and the take; its replacement starts full, as it would have been
+            state.buckets.remove(key, bucket);
+        }
+    }
+
+    /**
+     * Calls the visitor once for each policy that has been used.
+     */
+    public void forEachPolicy(PolicyVisitor visitor) {
+        policies.forEach((policy, state) -> visitor.visit(policy, state.buckets.size(), state.refused.sum()));
+    }
+
+    /**
+     * @return How many idle buckets have been dropped since startup.
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Receives the state of one policy.
+     */
+    @FunctionalInterface
+    public interface PolicyVisitor {
+        /**
+         * @param policy  The policy.
+         * @param buckets How many clients currently have a bucket for it.
+         * @param refused How many calls it has refused since startup.
+         */
+        void visit(RateLimitPolicy policy, int buckets, long refused);
+    }
+
+    private void sweep(long now) {
+        long target = tickOf(now);
+        long swept = sweptTick.get();
+        if (target <= swept || !sweptTick.compareAndSet(swept, target)) {
+            return;
+        }
+        // after a long stall there is no point sweeping the same slots more than once
+        for (long tick = Math.max(swept + 1, target - SLOTS + 1); tick <= target; tick++) {
+            drain(slots[(int) (tick & (SLOTS - 1))], target, now);
+        }
+    }
+
+    /**
+     * Drops the full buckets in a slot and refiles the others. Buckets are
+     * refiled only once the slot is empty, so a slot is never refilled while
+     * it is being drained.
+     */
+    private void drain(ConcurrentLinkedQueue<TokenBucket> slot, long currentTick, long now) {
+        List<TokenBucket> notDue = null;
+        TokenBucket bucket;
+        while ((bucket = slot.poll()) != null) {
+            if (bucket.retireIfFull(now)) {
+                policies.get(bucket.getPolicy()).buckets.remove(bucket.getKey(), bucket);
+                evicted.incrementAndGet();
+            } else if (!bucket.isRetired()) {
+                if (notDue == null) {
+                    notDue = new ArrayList<>();
+                }
+                notDue.add(bucket);
+            }
+        }
+        if (notDue != null) {
+            for (TokenBucket pending : notDue) {
+                file(pending, currentTick);
+            }
+        }
+    }
+
+    /**
+     * Files a bucket in the slot of the second it will be full, or as close to
+     * it as the ring reaches.
+     */
+    private void file(TokenBucket bucket, long currentTick) {
+        long due = tickOf(bucket.getFullAtNanos()) + 1;
+        long tick = Math.min(Math.max(due, currentTick + 1), currentTick + SLOTS - 1);
+        slots[(int) (tick & (SLOTS - 1))].add(bucket);
+    }
+
+    private long tickOf(long nanos) {
+        return Math.floorDiv(nanos - originNanos, TICK_NANOS);
+    }
+
+    private static final class PolicyState {
+        final Map<Object, TokenBucket> buckets = new ConcurrentHashMap<>();
+        final LongAdder refused = new LongAdder();
+    }
+}
@@ -0,0 +1,85 @@
+package com.snappfood.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One client's token bucket for one policy, kept as a single number: the time
+ * at which the bucket will be full again. A full bucket has that time in the
+ * past; taking a token moves it forward by one token's refill time, and a take
+ * is refused when it would move it further than a whole burst ahead of now.
+ * Taking a token is therefore one compare-and-set, with no lock and nothing to
+ * refill on a timer.
+ * <p>
+ * A bucket that is full again behaves exactly like a new one, so the
+ * {@link RateLimiterRegistry} may retire it; once retired it refuses every
+ * take, telling the caller to look up its replacement.
+ */
+final class TokenBucket {
+
+    /** What {@link #tryTake} returns for a retired bucket. */
+    static final int RETIRED = -1;
+    /** What {@link #tryTake} returns when the call is refused. */
+    static final int REFUSED = 0;
+    /** What {@link #tryTake} returns when the call is allowed. */
+    static final int TAKEN = 1;
+
+    private static final long RETIRED_MARK = Long.MIN_VALUE;
+
+    private final RateLimitPolicy policy;
+    private final Object key;
+    private final AtomicLong fullAtNanos;
+
+    TokenBucket(RateLimitPolicy policy, Object key, long nowNanos) {
+        this.policy = policy;
+        this.key = key;
+        this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes one token if there is one.
+     * @return {@link #TAKEN}, {@link #REFUSED} or {@link #RETIRED}.
+     */
+    int tryTake(long nowNanos) {
+        while (true) {
+            long fullAt = fullAtNanos.get();
+            if (fullAt == RETIRED_MARK) {
+                return RETIRED;
+            }
+            long next = (fullAt - nowNanos > 0 ? fullAt : nowNanos) + policy.getNanosPerToken();
+            if (next - nowNanos > policy.getBurstNanos()) {
+                return REFUSED;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, next)) {
+                return TAKEN;
+            }
+        }
+    }
+
+    /**
+     * Retires the bucket if it is full, so that no token taken from it is lost.
+     * @return Whether it was retired.
+     */
+    boolean retireIfFull(long nowNanos) {
+        long fullAt = fullAtNanos.get();
+        return fullAt != RETIRED_MARK && fullAt - nowNanos <= 0 && fullAtNanos.compareAndSet(fullAt, RETIRED_MARK);
+    }
+
+    /**
+     * @return When the bucket will be full again; meaningless once retired.
+     */
+    long getFullAtNanos() {
+        return fullAtNanos.get();
+    }
+
+    boolean isRetired() {
+        return fullAtNanos.get() == RETIRED_MARK;
+    }
+
+    RateLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    Object getKey() {
+        return key;
+    }
+}
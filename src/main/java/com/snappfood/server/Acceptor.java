@@ -0,0 +1,68 @@
+package com.snappfood.server;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Accepts client connections on a blocking server socket and deals them out to
+ * the reactors in round-robin order. Accepting is the only thing this thread
+ * does, so a burst of new connections never delays reads on existing ones.
+ * <p>
+ * A failed accept, typically because the process is out of file descriptors,
+ * is followed by a pause that doubles with each failure in a row, so the thread
+ * does not spin at the moment the server is most loaded; failures are reported
+ * at most once per {@link #REPORT_INTERVAL_NANOS}.
+ */
+public class Acceptor implements Runnable {
+
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final ServerSocketChannel serverChannel;
+    private final Reactor[] reactors;
+    private int next;
+
+    /**
+     * @param serverChannel A bound server socket channel in blocking mode.
+     * @param reactors      The reactors that will own accepted connections.
+     */
+    public Acceptor(ServerSocketChannel serverChannel, Reactor[] reactors) {
+        this.serverChannel = serverChannel;
+        this.reactors = reactors;
+    }
+
+    @Override
+    public void run() {
+        long backoffNanos = 0;
+        long lastReportNanos = System.nanoTime() - REPORT_INTERVAL_NANOS;
+        int unreported = 0;
+        while (serverChannel.isOpen()) {
+            SocketChannel clientChannel;
+            try {
+                clientChannel = serverChannel.accept();
+            } catch (IOException e) {
+                if (!serverChannel.isOpen()) {
+                    break;
+                }
+                unreported++;
+                long now = System.nanoTime();
+                if (now - lastReportNanos >= REPORT_INTERVAL_NANOS) {
+                    System.err.println("Error accepting client connection (" + unreported + " failures since last report): "
+                            + e.getMessage());
+                    lastReportNanos = now;
+                    unreported = 0;
+                }
+                backoffNanos = Math.min(MAX_BACKOFF_NANOS, Math.max(MIN_BACKOFF_NANOS, backoffNanos * 2));
+                LockSupport.parkNanos(backoffNanos);
+                continue;
+            }
+            backoffNanos = 0;
+            reactors[next].register(clientChannel);
+            next = (next + 1) % reactors.length;
+        }
+    }
+}
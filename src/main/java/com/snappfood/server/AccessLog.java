@@ -0,0 +1,159 @@
+package com.snappfood.server;
+
+import com.snappfood.logging.AsyncLogger;
+import com.snappfood.logging.LogEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Writes one structured line per request through an {@link AsyncLogger}.
+ * <p>
+ * Successful requests can be sampled per route, errors are always logged.
+ * Bodies are truncated, and bearer tokens and password or token fields in
+ * JSON bodies are redacted. The worker only captures references; the line is
+ * formatted on the logger's writer thread.
+ */
+public class AccessLog {
+
+    private static final Pattern SECRET_FIELDS = Pattern.compile(
+            "(\"(?:password|token|old_password|new_password)\"\\s*:\\s*\")[^\"]*(\"?)");
+    private static final String REDACTED = "***";
+
+    private final AsyncLogger logger;
+    private final int maxBodyBytes;
+    private final Map<String, Double> sampleRates = new ConcurrentHashMap<>();
+
+    /**
+     * @param logger       The logger lines are written to.
+     * @param maxBodyBytes How many bytes of each body are kept.
+     */
+    public AccessLog(AsyncLogger logger, int maxBodyBytes) {
+        this.logger = logger;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Logs only a fraction of the successful requests to a route.
+     * @param method   The request method.
+     * @param template The route template, as declared in the route table.
+     * @param rate     The fraction of requests to log, from 0 to 1.
+     * @return this access log, for chaining.
+     */
+    public AccessLog sample(String method, String template, double rate) {
+        sampleRates.put(method + " " + template, rate);
+        return this;
+    }
+
+    /**
+     * Records a finished request, unless it is sampled out or the logger is full.
+     *
+     * @param request   The request.
+     * @param traceId   The request's trace id, as sent in X-Request-Id.
+     * @param template  The matched route template, or null if no route matched.
+     * @param status     The response status.
+     * @param bodyPrefix The start of the uncompressed response body.
+     * @param bodyBytes  The full uncompressed response body length.
+     * @param startNanos When handling started, from {@link System#nanoTime()}.
+     * @param connection The client connection.
+     */
+    public void record(HttpRequest request, String traceId, String template, int status, byte[] bodyPrefix, long bodyBytes,
+                       long startNanos, ClientConnection connection) {
+        if (status < 400 && template != null) {
+            Double rate = sampleRates.get(request.getMethod() + " " + template);
+            if (rate != null && ThreadLocalRandom.current().nextDouble() >= rate) {
+                return;
+            }
+        }
+        long durationMicros = (System.nanoTime() - startNanos) / 1000;
+        long timestamp = System.currentTimeMillis();
+        logger.log(new Entry(timestamp, request, traceId, template, status, bodyPrefix, bodyBytes, durationMicros,
+                String.valueOf(connection.getRemoteAddress())));
+    }
+
+    /**
+     * @return The underlying logger.
+     */
+    public AsyncLogger getLogger() {
+        return logger;
+    }
+
+    /**
+     * @param body       The whole body, or just its start.
+     * @param fullLength The length of the whole body.
+     */
+    private String truncate(byte[] body, long fullLength) {
+        if (body == null || body.length == 0) {
+            return "";
+        }
+        // decode only what we keep; a cut multi-byte character just becomes a replacement char
+        int length = Math.min(body.length, maxBodyBytes);
+        String kept = new String(body, 0, length, StandardCharsets.UTF_8);
+        kept = SECRET_FIELDS.matcher(kept).replaceAll("$1" + REDACTED + "$2");
+        return fullLength > maxBodyBytes ? kept + "...(" + fullLength + " bytes)" : kept;
+    }
+
+    static void appendQuoted(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(' ');
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private final class Entry implements LogEvent {
+        private final long timestamp;
+        private final HttpRequest request;
+        private final String traceId;
+        private final String template;
+        private final int status;
+        private final byte[] bodyPrefix;
+        private final long bodyBytes;
+        private final long durationMicros;
+        private final String remote;
+
+        Entry(long timestamp, HttpRequest request, String traceId, String template, int status, byte[] bodyPrefix,
+              long bodyBytes, long durationMicros, String remote) {
+            this.timestamp = timestamp;
+            this.request = request;
+            this.traceId = traceId;
+            this.template = template;
+            this.status = status;
+            this.bodyPrefix = bodyPrefix;
+            this.bodyBytes = bodyBytes;
+            this.durationMicros = durationMicros;
+            this.remote = remote;
+        }
+
+        @Override
+        public void format(StringBuilder out) {
+            out.append(Instant.ofEpochMilli(timestamp))
+                    .append(" id=").append(traceId)
+                    .append(" method=").append(request.getMethod())
+                    .append(" path=");
+            appendQuoted(out, request.getPath());
+            out.append(" route=").append(template != null ? template : "-")
+                    .append(" status=").append(status)
+                    .append(" duration_us=").append(durationMicros)
+                    .append(" in_bytes=").append(request.getBody().length)
+                    .append(" out_bytes=").append(bodyBytes)
+                    .append(" remote=").append(remote)
+                    .append(" auth=").append(request.getHeader("authorization") != null ? "Bearer " + REDACTED : "-")
+                    .append(" req=");
+            appendQuoted(out, truncate(request.getBody(), request.getBody().length));
+            out.append(" resp=");
+            appendQuoted(out, truncate(bodyPrefix, bodyBytes));
+        }
+    }
+}
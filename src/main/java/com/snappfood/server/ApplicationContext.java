@@ -0,0 +1,303 @@
+package com.snappfood.server;
+
+import com.google.gson.Gson;
+import com.snappfood.controller.*;
+import com.snappfood.dao.*;
+import com.snappfood.logging.AsyncLogger;
+import com.snappfood.metrics.RequestMetrics;
+import com.snappfood.ratelimit.RateLimiterRegistry;
+import com.snappfood.server.routing.Router;
+import com.snappfood.storage.ImageDecoder;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ImageValidator;
+import com.snappfood.storage.ThumbnailGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Builds the long-lived, shared objects once at startup and hands them to
+ * every request handler, so per-client state such as rate-limit buckets is
+ * seen by every request.
+ */
+public class ApplicationContext {
+
+    private static final int LOG_BUFFER_CAPACITY = 16 * 1024; // events
+    private static final long LOG_FILE_MAX_BYTES = 64L * 1024 * 1024; // 64 MB
+    private static final int LOG_FILE_BACKUPS = 5;
+    private static final int LOG_BODY_MAX_BYTES = 512;
+    private static final int COMPRESSION_THRESHOLD = 1024; // bytes
+    private static final int COMPRESSION_LEVEL = 6;
+    private static final int MAX_POOLED_DEFLATERS = 64;
+    private static final int RESPONSE_BUFFER_SIZE = 16 * 1024; // one chunk of a streamed response
+    private static final int RESPONSE_BUFFERS_PER_SLAB = 64;
+    private static final int ADMISSION_INITIAL_LIMIT = 20; // requests, in virtual mode
+    private static final int ADMISSION_MIN_LIMIT = 2;
+    private static final int ADMISSION_MAX_LIMIT = 1000;
+    private static final long ADMISSION_TARGET_LATENCY_MS = 500;
+    private static final int IMAGE_DECODE_QUEUE = 16; // images waiting for a decoder thread
+
+    private final Gson gson = new Gson();
+
+    private final CatalogVersions catalogVersions = new CatalogVersions();
+    private final WalletDAO walletDAO = new WalletDAO();
+    private final UserDAO userDAO = new UserDAO(walletDAO);
+    private final OrderDAO orderDAO = new OrderDAO(catalogVersions);
+    private final RestaurantDAO restaurantDAO = new RestaurantDAO();
+    private final RatingDAO ratingDAO = new RatingDAO();
+
+    private final OrderController orderController = new OrderController(orderDAO, restaurantDAO, userDAO, walletDAO);
+    private final AdminController adminController = new AdminController(userDAO, orderDAO, restaurantDAO, walletDAO);
+    private final CustomerController customerController = new CustomerController(restaurantDAO, userDAO, orderDAO, ratingDAO);
+    private final CourierController courierController = new CourierController(orderController, orderDAO, userDAO);
+    private final WalletController walletController = new WalletController(walletDAO, userDAO, orderDAO);
+
+    private final Router<RouteHandler> router = RouteTable.build();
+    private final ResponseCompressor compressor = new ResponseCompressor(COMPRESSION_THRESHOLD, COMPRESSION_LEVEL, MAX_POOLED_DEFLATERS);
+    private final BufferPool responseBufferPool = new BufferPool(RESPONSE_BUFFER_SIZE, RESPONSE_BUFFERS_PER_SLAB);
+    private final ServerConfig config;
+    private final ImageStore imageStore;
+    private final ImageDecoder imageDecoder;
+    private final ImageValidator imageValidator;
+    private final ThumbnailGenerator thumbnailGenerator;
+    private final UserController userController;
+    private final RestaurantController restaurantController;
+    private final ExecutorService requestExecutor;
+    private final ConcurrencyLimiter admissionLimiter;
+    private final AsyncLogger logger;
+    private final AccessLog accessLog;
+    private final SlowRequestLog slowRequestLog;
+    private final RequestMetrics requestMetrics = new RequestMetrics();
+    private final RateLimiterRegistry rateLimits = new RateLimiterRegistry();
+    private final AtomicLongArray reapedConnections = new AtomicLongArray(ConnectionTimeout.values().length);
+    private volatile boolean draining;
+
+    /**
+     * @param config The server's startup options.
+     * @throws IOException if the log file or the image directory cannot be opened.
+     */
+    public ApplicationContext(ServerConfig config) throws IOException {
+        this.config = config;
+        this.imageStore = new ImageStore(Path.of(config.getImageDirectory()));
+        this.imageDecoder = new ImageDecoder(config.getImageDecodeThreads(), IMAGE_DECODE_QUEUE);
+        this.imageValidator = new ImageValidator(config.getImageMaxBytes(), config.getImageMaxWidth(),
+                config.getImageMaxHeight());
+        this.thumbnailGenerator = new ThumbnailGenerator(imageStore, imageDecoder);
+        this.userController = new UserController(userDAO, gson, imageStore, imageValidator, rateLimits);
+        this.restaurantController = new RestaurantController(restaurantDAO, userDAO, orderDAO, orderController,
+                catalogVersions, imageStore, imageValidator, thumbnailGenerator, rateLimits);
+        this.requestExecutor = createExecutor(config);
+        this.admissionLimiter = createAdmissionLimiter(config);
+        this.logger = new AsyncLogger(Path.of(config.getLogDirectory(), "access.log"),
+                LOG_BUFFER_CAPACITY, LOG_FILE_MAX_BYTES, LOG_FILE_BACKUPS);
+        // the listing endpoints are the busiest and their successes are all alike
+        this.accessLog = new AccessLog(logger, LOG_BODY_MAX_BYTES)
+                .sample("POST", "/vendors", 0.1)
+                .sample("POST", "/items", 0.1)
+                .sample("GET", "/vendors/{id:int}", 0.1)
+                .sample("GET", "/items/{id:int}", 0.1);
+        this.slowRequestLog = new SlowRequestLog(logger, config.getSlowRequestMs());
+    }
+
+    /**
+     * Creates the executor that runs request handlers. In virtual mode every
+     * request gets its own virtual thread, so a handler blocked on JDBC only
+     * parks its virtual thread; concurrent database use is capped separately
+     * by {@link com.snappfood.database.DatabaseManager}.
+     */
+    private static ExecutorService createExecutor(ServerConfig config) {
+        if (config.getExecutionMode() == ServerConfig.ExecutionMode.VIRTUAL) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        //Creates a fixed-size thread pool for worker threads
+        return Executors.newFixedThreadPool(config.getWorkerThreads());
+    }
+
+    /**
+     * In pooled mode the limit starts at twice the pool size, so a little
+     * queueing is allowed; the limiter then finds the level the database sustains.
+     */
+    private static ConcurrencyLimiter createAdmissionLimiter(ServerConfig config) {
+        int initial = config.getExecutionMode() == ServerConfig.ExecutionMode.POOLED
+                ? config.getWorkerThreads() * 2
+                : ADMISSION_INITIAL_LIMIT;
+        initial = Math.max(ADMISSION_MIN_LIMIT, Math.min(ADMISSION_MAX_LIMIT, initial));
+        return new ConcurrencyLimiter(initial, ADMISSION_MIN_LIMIT, ADMISSION_MAX_LIMIT, ADMISSION_TARGET_LATENCY_MS);
+    }
+
+    /**
+     * Marks the server as shutting down, so responses from now on close their connection.
+     */
+    public void startDraining() {
+        draining = true;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Moves every image still stored in the database into the image store.
+     * Safe to run while serving: a row is only rewritten once its image is on disk.
+     * @return How many images were moved.
+     */
+    public int migrateLegacyImages() throws SQLException, IOException {
+        return userDAO.migrateProfileImages(imageStore) + restaurantDAO.migrateImages(imageStore);
+    }
+
+    public ImageStore getImageStore() {
+        return imageStore;
+    }
+
+    public ImageDecoder getImageDecoder() {
+        return imageDecoder;
+    }
+
+    public ThumbnailGenerator getThumbnailGenerator() {
+        return thumbnailGenerator;
+    }
+
+    public ServerConfig getConfig() {
+        return config;
+    }
+
+    public ExecutorService getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    public ConcurrencyLimiter getAdmissionLimiter() {
+        return admissionLimiter;
+    }
+
+    public AsyncLogger getLogger() {
+        return logger;
+    }
+
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public SlowRequestLog getSlowRequestLog() {
+        return slowRequestLog;
+    }
+
+    /**
+     * @return The per-route latency histograms and byte counters.
+     */
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    /**
+     * @return The per-route, per-client rate limits.
+     */
+    public RateLimiterRegistry getRateLimits() {
+        return rateLimits;
+    }
+
+    /**
+     * Counts a connection a reactor closed because it timed out.
+     * @param kind The timeout that expired.
+     */
+    public void recordReapedConnection(ConnectionTimeout kind) {
+        reapedConnections.incrementAndGet(kind.ordinal());
+    }
+
+    /**
+     * @param kind A kind of timeout.
+     * @return How many connections have been closed for that timeout since startup.
+     */
+    public long getReapedConnections(ConnectionTimeout kind) {
+        return reapedConnections.get(kind.ordinal());
+    }
+
+    /**
+     * @return The reaped-connection counts as one line for the stats report.
+     */
+    public String describeReapedConnections() {
+        StringBuilder line = new StringBuilder("Connections reaped:");
+        for (ConnectionTimeout kind : ConnectionTimeout.values()) {
+            line.append(' ').append(kind.getLabel()).append('=').append(getReapedConnections(kind));
+        }
+        return line.toString();
+    }
+
+    public ResponseCompressor getCompressor() {
+        return compressor;
+    }
+
+    public BufferPool getResponseBufferPool() {
+        return responseBufferPool;
+    }
+
+    /**
+     * @return How many bytes of a response body are buffered before it is sent in chunks.
+     */
+    public int getResponseBufferSize() {
+        return RESPONSE_BUFFER_SIZE;
+    }
+
+    public Router<RouteHandler> getRouter() {
+        return router;
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    public UserDAO getUserDAO() {
+        return userDAO;
+    }
+
+    public CatalogVersions getCatalogVersions() {
+        return catalogVersions;
+    }
+
+    public OrderDAO getOrderDAO() {
+        return orderDAO;
+    }
+
+    public RestaurantDAO getRestaurantDAO() {
+        return restaurantDAO;
+    }
+
+    public RatingDAO getRatingDAO() {
+        return ratingDAO;
+    }
+
+    public WalletDAO getWalletDAO() {
+        return walletDAO;
+    }
+
+    public UserController getUserController() {
+        return userController;
+    }
+
+    public AdminController getAdminController() {
+        return adminController;
+    }
+
+    public RestaurantController getRestaurantController() {
+        return restaurantController;
+    }
+
+    public OrderController getOrderController() {
+        return orderController;
+    }
+
+    public CustomerController getCustomerController() {
+        return customerController;
+    }
+
+    public CourierController getCourierController() {
+        return courierController;
+    }
+
+    public WalletController getWalletController() {
+        return walletController;
+    }
+}
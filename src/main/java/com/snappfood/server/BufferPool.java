@@ -0,0 +1,121 @@
+package com.snappfood.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of fixed-size direct byte buffers used for socket reads.
+ * Buffers are carved out of larger direct "slabs"; when the pool runs dry a new
+ * slab is allocated, so the pool grows on demand but never shrinks.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int buffersPerSlab;
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicInteger slabCount = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    /**
+     * @param bufferSize     The size in bytes of every buffer handed out by the pool.
+     * @param buffersPerSlab How many buffers are carved out of each slab allocation.
+     */
+    public BufferPool(int bufferSize, int buffersPerSlab) {
+        if (bufferSize <= 0 || buffersPerSlab <= 0) {
+            throw new IllegalArgumentException("Buffer size and slab size must be positive.");
+        }
+        this.bufferSize = bufferSize;
+        this.buffersPerSlab = buffersPerSlab;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new slab if none is free.
+     * @return A buffer ready for writing.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            buffer = allocateSlab();
+        }
+        inUse.incrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers that did not come from this pool are ignored.
+     * @param buffer The buffer to give back; may be null.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        buffer.clear();
+        inUse.decrementAndGet();
+        freeBuffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getSlabCount() {
+        return slabCount.get();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * @return The number of buffers this pool has ever allocated.
+     */
+    public int getCapacity() {
+        return slabCount.get() * buffersPerSlab;
+    }
+
+    /**
+     * Allocates a new slab, keeps one buffer for the caller and puts the rest on the free list.
+     */
+    private ByteBuffer allocateSlab() {
+        ByteBuffer slab = ByteBuffer.allocateDirect(bufferSize * buffersPerSlab);
+        slabCount.incrementAndGet();
+        ByteBuffer first = null;
+        for (int i = 0; i < buffersPerSlab; i++) {
+            slab.limit((i + 1) * bufferSize).position(i * bufferSize);
+            ByteBuffer slice = slab.slice();
+            if (first == null) {
+                first = slice;
+            } else {
+                freeBuffers.offer(slice);
+            }
+        }
+        return first;
+    }
+
+    @Override
+    public String toString() {
+        long h = hits.get();
+        long m = misses.get();
+        long total = h + m;
+        double hitRate = total == 0 ? 0.0 : (h * 100.0) / total;
+        return String.format("BufferPool[bufferSize=%d, slabs=%d, capacity=%d, inUse=%d, hits=%d, misses=%d, hitRate=%.1f%%]",
+                bufferSize, getSlabCount(), getCapacity(), getInUse(), h, m, hitRate);
+    }
+}
@@ -0,0 +1,139 @@
+package com.snappfood.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends a response body of unknown length with chunked transfer encoding.
+ * Bytes are copied into buffers borrowed from a {@link BufferPool}; each full
+ * buffer becomes one chunk queued on the connection, and the response head
+ * goes out with the first chunk in the same gathering write.
+ * Used by one worker thread at a time.
+ */
+class ChunkedChannelOutput extends OutputStream {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ClientConnection connection;
+    private final BufferPool pool;
+    private final boolean keepAlive;
+    private ByteBuffer[] head;
+    private ByteBuffer current;
+    private long bytesWritten;
+    private boolean closed;
+
+    /**
+     * @param connection The connection to write to.
+     * @param pool       The pool chunk buffers are borrowed from.
+     * @param head       The encoded status line and headers, sent before the first chunk.
+     * @param keepAlive  Whether the connection stays open after the response.
+     */
+    ChunkedChannelOutput(ClientConnection connection, BufferPool pool, ByteBuffer[] head, boolean keepAlive) {
+        this.connection = connection;
+        this.pool = pool;
+        this.head = head;
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureSpace();
+        current.put((byte) b);
+        bytesWritten++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            ensureSpace();
+            int count = Math.min(len, current.remaining());
+            current.put(b, off, count);
+            off += count;
+            len -= count;
+            bytesWritten += count;
+        }
+    }
+
+    /**
+     * Sends what is buffered, the terminating zero-length chunk, and marks the response complete.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        emitChunk();
+        if (head != null) {
+            // nothing was written at all; the head still has to go out
+            connection.write(head[0], head[1], ByteBuffer.wrap(LAST_CHUNK));
+            head = null;
+        } else {
+            connection.write(ByteBuffer.wrap(LAST_CHUNK));
+        }
+        connection.finish(keepAlive);
+    }
+
+    /**
+     * Gives up on the response after part of it may have been sent. The
+     * connection is closed once the queued chunks are written, so the client
+     * sees a truncated body rather than a well-formed one.
+     */
+    void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.release(current);
+        current = null;
+        connection.finish(false);
+    }
+
+    /**
+     * @return The number of body bytes written, before chunk framing.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void ensureSpace() throws IOException {
+        if (closed) {
+            throw new IOException("Response already finished.");
+        }
+        if (current != null && !current.hasRemaining()) {
+            emitChunk();
+        }
+        if (current == null) {
+            current = pool.acquire();
+        }
+    }
+
+    /**
+     * Queues the current buffer as one chunk, with the head in front of the first one.
+     * The buffer goes back to the pool once the selector thread has written it.
+     */
+    private void emitChunk() throws IOException {
+        ByteBuffer data = current;
+        current = null;
+        if (data == null) {
+            return;
+        }
+        if (data.position() == 0) {
+            pool.release(data);
+            return;
+        }
+        data.flip();
+        ByteBuffer size = ByteBuffer.wrap((Integer.toHexString(data.remaining()) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer[] buffers;
+        if (head != null) {
+            buffers = new ByteBuffer[]{head[0], head[1], size, data, ByteBuffer.wrap(CRLF)};
+            head = null;
+        } else {
+            buffers = new ByteBuffer[]{size, data, ByteBuffer.wrap(CRLF)};
+        }
+        connection.writeChunk(buffers, data, pool);
+    }
+}
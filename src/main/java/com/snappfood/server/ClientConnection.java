@@ -0,0 +1,420 @@
+package com.snappfood.server;
+
+import com.snappfood.exception.MalformedRequestException;
+import com.snappfood.metrics.RequestTrace;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-connection state attached to a client's selection key.
+ * Socket reads go through a direct buffer borrowed from a shared {@link BufferPool}
+ * for as long as the connection lives, and are fed straight into the
+ * connection's {@link HttpRequestParser}. Bytes of a pipelined request that
+ * follow a completed one stay in the read buffer until the connection resumes.
+ * <p>
+ * Responses are never written by worker threads. Workers queue encoded buffers
+ * here and the selector thread drains the queue whenever the socket is writable,
+ * so a slow client only ever costs memory for its queued response. Files are
+ * queued as an open channel and copied to the socket by the kernel with
+ * {@link FileChannel#transferTo}, so their bytes never enter the Java heap.
+ * A connection belongs to exactly one {@link Reactor} for its whole life.
+ */
+public class ClientConnection {
+
+    private final SocketChannel channel;
+    private final BufferPool bufferPool;
+    private final Reactor reactor;
+    private final SocketAddress remoteAddress;
+    private final int localPort;
+    private final HttpRequestParser parser;
+    private SelectionKey key;
+
+    private ByteBuffer readBuffer;
+    private boolean endOfStream;
+
+    private static final int MAX_QUEUED_CHUNKS = 8; // per connection, for streamed responses
+    private static final long CHUNK_WAIT_MS = 100;
+
+    private final Queue<Outbound> outbound = new ConcurrentLinkedQueue<>();
+    private final Semaphore chunkPermits = new Semaphore(MAX_QUEUED_CHUNKS);
+    private volatile boolean responseComplete;
+    private volatile boolean keepAliveAfterResponse;
+
+    private final TimingWheel.Timeout<ClientConnection> timeout = new TimingWheel.Timeout<>(this);
+    private ConnectionTimeout timeoutKind;
+    private long bodyDeadlineMs;
+    private volatile boolean inFlight;
+    private volatile boolean closed;
+
+    public ClientConnection(SocketChannel channel, BufferPool bufferPool, Reactor reactor, HttpRequestParser parser) throws IOException {
+        this.channel = channel;
+        this.bufferPool = bufferPool;
+        this.reactor = reactor;
+        this.parser = parser;
+        this.remoteAddress = channel.getRemoteAddress();
+        this.localPort = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Parses the next request, reading from the socket only if the bytes already
+     * buffered do not complete one. Reading stops as soon as a request completes,
+     * so later pipelined requests stay in the socket until this one is answered.
+     *
+     * @return The next complete request, or null if more bytes are needed.
+     * @throws IOException if the read fails.
+     * @throws MalformedRequestException if the client sent something that is not HTTP.
+     */
+    public HttpRequest readRequest() throws IOException, MalformedRequestException {
+        if (readBuffer == null) {
+            readBuffer = bufferPool.acquire();
+        }
+        HttpRequest request = parseBuffered();
+        while (request == null && !endOfStream) {
+            int read = channel.read(readBuffer);
+            if (read == -1) {
+                endOfStream = true;
+                break;
+            }
+            if (read == 0) {
+                break;
+            }
+            request = parseBuffered();
+        }
+        return request;
+    }
+
+    /**
+     * @return true once the client has shut down its side of the connection.
+     */
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * @return true if part of a request has been received but not yet completed.
+     */
+    public boolean isMidRequest() {
+        return parser.isMidRequest();
+    }
+
+    /**
+     * @return true once the headers of the current request are in and its body is being read.
+     */
+    public boolean isReadingBody() {
+        return parser.isReadingBody();
+    }
+
+    /**
+     * @return The length of the body being read, valid while {@link #isReadingBody()}.
+     */
+    public int getBodyLength() {
+        return parser.getBodyLength();
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * @return The server port the client connected to, which tells the API and metrics ports apart.
+     */
+    public int getLocalPort() {
+        return localPort;
+    }
+
+    public SelectionKey getKey() {
+        return key;
+    }
+
+    public void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * The connection's entry in its reactor's timing wheel. Only the reactor's thread uses it.
+     */
+    TimingWheel.Timeout<ClientConnection> getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return The timeout currently armed for this connection, or null if none is.
+     */
+    ConnectionTimeout getTimeoutKind() {
+        return timeoutKind;
+    }
+
+    void setTimeoutKind(ConnectionTimeout timeoutKind) {
+        this.timeoutKind = timeoutKind;
+    }
+
+    /**
+     * @return When the body being read must have arrived in full, in epoch milliseconds.
+     */
+    long getBodyDeadlineMs() {
+        return bodyDeadlineMs;
+    }
+
+    void setBodyDeadlineMs(long bodyDeadlineMs) {
+        this.bodyDeadlineMs = bodyDeadlineMs;
+    }
+
+    public boolean isInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(boolean inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Queues a complete response and asks the selector thread to send it.
+     * Called by worker threads; never blocks on the socket.
+     *
+     * @param response  The response to send.
+     * @param keepAlive Whether to read the next request once the response is written.
+     */
+    public void send(HttpResponse response, boolean keepAlive) {
+        outbound.offer(new Outbound(response.encode(keepAlive), null, null));
+        finish(keepAlive);
+    }
+
+    /**
+     * Queues part of a response. The selector thread sends queued parts in
+     * order; {@link #finish(boolean)} marks the end of the response.
+     * @param buffers The buffers to send, written with one gathering write.
+     */
+    public void write(ByteBuffer... buffers) {
+        outbound.offer(new Outbound(buffers, null, null));
+        reactor.requestFlush(this);
+    }
+
+    /**
+     * Queues a file, or part of one, as the next part of a response. The channel
+     * is closed once it has been sent or the connection closes.
+     * @param file     An open channel on the file.
+     * @param position Where in the file to start.
+     * @param count    How many bytes to send.
+     */
+    public void writeFile(FileChannel file, long position, long count) {
+        outbound.offer(new Outbound(file, position, count));
+        if (closed) {
+            releaseQueued();
+            return;
+        }
+        reactor.requestFlush(this);
+    }
+
+    /**
+     * Queues part of a streamed response whose data lives in a pooled buffer.
+     * The buffer goes back to its pool once it has been written. At most a few
+     * chunks may be queued per connection; beyond that the caller waits until
+     * the client has read some, which keeps the encoded response's memory bounded.
+     *
+     * @param buffers The buffers to send, written with one gathering write.
+     * @param pooled  The pooled buffer among them.
+     * @param pool    The pool it came from.
+     * @throws IOException if the connection is closed before the chunk could be queued.
+     */
+    public void writeChunk(ByteBuffer[] buffers, ByteBuffer pooled, BufferPool pool) throws IOException {
+        long waitStart = System.nanoTime();
+        try {
+            while (!chunkPermits.tryAcquire(CHUNK_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.release(pooled);
+            throw new IOException("Interrupted while waiting for the client to read.", e);
+        } finally {
+            RequestTrace.record(RequestTrace.Phase.WRITE, waitStart);
+        }
+        if (closed) {
+            pool.release(pooled);
+            throw new IOException("Connection closed by client.");
+        }
+        outbound.offer(new Outbound(buffers, pooled, pool));
+        if (closed) {
+            // closed while we were queuing; nobody else will drain the queue now
+            releaseQueued();
+            throw new IOException("Connection closed by client.");
+        }
+        reactor.requestFlush(this);
+    }
+
+    /**
+     * Marks the current response as complete.
+     * @param keepAlive Whether to read the next request once the response is written.
+     */
+    public void finish(boolean keepAlive) {
+        keepAliveAfterResponse = keepAlive;
+        responseComplete = true;
+        reactor.requestFlush(this);
+    }
+
+    /**
+     * Writes as much of the queued output as the socket accepts.
+     * Must only be called from the selector thread.
+     *
+     * @return true if the queue is empty, false if the socket is full.
+     * @throws IOException if the write fails.
+     */
+    public boolean flushOutbound() throws IOException {
+        Outbound head;
+        while ((head = outbound.peek()) != null) {
+            if (!head.writeTo(channel)) {
+                return false;
+            }
+            outbound.poll();
+            head.release(chunkPermits);
+        }
+        return true;
+    }
+
+    /**
+     * @return true once the worker has queued the last part of its response.
+     */
+    public boolean isResponseComplete() {
+        return responseComplete;
+    }
+
+    public boolean isKeepAliveAfterResponse() {
+        return keepAliveAfterResponse;
+    }
+
+    /**
+     * Clears the per-response flags once a response has been fully written.
+     */
+    public void resetResponse() {
+        responseComplete = false;
+        keepAliveAfterResponse = false;
+    }
+
+    /**
+     * Closes the channel and returns the read buffer and any queued response
+     * buffers to their pools. Called from the selector thread.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseQueued();
+        bufferPool.release(readBuffer);
+        readBuffer = null;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Could not close client channel cleanly: " + e.getMessage());
+        }
+    }
+
+    private synchronized void releaseQueued() {
+        Outbound pending;
+        while ((pending = outbound.poll()) != null) {
+            pending.release(chunkPermits);
+        }
+    }
+
+    /**
+     * One gathering write's worth of queued output, or a region of a file.
+     */
+    private static final class Outbound {
+        final ByteBuffer[] buffers;
+        final ByteBuffer pooled;
+        final BufferPool pool;
+        final FileChannel file;
+        long filePosition;
+        long fileRemaining;
+
+        Outbound(ByteBuffer[] buffers, ByteBuffer pooled, BufferPool pool) {
+            this.buffers = buffers;
+            this.pooled = pooled;
+            this.pool = pool;
+            this.file = null;
+        }
+
+        Outbound(FileChannel file, long position, long count) {
+            this.buffers = null;
+            this.pooled = null;
+            this.pool = null;
+            this.file = file;
+            this.filePosition = position;
+            this.fileRemaining = count;
+        }
+
+        /**
+         * @return true once everything has been written.
+         */
+        boolean writeTo(SocketChannel channel) throws IOException {
+            if (file == null) {
+                channel.write(buffers);
+                return !hasRemaining(buffers);
+            }
+            while (fileRemaining > 0) {
+                long sent = file.transferTo(filePosition, fileRemaining, channel);
+                if (sent <= 0) {
+                    if (filePosition >= file.size()) {
+                        throw new IOException("File shrank while it was being sent.");
+                    }
+                    return false;
+                }
+                filePosition += sent;
+                fileRemaining -= sent;
+            }
+            return true;
+        }
+
+        void release(Semaphore chunkPermits) {
+            if (pooled != null) {
+                pool.release(pooled);
+                chunkPermits.release();
+            }
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    // nothing more to send from it either way
+                }
+            }
+        }
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffers) {
+        for (int i = buffers.length - 1; i >= 0; i--) {
+            if (buffers[i].hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private HttpRequest parseBuffered() throws MalformedRequestException {
+        readBuffer.flip();
+        try {
+            return parser.parse(readBuffer);
+        } finally {
+            readBuffer.compact();
+        }
+    }
+}
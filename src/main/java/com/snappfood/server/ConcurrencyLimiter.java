@@ -0,0 +1,132 @@
+package com.snappfood.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Caps how many requests may be in the server at once, between the reactors
+ * and the request executor, and adapts the cap from observed latency (AIMD).
+ * <p>
+ * While requests finish within the target latency and the limit is actually
+ * being used, it grows by about one per limit's worth of completions. When a
+ * request takes longer, the limit is cut by a fixed ratio, at most once per
+ * target-latency window, so one burst of slow requests does not collapse it.
+ * Requests over the limit are turned away at once instead of waiting in the
+ * executor's queue until they time out. The limit is kept as the bits of a
+ * double in an atomic, so completions adjust it without taking a lock.
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong limitBits;
+    private final AtomicLong lastDecreaseNanos;
+
+    /**
+     * @param initialLimit    The limit to start from.
+     * @param minLimit        The limit never drops below this.
+     * @param maxLimit        The limit never grows above this.
+     * @param targetLatencyMs Requests slower than this, from admission to response, shrink the limit.
+     *                        Time spent waiting for the client to read the response is not counted.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMs) {
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+        this.targetLatencyNanos = targetLatencyMs * 1_000_000;
+        this.lastDecreaseNanos = new AtomicLong(System.nanoTime() - targetLatencyNanos);
+    }
+
+    /**
+     * Admits a request if the server is below its limit.
+     * Every successful call must be matched by one {@link #release(long)} or {@link #cancel()}.
+     * @return true if the request may proceed, false if it should be rejected.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records that an admitted request has finished and adjusts the limit.
+     * @param latencyNanos How long the request took from admission, leaving out any time
+     *                     spent waiting for the client to read its response.
+     */
+    public void release(long latencyNanos) {
+        int wasInFlight = inFlight.getAndDecrement();
+        if (latencyNanos > targetLatencyNanos) {
+            long now = System.nanoTime();
+            long last = lastDecreaseNanos.get();
+            // one completion per window wins the right to cut the limit
+            if (now - last >= targetLatencyNanos && lastDecreaseNanos.compareAndSet(last, now)) {
+                update(current -> Math.max(minLimit, current * BACKOFF_RATIO));
+            }
+        } else {
+            // only grow a limit that is actually being used
+            update(current -> wasInFlight * 2 >= current ? Math.min(maxLimit, current + 1 / current) : current);
+        }
+    }
+
+    /**
+     * Gives back an admission for a request that never ran, without adjusting the limit.
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return The current limit, rounded down.
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void update(DoubleUnaryOperator change) {
+        while (true) {
+            long bits = limitBits.get();
+            double current = Double.longBitsToDouble(bits);
+            double next = change.applyAsDouble(current);
+            if (next == current || limitBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter[limit=" + getLimit() + ", inFlight=" + getInFlight()
+                + ", admitted=" + getAdmitted() + ", rejected=" + getRejected() + "]";
+    }
+}
@@ -0,0 +1,154 @@
+package com.snappfood.server;
+
+import com.snappfood.dao.CatalogVersions;
+
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Wraps catalog routes with ETag and If-None-Match handling.
+ * <p>
+ * The ETag of a catalog response names the restaurant it came from and that
+ * restaurant's {@link CatalogVersions catalog version}, so a revalidation is
+ * answered with 304 from memory, without running the handler or touching the
+ * database. Tags are weak because the same data may be sent compressed or not.
+ * A route only some callers may read is given an {@link Access} check that
+ * runs before a 304, so a guessed tag cannot reveal its version to others.
+ */
+final class ConditionalGet {
+
+    private static final Map<String, Object> NOT_MODIFIED = Map.of("status", 304);
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * For routes whose path names the restaurant, such as /vendors/{id}.
+     * @param cacheControl The Cache-Control header sent with the route's responses.
+     * @param idParam      The path variable holding the restaurant ID.
+     * @param handler      The route's handler.
+     * @return The wrapped handler.
+     */
+    static RouteHandler byPath(String cacheControl, String idParam, RouteHandler handler) {
+        return byPath(cacheControl, idParam, null, handler);
+    }
+
+    /**
+     * For routes whose path names the restaurant and that only some callers
+     * may read, such as a seller's own /restaurants/{id}/items. The handler
+     * still checks access itself whenever it runs.
+     * @param cacheControl The Cache-Control header sent with the route's responses.
+     * @param idParam      The path variable holding the restaurant ID.
+     * @param access       Checked before answering 304, or null if anyone may read the route.
+     * @param handler      The route's handler.
+     * @return The wrapped handler.
+     */
+    static RouteHandler byPath(String cacheControl, String idParam, Access access, RouteHandler handler) {
+        return wrap(cacheControl, ctx -> ctx.pathInt(idParam), (ctx, result) -> ctx.pathInt(idParam), access, handler);
+    }
+
+    /**
+     * For routes where the restaurant is only known from the result, such as
+     * /items/{id}. A revalidation trusts the restaurant ID in the client's tag;
+     * a client that sends another URL's tag only fools itself.
+     * @param cacheControl The Cache-Control header sent with the route's responses.
+     * @param restaurantOf Finds the restaurant ID in a successful result.
+     * @param handler      The route's handler.
+     * @return The wrapped handler.
+     */
+    static RouteHandler byResult(String cacheControl, ToIntFunction<Map<String, Object>> restaurantOf, RouteHandler handler) {
+        return wrap(cacheControl, null, (ctx, result) -> restaurantOf.applyAsInt(result), null, handler);
+    }
+
+    /**
+     * Decides whether the caller may read a route.
+     */
+    @FunctionalInterface
+    interface Access {
+        /**
+         * @param context The request being handled.
+         * @throws Exception if the caller may not read the route, as the handler would throw it.
+         */
+        void check(RouteContext context) throws Exception;
+    }
+
+    private interface RestaurantOfResult {
+        int find(RouteContext ctx, Map<String, Object> result);
+    }
+
+    private static RouteHandler wrap(String cacheControl, ToIntFunction<RouteContext> restaurantOfPath,
+                                     RestaurantOfResult restaurantOfResult, Access access, RouteHandler handler) {
+        return ctx -> {
+            CatalogVersions versions = ctx.catalogVersions();
+            String ifNoneMatch = ctx.getRequest().getHeader("if-none-match");
+            // anonymous callers are turned away by the handler itself
+            if (ifNoneMatch != null && ctx.getUserId() != null) {
+                int pathRestaurant = restaurantOfPath != null ? restaurantOfPath.applyAsInt(ctx) : -1;
+                String current = findCurrent(versions, ifNoneMatch, pathRestaurant);
+                if (current != null) {
+                    if (access != null) {
+                        access.check(ctx);
+                    }
+                    ctx.responseHeader("ETag", current);
+                    ctx.responseHeader("Cache-Control", cacheControl);
+                    return NOT_MODIFIED;
+                }
+            }
+
+            long seen = versions.current();
+            Map<String, Object> result = handler.handle(ctx);
+            Object status = result.get("status");
+            if (status == null || (int) status == 200) {
+                int restaurantId = restaurantOfResult.find(ctx, result);
+                long version = versions.version(restaurantId);
+                // a write that landed while the handler ran may or may not be in the result, so it gets no tag
+                if (version <= seen) {
+                    ctx.responseHeader("ETag", etag(versions.getEpoch(), restaurantId, version));
+                }
+                ctx.responseHeader("Cache-Control", cacheControl);
+            }
+            return result;
+        };
+    }
+
+    private static String etag(long epoch, int restaurantId, long version) {
+        return "W/\"" + Long.toString(epoch, 36) + "." + restaurantId + "." + version + "\"";
+    }
+
+    /**
+     * @param pathRestaurant The restaurant the URL names, or -1 if it names none.
+     * @return The first tag in the header that is still current, or null if none is.
+     */
+    private static String findCurrent(CatalogVersions versions, String ifNoneMatch, int pathRestaurant) {
+        String epoch = Long.toString(versions.getEpoch(), 36);
+        int start = 0;
+        while (start < ifNoneMatch.length()) {
+            int end = ifNoneMatch.indexOf(',', start);
+            if (end < 0) {
+                end = ifNoneMatch.length();
+            }
+            String tag = ifNoneMatch.substring(start, end).trim();
+            start = end + 1;
+
+            // If-None-Match uses weak comparison, so W/ is optional
+            String opaque = tag.startsWith("W/") ? tag.substring(2) : tag;
+            if (opaque.length() < 2 || opaque.charAt(0) != '"' || opaque.charAt(opaque.length() - 1) != '"') {
+                continue;
+            }
+            String[] parts = opaque.substring(1, opaque.length() - 1).split("\\.");
+            if (parts.length != 3 || !parts[0].equals(epoch)) {
+                continue;
+            }
+            try {
+                int restaurantId = Integer.parseInt(parts[1]);
+                long version = Long.parseLong(parts[2]);
+                if ((pathRestaurant < 0 || restaurantId == pathRestaurant) && versions.version(restaurantId) == version) {
+                    return etag(versions.getEpoch(), restaurantId, version);
+                }
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return null;
+    }
+}
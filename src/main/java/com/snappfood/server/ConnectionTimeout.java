@@ -0,0 +1,32 @@
+package com.snappfood.server;
+
+/**
+ * The reasons a reactor may give up on a connection that is not making progress.
+ * Each has its own limit; see {@link Reactor} for when each one is armed.
+ */
+public enum ConnectionTimeout {
+    /** No request started since the last response, or since the connection was accepted. */
+    IDLE("idle"),
+    /** A request line and headers that did not all arrive in time. Not extended by progress. */
+    HEADER("header"),
+    /**
+     * A request body that stopped arriving, or arrived too slowly overall. Extended
+     * whenever more of it is read, but never past a deadline set by its length.
+     */
+    BODY("body"),
+    /** A response the client stopped reading. Extended whenever more of it is written. */
+    WRITE("write");
+
+    private final String label;
+
+    ConnectionTimeout(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return A short lower-case name for logs and metrics.
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,81 @@
+package com.snappfood.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A fully received HTTP request as produced by {@link HttpRequestParser}.
+ * Header names are stored in lower case; use {@link #getHeader(String)} to look them up.
+ */
+public class HttpRequest {
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final String method;
+    private final String path;
+    private final String query;
+    private final String version;
+    private final Map<String, String> headers;
+    private final byte[] body;
+    private String bodyText;
+
+    public HttpRequest(String method, String path, String query, String version, Map<String, String> headers, byte[] body) {
+        this.method = method;
+        this.path = path;
+        this.query = query;
+        this.version = version;
+        this.headers = headers;
+        this.body = body != null ? body : EMPTY_BODY;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The raw query string without the leading '?', or an empty string.
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @param name The header name, in any case.
+     * @return The header value, or null if the header was not sent.
+     */
+    public String getHeader(String name) {
+        String value = headers.get(name);
+        return value != null ? value : headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public boolean hasBody() {
+        return body.length > 0;
+    }
+
+    /**
+     * @return The body decoded as UTF-8. The string is built once and cached.
+     */
+    public String getBodyAsString() {
+        if (bodyText == null) {
+            bodyText = body.length == 0 ? "" : new String(body, StandardCharsets.UTF_8);
+        }
+        return bodyText;
+    }
+}
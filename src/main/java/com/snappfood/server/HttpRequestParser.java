@@ -0,0 +1,298 @@
+package com.snappfood.server;
+
+import com.snappfood.exception.MalformedRequestException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An incremental HTTP/1.x request parser.
+ * The parser is fed whatever bytes have arrived on a connection and keeps its
+ * position between calls, so a request may be split across any number of
+ * reads. The request line and headers are parsed directly from bytes; the body
+ * is copied once into an array sized from Content-Length.
+ * One parser instance belongs to one connection and is not thread-safe.
+ */
+public class HttpRequestParser {
+
+    private enum State { REQUEST_LINE, HEADERS, BODY }
+
+    private static final String[] KNOWN_METHODS = {"GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS"};
+    private static final String[] KNOWN_HEADERS = {
+            "host", "content-type", "content-length", "connection", "authorization",
+            "accept", "accept-encoding", "user-agent", "transfer-encoding", "if-none-match"
+    };
+
+    private final int maxHeaderBytes;
+    private final int maxBodyBytes;
+
+    private State state = State.REQUEST_LINE;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private int headerBytes;
+
+    private String method;
+    private String path;
+    private String query;
+    private String version;
+    private Map<String, String> headers;
+    private byte[] body;
+    private int bodyRead;
+
+    /**
+     * @param maxHeaderBytes The largest request line plus header block accepted.
+     * @param maxBodyBytes   The largest Content-Length accepted.
+     */
+    public HttpRequestParser(int maxHeaderBytes, int maxBodyBytes) {
+        this.maxHeaderBytes = maxHeaderBytes;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Consumes bytes from the buffer until one request is complete or the buffer is empty.
+     * Bytes belonging to a following (pipelined) request are left in the buffer.
+     *
+     * @param in A buffer in read mode.
+     * @return The completed request, or null if more bytes are needed.
+     * @throws MalformedRequestException if the bytes are not a valid request.
+     */
+    public HttpRequest parse(ByteBuffer in) throws MalformedRequestException {
+        while (in.hasRemaining()) {
+            if (state == State.BODY) {
+                int count = Math.min(in.remaining(), body.length - bodyRead);
+                in.get(body, bodyRead, count);
+                bodyRead += count;
+                if (bodyRead == body.length) {
+                    return complete();
+                }
+                continue;
+            }
+
+            if (!readLine(in)) {
+                return null;
+            }
+
+            if (state == State.REQUEST_LINE) {
+                if (lineLength == 0) {
+                    continue; // tolerate empty lines between pipelined requests
+                }
+                parseRequestLine();
+                state = State.HEADERS;
+            } else if (lineLength > 0) {
+                parseHeaderLine();
+            } else {
+                int contentLength = prepareBody();
+                if (contentLength == 0) {
+                    return complete();
+                }
+                state = State.BODY;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the parser holds part of a request that has not completed yet.
+     */
+    public boolean isMidRequest() {
+        return state != State.REQUEST_LINE || lineLength > 0;
+    }
+
+    /**
+     * @return true once the header block of the current request has been read.
+     */
+    public boolean isReadingBody() {
+        return state == State.BODY;
+    }
+
+    /**
+     * @return The length of the body being read, valid while {@link #isReadingBody()}.
+     */
+    public int getBodyLength() {
+        return body.length;
+    }
+
+    /**
+     * Reads bytes up to the next LF into the line buffer, dropping the line terminator.
+     * @return true if a whole line is available.
+     */
+    private boolean readLine(ByteBuffer in) throws MalformedRequestException {
+        int position = in.position();
+        int limit = in.limit();
+        for (int i = position; i < limit; i++) {
+            byte b = in.get(i);
+            if (b == '\n') {
+                in.position(i + 1);
+                headerBytes += i + 1 - position;
+                if (headerBytes > maxHeaderBytes) {
+                    throw new MalformedRequestException(431, "Request header fields too large.");
+                }
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+            if (lineLength == line.length) {
+                if (line.length >= maxHeaderBytes) {
+                    throw new MalformedRequestException(431, "Request header fields too large.");
+                }
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+        }
+        headerBytes += limit - position;
+        in.position(limit);
+        if (headerBytes > maxHeaderBytes) {
+            throw new MalformedRequestException(431, "Request header fields too large.");
+        }
+        return false;
+    }
+
+    private void parseRequestLine() throws MalformedRequestException {
+        int firstSpace = indexOf((byte) ' ', 0, lineLength);
+        int lastSpace = lastIndexOf((byte) ' ', lineLength);
+        if (firstSpace <= 0) {
+            throw new MalformedRequestException(400, "Malformed request line");
+        }
+
+        int targetEnd = lastSpace > firstSpace ? lastSpace : lineLength;
+        method = knownOrNew(KNOWN_METHODS, 0, firstSpace, false);
+        version = lastSpace > firstSpace ? ascii(lastSpace + 1, lineLength) : "HTTP/1.0";
+
+        int targetStart = firstSpace + 1;
+        if (targetStart >= targetEnd) {
+            throw new MalformedRequestException(400, "Malformed request line");
+        }
+        int questionMark = indexOf((byte) '?', targetStart, targetEnd);
+        if (questionMark < 0) {
+            path = new String(line, targetStart, targetEnd - targetStart, StandardCharsets.UTF_8);
+            query = "";
+        } else {
+            path = new String(line, targetStart, questionMark - targetStart, StandardCharsets.UTF_8);
+            query = new String(line, questionMark + 1, targetEnd - questionMark - 1, StandardCharsets.UTF_8);
+        }
+        headers = new HashMap<>();
+        lineLength = 0;
+    }
+
+    private void parseHeaderLine() throws MalformedRequestException {
+        int colon = indexOf((byte) ':', 0, lineLength);
+        if (colon <= 0) {
+            throw new MalformedRequestException(400, "Malformed header line");
+        }
+        int valueStart = colon + 1;
+        int valueEnd = lineLength;
+        while (valueStart < valueEnd && isWhitespace(line[valueStart])) {
+            valueStart++;
+        }
+        while (valueEnd > valueStart && isWhitespace(line[valueEnd - 1])) {
+            valueEnd--;
+        }
+
+        String name = knownOrNew(KNOWN_HEADERS, 0, colon, true);
+        String value = new String(line, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1);
+        headers.merge(name, value, (existing, added) -> existing + ", " + added);
+        lineLength = 0;
+    }
+
+    private int prepareBody() throws MalformedRequestException {
+        lineLength = 0;
+        String transferEncoding = headers.get("transfer-encoding");
+        if (transferEncoding != null && !transferEncoding.equalsIgnoreCase("identity")) {
+            throw new MalformedRequestException(501, "Transfer-Encoding '" + transferEncoding + "' is not supported.");
+        }
+
+        String contentLengthHeader = headers.get("content-length");
+        int contentLength = 0;
+        if (contentLengthHeader != null) {
+            try {
+                long parsed = Long.parseLong(contentLengthHeader.trim());
+                if (parsed < 0) {
+                    throw new MalformedRequestException(400, "Invalid Content-Length");
+                }
+                if (parsed > maxBodyBytes) {
+                    throw new MalformedRequestException(413, "Request body too large.");
+                }
+                contentLength = (int) parsed;
+            } catch (NumberFormatException e) {
+                throw new MalformedRequestException(400, "Invalid Content-Length");
+            }
+        }
+        body = new byte[contentLength];
+        bodyRead = 0;
+        return contentLength;
+    }
+
+    private HttpRequest complete() {
+        HttpRequest request = new HttpRequest(method, path, query, version, headers, body);
+        state = State.REQUEST_LINE;
+        lineLength = 0;
+        headerBytes = 0;
+        method = null;
+        path = null;
+        query = null;
+        version = null;
+        headers = null;
+        body = null;
+        bodyRead = 0;
+        return request;
+    }
+
+    /**
+     * Returns one of the given constants if the bytes match it, so common
+     * methods and header names do not allocate a new string per request.
+     */
+    private String knownOrNew(String[] candidates, int from, int to, boolean lowerCase) {
+        int length = to - from;
+        for (String candidate : candidates) {
+            if (candidate.length() == length && regionEquals(candidate, from, lowerCase)) {
+                return candidate;
+            }
+        }
+        String value = ascii(from, to);
+        return lowerCase ? value.toLowerCase(Locale.ROOT) : value;
+    }
+
+    private boolean regionEquals(String candidate, int from, boolean ignoreCase) {
+        for (int i = 0; i < candidate.length(); i++) {
+            int b = line[from + i];
+            if (ignoreCase && b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String ascii(int from, int to) {
+        return new String(line, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private int indexOf(byte target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(byte target, int to) {
+        for (int i = to - 1; i >= 0; i--) {
+            if (line[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
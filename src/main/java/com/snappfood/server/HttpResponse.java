@@ -0,0 +1,169 @@
+package com.snappfood.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An HTTP response ready to be queued on a {@link ClientConnection}.
+ * The status line, the header block and the body are encoded as separate
+ * buffers so they can be sent with one gathering write.
+ */
+public class HttpResponse {
+
+    private static final byte[] CONTENT_TYPE = "Content-Type: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING_CHUNKED = "Transfer-Encoding: chunked\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION_KEEP_ALIVE = "Connection: keep-alive\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION_CLOSE = "Connection: close\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HEADER_SEPARATOR = {':', ' '};
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    public static final String APPLICATION_JSON = "application/json";
+
+    private final int statusCode;
+    private final String contentType;
+    private final byte[] body;
+    private Map<String, String> headers;
+
+    public HttpResponse(int statusCode, String contentType, byte[] body) {
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.body = body != null ? body : EMPTY_BODY;
+    }
+
+    /**
+     * @param statusCode The HTTP status code.
+     * @param json The serialized JSON body.
+     * @return A response with an application/json body.
+     */
+    public static HttpResponse json(int statusCode, String json) {
+        return new HttpResponse(statusCode, APPLICATION_JSON, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds an extra header. Content-Type, Content-Length and Connection are written automatically.
+     * @return this response, for chaining.
+     */
+    public HttpResponse header(String name, String value) {
+        if (headers == null) {
+            headers = new LinkedHashMap<>();
+        }
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * @param name A header name, matched case-insensitively.
+     * @return The value of an extra header, or null if it was not set.
+     */
+    public String getHeader(String name) {
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param body The new body.
+     * @return A copy of this response with the same status, content type and headers but a different body.
+     */
+    public HttpResponse withBody(byte[] body) {
+        HttpResponse copy = new HttpResponse(statusCode, contentType, body);
+        if (headers != null) {
+            copy.headers = new LinkedHashMap<>(headers);
+        }
+        return copy;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Encodes the response for a gathering write.
+     * @param keepAlive Whether the connection stays open after this response.
+     * @return The status line, the header block and the body, in that order.
+     */
+    public ByteBuffer[] encode(boolean keepAlive) {
+        return new ByteBuffer[]{
+                HttpStatus.statusLine(statusCode),
+                encodeHeaders(keepAlive, body.length),
+                ByteBuffer.wrap(body)
+        };
+    }
+
+    /**
+     * Encodes only the status line and headers, for a body that is sent separately.
+     * @param keepAlive     Whether the connection stays open after this response.
+     * @param contentLength The body length, or -1 to send the body with chunked transfer encoding.
+     * @return The status line and the header block.
+     */
+    public ByteBuffer[] encodeHead(boolean keepAlive, long contentLength) {
+        return new ByteBuffer[]{
+                HttpStatus.statusLine(statusCode),
+                encodeHeaders(keepAlive, contentLength)
+        };
+    }
+
+    private ByteBuffer encodeHeaders(boolean keepAlive, long contentLength) {
+        // 204 and 304 responses have no body, so they describe neither its type nor its framing
+        boolean bodiless = statusCode == 204 || statusCode == 304;
+        byte[] contentTypeBytes = contentType != null && !bodiless ? contentType.getBytes(StandardCharsets.US_ASCII) : null;
+        byte[] lengthDigits = contentLength >= 0 ? Long.toString(contentLength).getBytes(StandardCharsets.US_ASCII) : null;
+        byte[] connection = keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE;
+
+        int size = connection.length + CRLF.length;
+        if (!bodiless) {
+            size += lengthDigits != null ? CONTENT_LENGTH.length + lengthDigits.length + CRLF.length : TRANSFER_ENCODING_CHUNKED.length;
+        }
+        if (contentTypeBytes != null) {
+            size += CONTENT_TYPE.length + contentTypeBytes.length + CRLF.length;
+        }
+        byte[][] extra = null;
+        if (headers != null) {
+            extra = new byte[headers.size() * 2][];
+            int i = 0;
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                extra[i] = header.getKey().getBytes(StandardCharsets.US_ASCII);
+                extra[i + 1] = header.getValue().getBytes(StandardCharsets.ISO_8859_1);
+                size += extra[i].length + HEADER_SEPARATOR.length + extra[i + 1].length + CRLF.length;
+                i += 2;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        if (contentTypeBytes != null) {
+            buffer.put(CONTENT_TYPE).put(contentTypeBytes).put(CRLF);
+        }
+        if (!bodiless) {
+            if (lengthDigits != null) {
+                buffer.put(CONTENT_LENGTH).put(lengthDigits).put(CRLF);
+            } else {
+                buffer.put(TRANSFER_ENCODING_CHUNKED);
+            }
+        }
+        if (extra != null) {
+            for (int i = 0; i < extra.length; i += 2) {
+                buffer.put(extra[i]).put(HEADER_SEPARATOR).put(extra[i + 1]).put(CRLF);
+            }
+        }
+        buffer.put(connection).put(CRLF);
+        buffer.flip();
+        return buffer;
+    }
+}
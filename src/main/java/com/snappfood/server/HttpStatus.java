@@ -0,0 +1,67 @@
+package com.snappfood.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reason phrases and pre-encoded status lines for the status codes this server sends.
+ * Status lines are encoded once at class-load time and shared as read-only buffers.
+ */
+public final class HttpStatus {
+
+    private static final int MAX_CODE = 600;
+    private static final String[] REASONS = new String[MAX_CODE];
+    private static final byte[][] STATUS_LINES = new byte[MAX_CODE][];
+
+    static {
+        register(200, "OK");
+        register(201, "Created");
+        register(204, "No Content");
+        register(304, "Not Modified");
+        register(400, "Bad Request");
+        register(401, "Unauthorized");
+        register(403, "Forbidden");
+        register(404, "Not Found");
+        register(405, "Method Not Allowed");
+        register(408, "Request Timeout");
+        register(409, "Conflict");
+        register(411, "Length Required");
+        register(413, "Payload Too Large");
+        register(415, "Unsupported Media Type");
+        register(429, "Too Many Requests");
+        register(431, "Request Header Fields Too Large");
+        register(500, "Internal Server Error");
+        register(501, "Not Implemented");
+        register(503, "Service Unavailable");
+    }
+
+    private HttpStatus() {
+    }
+
+    private static void register(int code, String reason) {
+        REASONS[code] = reason;
+        STATUS_LINES[code] = ("HTTP/1.1 " + code + " " + reason + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param code An HTTP status code.
+     * @return The reason phrase, or "OK" for codes this server does not know.
+     */
+    public static String reasonPhrase(int code) {
+        if (code > 0 && code < MAX_CODE && REASONS[code] != null) {
+            return REASONS[code];
+        }
+        return "OK";
+    }
+
+    /**
+     * @param code An HTTP status code.
+     * @return A read-only buffer over the pre-encoded "HTTP/1.1 code reason\r\n" line.
+     */
+    public static ByteBuffer statusLine(int code) {
+        if (code > 0 && code < MAX_CODE && STATUS_LINES[code] != null) {
+            return ByteBuffer.wrap(STATUS_LINES[code]).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(("HTTP/1.1 " + code + " " + reasonPhrase(code) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+}
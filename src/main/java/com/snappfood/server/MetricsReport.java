@@ -0,0 +1,90 @@
+package com.snappfood.server;
+
+import com.snappfood.database.DatabaseManager;
+import com.snappfood.metrics.PrometheusWriter;
+import com.snappfood.metrics.RequestMetrics;
+import com.snappfood.ratelimit.RateLimiterRegistry;
+import com.snappfood.storage.ImageDecoder;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ThumbnailGenerator;
+
+/**
+ * Renders the body of {@code GET /metrics}: the per-route request metrics,
+ * and gauges and counters read from the server's components at scrape time.
+ */
+final class MetricsReport {
+
+    private MetricsReport() {
+    }
+
+    /**
+     * @param context The running application.
+     * @return The metrics, in Prometheus text format.
+     */
+    static String render(ApplicationContext context) {
+        PrometheusWriter out = new PrometheusWriter();
+        writeRequests(out, context.getRequestMetrics());
+
+        ConcurrencyLimiter limiter = context.getAdmissionLimiter();
+        out.single("snappfood_admission_limit", "gauge", "Requests the admission limiter currently lets in at once.", limiter.getLimit())
+                .single("snappfood_admission_in_flight", "gauge", "Requests admitted and not yet finished.", limiter.getInFlight())
+                .single("snappfood_admission_rejected_total", "counter", "Requests shed with 503 because the limit was reached.", limiter.getRejected());
+
+        try {
+            int active = DatabaseManager.getActivePermits();
+            int queued = DatabaseManager.getQueuedForPermit();
+            out.single("snappfood_db_permits_active", "gauge", "Database connection permits in use.", active)
+                    .single("snappfood_db_permits_queued", "gauge", "Threads waiting for a database connection permit.", queued);
+        } catch (RuntimeException | LinkageError e) {
+            // the pool failed to start; the rest of the report is still worth having
+        }
+
+        out.family("snappfood_connections_reaped_total", "counter", "Connections closed because a timeout expired.");
+        for (ConnectionTimeout kind : ConnectionTimeout.values()) {
+            out.sample("snappfood_connections_reaped_total", context.getReapedConnections(kind), "timeout", kind.getLabel());
+        }
+
+        RateLimiterRegistry rateLimits = context.getRateLimits();
+        out.family("snappfood_rate_limit_buckets", "gauge", "Clients with a partly drawn rate-limit bucket, by route.");
+        rateLimits.forEachPolicy((policy, buckets, refused) ->
+                out.sample("snappfood_rate_limit_buckets", buckets, "route", policy.getRoute()));
+        out.family("snappfood_rate_limit_refused_total", "counter", "Requests refused with 429 by a rate limit, by route.");
+        rateLimits.forEachPolicy((policy, buckets, refused) ->
+                out.sample("snappfood_rate_limit_refused_total", refused, "route", policy.getRoute()));
+        out.single("snappfood_rate_limit_evicted_total", "counter", "Idle rate-limit buckets dropped.", rateLimits.getEvicted());
+
+        BufferPool buffers = context.getResponseBufferPool();
+        out.single("snappfood_response_buffers_in_use", "gauge", "Pooled response buffers currently lent out.", buffers.getInUse())
+                .single("snappfood_response_buffers_capacity", "gauge", "Response buffers the pool has allocated.", buffers.getCapacity());
+
+        out.single("snappfood_log_queued", "gauge", "Log events waiting to be written.", context.getLogger().getQueued())
+                .single("snappfood_log_dropped_total", "counter", "Log events dropped because the buffer was full.", context.getLogger().getDropped());
+
+        ImageStore images = context.getImageStore();
+        ImageDecoder decoder = context.getImageDecoder();
+        ThumbnailGenerator thumbnails = context.getThumbnailGenerator();
+        out.single("snappfood_images_stored_total", "counter", "Distinct images written to the image store.", images.getStored())
+                .single("snappfood_images_deduplicated_total", "counter", "Image saves that found the image already stored.", images.getDeduplicated())
+                .single("snappfood_image_decoder_queued", "gauge", "Image work waiting for a decoder thread.", decoder.getQueued())
+                .single("snappfood_image_decoder_active", "gauge", "Image work running on decoder threads.", decoder.getActive())
+                .single("snappfood_thumbnails_generated_total", "counter", "Thumbnails written.", thumbnails.getGenerated())
+                .single("snappfood_thumbnails_dropped_total", "counter", "Images whose thumbnails were skipped because the decoder was saturated.", thumbnails.getDropped())
+                .single("snappfood_thumbnails_failed_total", "counter", "Images whose thumbnails could not be made.", thumbnails.getFailed());
+        return out.toString();
+    }
+
+    private static void writeRequests(PrometheusWriter out, RequestMetrics metrics) {
+        out.family("snappfood_http_request_duration_seconds", "summary", "Time from admission to the response being queued, by route and status.");
+        metrics.forEach(route -> route.forEachStatus((status, histogram) ->
+                out.summary("snappfood_http_request_duration_seconds", histogram.snapshot(),
+                        "method", route.getMethod(), "route", route.getTemplate(), "status", Integer.toString(status))));
+
+        out.family("snappfood_http_request_body_bytes_total", "counter", "Request body bytes received, by route.");
+        metrics.forEach(route -> out.sample("snappfood_http_request_body_bytes_total", route.getBytesIn(),
+                "method", route.getMethod(), "route", route.getTemplate()));
+
+        out.family("snappfood_http_response_body_bytes_total", "counter", "Response body bytes sent, before compression, by route.");
+        metrics.forEach(route -> out.sample("snappfood_http_response_body_bytes_total", route.getBytesOut(),
+                "method", route.getMethod(), "route", route.getTemplate()));
+    }
+}
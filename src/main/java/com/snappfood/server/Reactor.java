@@ -0,0 +1,451 @@
+package com.snappfood.server;
+
+import com.snappfood.exception.MalformedRequestException;
+import com.snappfood.metrics.RequestTrace;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * One selector thread of the server. The {@link Acceptor} hands each accepted
+ * channel to a reactor, which then owns it for its whole life: reads, request
+ * dispatch, response writes and timeouts all happen on the reactor's own
+ * thread. Each reactor has its own {@link BufferPool}, so reactors never
+ * contend with each other on the I/O path.
+ * <p>
+ * Every connection not owned by a worker has exactly one timeout armed in the
+ * reactor's {@link TimingWheel}: {@link ConnectionTimeout#HEADER} from the first
+ * byte of a request (or from accept) until its headers are in,
+ * {@link ConnectionTimeout#BODY} while its body arrives, within an overall deadline
+ * set by its length, {@link ConnectionTimeout#WRITE}
+ * while a response waits on the client, and {@link ConnectionTimeout#IDLE} between
+ * requests. A connection whose timeout expires is closed.
+ */
+public class Reactor implements Runnable {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024; // 16 KB per pooled buffer
+    private static final int BUFFERS_PER_SLAB = 64; // 1 MB of direct memory per slab
+    private static final int MAX_HEADER_SIZE = 64 * 1024; // 64 KB for the request line and headers
+    private static final int MAX_BODY_SIZE = 8 * 1024 * 1024; // 8 MB
+    private static final long STATS_INTERVAL_MS = 60000; // 1 minute
+    private static final long IDLE_TIMEOUT_MS = 30000; // 30 seconds
+    private static final long HEADER_TIMEOUT_MS = 10000; // for the whole request line and headers
+    private static final long BODY_TIMEOUT_MS = 10000; // between reads of a request body
+    private static final int MIN_BODY_RATE = 16 * 1024; // bytes per second a body must average, after its first BODY_TIMEOUT_MS
+    private static final long WRITE_TIMEOUT_MS = 30000; // between writes of a response
+    private static final long TICK_MS = 250;
+    private static final int WHEEL_SLOTS = 256; // one turn is 64 seconds, longer than any timeout
+    private static final String OVERLOAD_RETRY_AFTER = "1"; // seconds
+
+    private final int id;
+    private final Selector selector;
+    private final ApplicationContext context;
+    private final ExecutorService executor;
+    private final ConcurrencyLimiter admissionLimiter;
+    private final BufferPool bufferPool = new BufferPool(READ_BUFFER_SIZE, BUFFERS_PER_SLAB);
+    private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<ClientConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+    private final TimingWheel<ClientConnection> timeouts;
+    private volatile boolean draining;
+    private volatile boolean running = true;
+    private volatile int forceClosed;
+
+    /**
+     * @param id       The index of this reactor, used in thread names and logs.
+     * @param context  The application's shared components, including the request executor.
+     * @throws IOException if the selector cannot be opened.
+     */
+    public Reactor(int id, ApplicationContext context) throws IOException {
+        this.id = id;
+        this.context = context;
+        this.executor = context.getRequestExecutor();
+        this.admissionLimiter = context.getAdmissionLimiter();
+        this.selector = Selector.open();
+        this.timeouts = new TimingWheel<>(TICK_MS, WHEEL_SLOTS, System.currentTimeMillis());
+    }
+
+    /**
+     * Hands a newly accepted channel to this reactor. Called by the acceptor thread;
+     * the channel is registered with the selector on the reactor's own thread.
+     * @param channel The accepted client channel.
+     */
+    public void register(SocketChannel channel) {
+        pendingRegistrations.offer(channel);
+        selector.wakeup();
+    }
+
+    /**
+     * Starts a graceful shutdown: idle connections are closed, requests already
+     * arriving are still answered but with Connection: close, and the reactor
+     * stops once its last connection is gone.
+     */
+    public void drain() {
+        draining = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the reactor now, closing whatever connections are still open.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * @return How many connections were still open when the reactor was stopped.
+     */
+    public int getForceClosed() {
+        return forceClosed;
+    }
+
+    /**
+     * Runs the selector loop: reads requests, hands complete requests to worker
+     * threads and writes their responses. Returns once the reactor has drained
+     * or been stopped.
+     */
+    @Override
+    public void run() {
+        long lastStatsReport = System.currentTimeMillis();
+        long lastReportedAcquisitions = 0;
+
+        while (running) {
+            try {
+                selector.select(TICK_MS); // Waits for network activity or the next tick
+            } catch (IOException e) {
+                System.err.println("Reactor " + id + " selector failed: " + e.getMessage());
+                return;
+            }
+
+            processPendingRegistrations();
+            processPendingFlushes();
+
+            Set<SelectionKey> selectedKeys = selector.selectedKeys();
+            Iterator<SelectionKey> iterator = selectedKeys.iterator();
+
+            while (iterator.hasNext()) {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+
+                if (!key.isValid()) {
+                    continue;
+                }
+
+                try {
+                    if (key.isWritable()) {
+                        flush((ClientConnection) key.attachment());
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                } catch (CancelledKeyException e) {
+                    // The connection was closed by a worker while we were looking at it.
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            timeouts.advance(now, this::reap);
+            if (now - lastStatsReport >= STATS_INTERVAL_MS) {
+                long acquisitions = bufferPool.getHits() + bufferPool.getMisses();
+                if (acquisitions != lastReportedAcquisitions) {
+                    System.out.println("Reactor " + id + " " + bufferPool);
+                    if (id == 0) {
+                        System.out.println(admissionLimiter);
+                        System.out.println(context.describeReapedConnections());
+                    }
+                    lastReportedAcquisitions = acquisitions;
+                }
+                lastStatsReport = now;
+            }
+            if (draining) {
+                closeIdleForDrain();
+                if (keysAfterCancellation() == 0 && pendingRegistrations.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        closeAll();
+    }
+
+    /**
+     * Called when a worker has queued output on a connection. The selector
+     * thread writes it out and, once the response is complete, either dispatches
+     * the next pipelined request or goes back to waiting for reads.
+     * @param connection The connection with pending output.
+     */
+    public void requestFlush(ClientConnection connection) {
+        pendingFlushes.offer(connection);
+        selector.wakeup();
+    }
+
+    private void processPendingRegistrations() {
+        SocketChannel clientChannel;
+        while ((clientChannel = pendingRegistrations.poll()) != null) {
+            try {
+                clientChannel.configureBlocking(false);
+                HttpRequestParser parser = new HttpRequestParser(MAX_HEADER_SIZE, MAX_BODY_SIZE);
+                ClientConnection connection = new ClientConnection(clientChannel, bufferPool, this, parser);
+                connection.setKey(clientChannel.register(selector, SelectionKey.OP_READ, connection));
+                arm(connection, ConnectionTimeout.HEADER, HEADER_TIMEOUT_MS);
+                context.getLogger().info("New client connected: " + connection.getRemoteAddress());
+            } catch (ClosedChannelException e) {
+                // The client went away before we got to it.
+            } catch (IOException e) {
+                System.err.println("Could not register client channel: " + e.getMessage());
+                try {
+                    clientChannel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void read(SelectionKey key) {
+        //Reads data from a client and feeds it to the connection's parser
+        ClientConnection connection = (ClientConnection) key.attachment();
+        dispatchNext(connection);
+    }
+
+    /**
+     * Hands the next request of a connection to a worker once it has fully arrived.
+     * Only one request per connection is in flight at a time, which keeps
+     * pipelined responses in request order.
+     */
+    private void dispatchNext(ClientConnection connection) {
+        HttpRequest request;
+        try {
+            request = connection.readRequest();
+        } catch (MalformedRequestException e) {
+            context.getLogger().info("Rejecting malformed request from " + connection.getRemoteAddress() + ": " + e.getMessage());
+            sendErrorAndClose(connection, e.getStatusCode(), e.getMessage());
+            return;
+        } catch (IOException e) {
+            // This can happen if the client disconnects abruptly.
+            request = null;
+            connection.close();
+        }
+
+        if (request == null) {
+            if (connection.isEndOfStream() && !connection.isClosed()) {
+                context.getLogger().info("Client disconnected: " + connection.getRemoteAddress());
+                connection.close();
+            }
+            if (!connection.isClosed()) {
+                connection.getKey().interestOps(SelectionKey.OP_READ);
+                armForRead(connection);
+            }
+            return;
+        }
+
+        //Stops watching the channel while a worker owns the connection
+        disarm(connection);
+        connection.getKey().interestOps(0);
+        connection.setInFlight(true);
+
+        if (!admissionLimiter.tryAcquire()) {
+            rejectOverloaded(connection, request);
+            return;
+        }
+
+        //Hands off the request to a worker thread
+        try {
+            executor.submit(new RequestHandler(context, request, connection));
+        } catch (RejectedExecutionException e) {
+            admissionLimiter.cancel();
+            connection.close();
+        }
+    }
+
+    /**
+     * Answers a request the server has no room for, straight from the selector
+     * thread. Nothing reaches a worker or the database, so shedding stays cheap
+     * however far over the limit the load is.
+     */
+    private void rejectOverloaded(ClientConnection connection, HttpRequest request) {
+        long startNanos = System.nanoTime();
+        String traceId = RequestTrace.idFor(request.getHeader(RequestHandler.REQUEST_ID_HEADER));
+        HttpResponse response = RequestHandler.buildErrorResponse(context.getGson(), 503,
+                "The server is overloaded. Please try again shortly.");
+        response.header("Retry-After", OVERLOAD_RETRY_AFTER);
+        response.header(RequestHandler.REQUEST_ID_HEADER, traceId);
+        connection.send(response, RequestHandler.isKeepAlive(request) && !context.isDraining());
+        context.getAccessLog().record(request, traceId, null, 503, response.getBody(), response.getBody().length, startNanos, connection);
+        context.getRequestMetrics().record(request.getMethod(), null, 503, System.nanoTime() - startNanos,
+                request.getBody().length, response.getBody().length);
+    }
+
+    /**
+     * Answers a request that could not be parsed and drops the connection,
+     * since the position of the next request in the stream is unknown.
+     */
+    private void sendErrorAndClose(ClientConnection connection, int statusCode, String message) {
+        disarm(connection);
+        connection.getKey().interestOps(0);
+        connection.setInFlight(true);
+        connection.send(RequestHandler.buildErrorResponse(context.getGson(), statusCode, message), false);
+    }
+
+    private void processPendingFlushes() {
+        ClientConnection connection;
+        while ((connection = pendingFlushes.poll()) != null) {
+            flush(connection);
+        }
+    }
+
+    /**
+     * Writes queued output without blocking. If the socket cannot take all of
+     * it, the connection waits for OP_WRITE instead of holding a worker.
+     */
+    private void flush(ClientConnection connection) {
+        if (connection.isClosed() || !connection.getKey().isValid()) {
+            disarm(connection);
+            return;
+        }
+        // Read the flag before draining: a response marked complete has all its parts queued.
+        boolean complete = connection.isResponseComplete();
+        boolean drained;
+        try {
+            drained = connection.flushOutbound();
+        } catch (IOException e) {
+            System.err.println("Error sending response to client: " + e.getMessage());
+            disarm(connection);
+            connection.close();
+            return;
+        }
+
+        if (!drained) {
+            connection.getKey().interestOps(SelectionKey.OP_WRITE);
+            arm(connection, ConnectionTimeout.WRITE, WRITE_TIMEOUT_MS);
+            return;
+        }
+        disarm(connection); // the rest of the response is up to the worker, not the client
+        if (!complete) {
+            connection.getKey().interestOps(0);
+            return;
+        }
+
+        boolean keepAlive = connection.isKeepAliveAfterResponse();
+        connection.resetResponse();
+        if (!keepAlive || draining) {
+            connection.close();
+            return;
+        }
+        connection.setInFlight(false);
+        dispatchNext(connection);
+    }
+
+    /**
+     * Closes the connections that are between requests. Ones with a request in
+     * flight or partly received are left to finish.
+     */
+    private void closeIdleForDrain() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof ClientConnection connection
+                    && !connection.isInFlight() && !connection.isMidRequest()) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Closed connections keep their keys in the selector until the next select,
+     * so run one without blocking before counting.
+     */
+    private int keysAfterCancellation() {
+        try {
+            selector.selectNow();
+        } catch (IOException e) {
+            return 0;
+        }
+        return selector.keys().size();
+    }
+
+    private void closeAll() {
+        int open = 0;
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof ClientConnection connection && !connection.isClosed()) {
+                connection.close();
+                open++;
+            }
+        }
+        SocketChannel channel;
+        while ((channel = pendingRegistrations.poll()) != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+        forceClosed = open;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Reactor " + id + " could not close its selector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Arms the timeout that fits what a connection waiting to read is in the
+     * middle of. The header timeout runs from the first byte of a request and is
+     * not pushed back by later bytes, so a client trickling its headers in
+     * cannot hold the connection forever. The body timeout restarts with every
+     * read, but never runs past a deadline fixed when the body starts, which
+     * allows {@link #MIN_BODY_RATE} for its length, so a client trickling a large
+     * body in cannot hold the connection and its buffer forever either.
+     */
+    private void armForRead(ClientConnection connection) {
+        if (connection.isReadingBody()) {
+            long now = System.currentTimeMillis();
+            if (connection.getTimeoutKind() != ConnectionTimeout.BODY) {
+                long allowanceMs = BODY_TIMEOUT_MS + connection.getBodyLength() * 1000L / MIN_BODY_RATE;
+                connection.setBodyDeadlineMs(now + allowanceMs);
+            }
+            arm(connection, ConnectionTimeout.BODY, Math.min(BODY_TIMEOUT_MS, connection.getBodyDeadlineMs() - now));
+        } else if (!connection.isMidRequest()) {
+            arm(connection, ConnectionTimeout.IDLE, IDLE_TIMEOUT_MS);
+        } else if (connection.getTimeoutKind() != ConnectionTimeout.HEADER) {
+            arm(connection, ConnectionTimeout.HEADER, HEADER_TIMEOUT_MS);
+        }
+    }
+
+    private void arm(ClientConnection connection, ConnectionTimeout kind, long delayMs) {
+        connection.setTimeoutKind(kind);
+        timeouts.schedule(connection.getTimeout(), delayMs);
+    }
+
+    private void disarm(ClientConnection connection) {
+        connection.setTimeoutKind(null);
+        timeouts.cancel(connection.getTimeout());
+    }
+
+    private void reap(ClientConnection connection) {
+        ConnectionTimeout kind = connection.getTimeoutKind();
+        connection.setTimeoutKind(null);
+        if (kind == null || connection.isClosed()) {
+            return;
+        }
+        context.recordReapedConnection(kind);
+        context.getLogger().info("Closing connection after " + kind.getLabel() + " timeout: " + connection.getRemoteAddress());
+        connection.close();
+    }
+
+    /**
+     * @return The pool that backs this reactor's client read buffers.
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
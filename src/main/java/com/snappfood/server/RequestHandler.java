@@ -1,378 +1,211 @@
 package com.snappfood.server;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
-import com.snappfood.controller.*;
+import com.google.gson.stream.JsonWriter;
+import com.snappfood.database.RequestDeadline;
 import com.snappfood.exception.*;
-import com.snappfood.model.*;
+import com.snappfood.metrics.RequestTrace;
+import com.snappfood.server.routing.RouteMatch;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.OutputStreamWriter;
 import java.net.URLDecoder;
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class RequestHandler implements Runnable {
 
-    private final String request;
-    private final SocketChannel clientChannel;
-    private final UserController userController;
-    private final AdminController adminController;
-    private final RestaurantController restaurantController;
-    private final OrderController orderController;
-    private final CustomerController customerController;
-    private final CourierController courierController;
-    private final WalletController walletController;
+    static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private static final String DEADLINE_RETRY_AFTER = "1"; // seconds
+
+    // a worker handles one request at a time, so it can reuse one match for all of them;
+    // a virtual thread runs a single request, so there it is still one match per request
+    private static final ThreadLocal<RouteMatch<RouteHandler>> ROUTE_MATCH = ThreadLocal.withInitial(RouteMatch::new);
+
+    private final ApplicationContext context;
+    private final HttpRequest request;
+    private final ClientConnection connection;
     private final Gson gson;
+    private final long admittedNanos;
+    private RequestTrace trace;
 
-    public RequestHandler(String request, SocketChannel clientChannel) {
+    /**
+     * Created on the reactor thread once the request has been admitted by the
+     * {@link ConcurrencyLimiter}; running it releases that admission.
+     */
+    public RequestHandler(ApplicationContext context, HttpRequest request, ClientConnection connection) {
+        this.context = context;
         this.request = request;
-        this.clientChannel = clientChannel;
-        this.userController = new UserController();
-        this.adminController = new AdminController();
-        this.restaurantController = new RestaurantController();
-        this.orderController = new OrderController();
-        this.customerController = new CustomerController();
-        this.courierController = new CourierController();
-        this.walletController = new WalletController();
-        this.gson = new Gson();
-    }
-
-    private String getStatusText(int statusCode) {
-        switch (statusCode) {
-            case 200: return "OK";
-            case 201: return "Created";
-            case 400: return "Bad Request";
-            case 401: return "Unauthorized";
-            case 403: return "Forbidden";
-            case 404: return "Not Found";
-            case 409: return "Conflict";
-            case 415: return "Unsupported Media Type";
-            case 429: return "Too Many Requests";
-            case 500: return "Internal Server Error";
-            default: return "OK";
-        }
+        this.connection = connection;
+        this.gson = context.getGson();
+        this.admittedNanos = System.nanoTime();
     }
 
-    private Map<String, String> parseQueryParams(String query) {
+    /**
+     * Splits a query string into decoded parameters; a malformed parameter is skipped.
+     * @param query The raw query string, without the '?', or null.
+     * @return The parameters; a name without '=' maps to null.
+     */
+    static Map<String, String> parseQueryParams(String query) {
         if (query == null || query.isEmpty()) {
             return Collections.emptyMap();
         }
         Map<String, String> queryParams = new HashMap<>();
-        String[] pairs = query.split("&");
-        for (String pair : pairs) {
-            int idx = pair.indexOf("=");
-            try {
-                String key = idx > 0 ? URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8.name()) : pair;
-                String value = idx > 0 && pair.length() > idx + 1 ? URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8.name()) : null;
-                queryParams.put(key, value);
-            } catch (Exception e) {
-                //ignoring malformed parameters
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start) {
+                int idx = query.indexOf('=', start);
+                try {
+                    if (idx > start && idx < end) {
+                        String key = URLDecoder.decode(query.substring(start, idx), StandardCharsets.UTF_8);
+                        String value = idx + 1 < end ? URLDecoder.decode(query.substring(idx + 1, end), StandardCharsets.UTF_8) : null;
+                        queryParams.put(key, value);
+                    } else {
+                        queryParams.put(query.substring(start, end), null);
+                    }
+                } catch (Exception e) {
+                    //ignoring malformed parameters
+                }
             }
+            start = end + 1;
         }
         return queryParams;
     }
 
-    @Override
-    public void run() {
-        String httpResponse;
-        try {
-            // Log the incoming request
-            if (request == null || request.trim().isEmpty()) {
-                return;
-            }
-
-            String[] requestParts = request.split("\r\n\r\n", 2);
-            String headerPart = requestParts[0];
-            String body = (requestParts.length > 1) ? requestParts[1] : "";
+    /**
+     * Builds a JSON error response for requests that never reach a worker.
+     * @param gson The shared Gson instance.
+     * @param statusCode The HTTP status code.
+     * @param message The error message.
+     * @return The response; the caller sends it with Connection: close.
+     */
+    static HttpResponse buildErrorResponse(Gson gson, int statusCode, String message) {
+        return HttpResponse.json(statusCode, gson.toJson(Map.of("error", message)));
+    }
 
-            String[] requestLines = headerPart.split("\r\n");
-            if (requestLines.length == 0) {
-                throw new InvalidInputException("Invalid request");
-            }
+    /**
+     * Decides whether the connection stays open after this response.
+     * HTTP/1.1 connections are persistent unless the client asks to close;
+     * HTTP/1.0 connections are persistent only when the client asks for it.
+     */
+    static boolean isKeepAlive(HttpRequest request) {
+        String connectionHeader = request.getHeader("connection");
+        if ("HTTP/1.1".equals(request.getVersion())) {
+            return !"close".equalsIgnoreCase(connectionHeader);
+        }
+        return "keep-alive".equalsIgnoreCase(connectionHeader);
+    }
 
-            String[] requestLine = requestLines[0].split(" ");
-            if (requestLine.length < 2) {
-                throw new InvalidInputException("Malformed request line");
+    /**
+     * Runs a route handler. A failure after the request's deadline has passed is
+     * reported as the deadline being exceeded: whatever the controller made of a
+     * cancelled query, the real cause is that the request ran out of time.
+     */
+    private Map<String, Object> invoke(RouteHandler handler, RouteContext routeContext) throws Exception {
+        long startNanos = System.nanoTime();
+        try {
+            return handler.handle(routeContext);
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            if (routeContext.getDeadline().isExpired()) {
+                throw new DeadlineExceededException("The request ran out of time.", e);
             }
-            String method = requestLine[0];
-            String fullPath = requestLine[1];
-
-            String[] pathParts = fullPath.split("\\?", 2);
-            String path = pathParts[0];
-            String query = pathParts.length > 1 ? pathParts[1] : "";
-            Map<String, String> queryParams = parseQueryParams(query);
+            throw e;
+        } finally {
+            trace.add(RequestTrace.Phase.HANDLER, System.nanoTime() - startNanos);
+        }
+    }
 
-            System.out.println("HTTP Method: " + method);
-            System.out.println("Endpoint: " + path);
-            System.out.println("Request Body: " + body);
+    @Override
+    public void run() {
+        trace = RequestTrace.start(request.getHeader(REQUEST_ID_HEADER));
+        try {
+            handle();
+        } finally {
+            RequestTrace.clear();
+            RequestDeadline.clear();
+            // the time spent queued for a worker counts: it is what grows under overload;
+            // the time spent waiting for a slow client to read does not, as it says nothing about the server
+            long waitedForClient = trace.get(RequestTrace.Phase.WRITE);
+            context.getAdmissionLimiter().release(System.nanoTime() - admittedNanos - waitedForClient);
+        }
+    }
 
-            Map<String, String> headers = new HashMap<>();
-            for (int i = 1; i < requestLines.length; i++) {
-                String[] headerParts = requestLines[i].split(": ", 2);
-                if (headerParts.length == 2) {
-                    headers.put(headerParts[0], headerParts[1]);
-                }
-            }
+    private void handle() {
+        long startNanos = System.nanoTime();
+        trace.add(RequestTrace.Phase.QUEUE, startNanos - admittedNanos);
+        Map<String, Object> responseMap;
+        int statusCode = 200;
+        String allowedMethods = null;
+        Map<String, String> routeHeaders = null;
+        Path responseFile = null;
+        String responseText = null;
+        String responseType = null;
+        String routeTemplate = null;
+        boolean keepAlive = false;
+        try {
+            String method = request.getMethod();
+            String path = request.getPath();
+            Map<String, String> queryParams = parseQueryParams(request.getQuery());
+            keepAlive = isKeepAlive(request) && !context.isDraining();
 
-            Map<String, Object> responseMap = Collections.emptyMap();
-            int statusCode = 200;
+            responseMap = Collections.emptyMap();
 
             try {
-                if ((method.equals("POST") || method.equals("PUT") || method.equals("PATCH"))) {
-                    if (!path.equals("/auth/logout")) {
-                        if (headers.get("Content-Type") == null || !headers.get("Content-Type").toLowerCase().startsWith("application/json")) {
-                            throw new UnsupportedMediaTypeException("Content-Type header must be 'application/json' for this request.");
-                        }
-                    }
-                }
-                if ((method.equals("GET") || method.equals("DELETE")) && body != null && !body.isEmpty()) {
+                if ((method.equals("GET") || method.equals("DELETE")) && request.hasBody()) {
                     throw new UnsupportedMediaTypeException("GET requests cannot have a message body.");
                 }
 
                 Integer userId = null;
                 String token = null;
-                if (headers.containsKey("Authorization")) {
-                    token = headers.get("Authorization").replace("Bearer ", "");
-                    System.out.println("Token: " + token);
+                String authorization = request.getHeader("authorization");
+                if (authorization != null) {
+                    token = authorization.replace("Bearer ", "");
                     if (token.isEmpty()) {
                         throw new UnauthorizedException("Authentication token is required.");
                     }
                     userId = SessionRegistry.getUserIdFromToken(token);
                 }
 
-                String[] pathSegments = path.split("/");
-                if (pathSegments.length < 2) {
-                    throw new ResourceNotFoundException("Not Found");
-                }
-
-                switch (pathSegments[1]) {
-                    case "auth":
-                        if (path.equals("/auth/register") && method.equals("POST")) {
-                            User userToRegister = gson.fromJson(body, User.class);
-                            responseMap = userController.handleSignup(userToRegister);
-                        } else if (path.equals("/auth/login") && method.equals("POST")) {
-                            Map<String, String> loginData = gson.fromJson(body, Map.class);
-                            if (loginData == null || loginData.get("phone") == null) {
-                                throw new InvalidInputException("Invalid phone");
-                            }
-                            if (loginData.get("password") == null) {
-                                throw new InvalidInputException("Invalid password");
-                            }
-                            responseMap = userController.handleLogin(loginData.get("phone"), loginData.get("password"));
-                        } else if (path.equals("/auth/profile") && method.equals("GET")) {
-                            responseMap = userController.handleGetProfile(userId);
-                        } else if (path.equals("/auth/profile") && method.equals("PUT")) {
-                            responseMap = userController.handleUpdateProfile(userId, body);
-                        } else if (path.equals("/auth/logout") && method.equals("POST")) {
-                            responseMap = userController.handleLogout(token);
-                        }
-                        break;
-
-                    case "restaurants":
-                        if (path.equals("/restaurants") && method.equals("POST")) {
-                            Restaurant newRestaurant = gson.fromJson(body, Restaurant.class);
-                            responseMap = restaurantController.handleCreateRestaurant(newRestaurant, userId);
-                        } else if (path.equals("/restaurants/mine") && method.equals("GET")) {
-                            responseMap = restaurantController.handleGetMyRestaurants(userId);
-                        } else if (pathSegments.length == 3 && method.equals("PUT")) {
-                            Integer restaurantId = Integer.parseInt(pathSegments[2]);
-                            Restaurant updateData = gson.fromJson(body, Restaurant.class);
-                            responseMap = restaurantController.handleUpdateRestaurant(restaurantId, updateData, userId);
-                        } else if (pathSegments.length == 4 && pathSegments[3].equals("items") && method.equals("GET")) {
-                            if (userId == null) {
-                                throw new UnauthorizedException("Authentication required. Please log in.");
-                            }
-                            int restaurantId = Integer.parseInt(pathSegments[2]);
-                            responseMap = restaurantController.handleGetMasterFoodList(userId, restaurantId);
-                        } else if (pathSegments.length == 4 && pathSegments[3].equals("item") && method.equals("POST")) {
-                            if (userId == null) {
-                                throw new UnauthorizedException("Authentication required. Please log in.");
-                            }
-                            int restaurantId = Integer.parseInt(path.split("/")[2]);
-                            Food food = gson.fromJson(body, Food.class);
-                            responseMap = restaurantController.handleAddFoodItemToMasterList(restaurantId, userId, food);
-                        } else if (pathSegments.length == 5 && pathSegments[3].equals("item") && method.equals("PUT")) {
-                            Integer restaurantId = Integer.parseInt(pathSegments[2]);
-                            Integer itemId = Integer.parseInt(pathSegments[4]);
-                            Food updatedFood = gson.fromJson(body, Food.class);
-                            responseMap = restaurantController.handleUpdateMasterFoodItem(restaurantId, itemId, userId, updatedFood);
-                        } else if (pathSegments.length == 5 && pathSegments[3].equals("item") && method.equals("DELETE")) {
-                            Integer restaurantId = Integer.parseInt(pathSegments[2]);
-                            Integer itemId = Integer.parseInt(pathSegments[4]);
-                            responseMap = restaurantController.handleDeleteMasterFoodItem(restaurantId, itemId, userId);
-                        }
-                        else if (pathSegments.length == 4 && pathSegments[3].equals("menu") && method.equals("POST")) {
-                            if (userId == null) throw new UnauthorizedException("Authentication is required.");
-                            Integer restaurantId = Integer.parseInt(pathSegments[2]);
-                            Map<String, String> requestBody = gson.fromJson(body, Map.class);
-                            if (requestBody == null) {
-                                throw new InvalidInputException("Request body is missing.");
-                            }
-                            String title = requestBody.get("title");
-                            responseMap = restaurantController.handleCreateMenu(restaurantId, userId, title);
-                        } else if (pathSegments.length == 5 && pathSegments[3].equals("menu") && method.equals("DELETE")) {
-                            Integer restaurantId = Integer.parseInt(pathSegments[2]);
-                            String title = pathSegments[4];
-                            responseMap = restaurantController.handleDeleteTitledMenu(restaurantId, userId, title);
-                        } else if (pathSegments.length == 5 && pathSegments[3].equals("menu") && method.equals("PUT")) {
-                            Integer restaurantId = Integer.parseInt(pathSegments[2]);
-                            String title = pathSegments[4];
-                            Type type = new TypeToken<Map<String, Double>>(){}.getType();
-                            Map<String, Double> requestBody = gson.fromJson(body, type);
-                            Integer itemId = requestBody != null ? requestBody.get("item_id").intValue() : null;
-                            responseMap = restaurantController.handleAddItemToTitledMenu(restaurantId, userId, title, itemId);
-                        } else if (pathSegments.length == 6 && pathSegments[3].equals("menu") && method.equals("DELETE")) {
-                            Integer restaurantId = Integer.parseInt(pathSegments[2]);
-                            String title = pathSegments[4];
-                            Integer itemId = Integer.parseInt(pathSegments[5]);
-                            responseMap = restaurantController.handleRemoveItemFromTitledMenu(restaurantId, userId, title, itemId);
-                        } else if (pathSegments.length == 4 && pathSegments[3].equals("orders") && method.equals("GET")) {
-                            int restaurantId = Integer.parseInt(pathSegments[2]);
-                            responseMap = restaurantController.handleGetRestaurantOrders(userId, restaurantId, queryParams);
-                        } else if (pathSegments.length == 5 && pathSegments[3].equals("orders") && method.equals("PATCH")) {
-                            int restaurantId = Integer.parseInt(pathSegments[2]);
-                            int orderId = Integer.parseInt(pathSegments[4]);
-                            Map<String, String> requestBody = gson.fromJson(body, Map.class);
-                            responseMap = restaurantController.handleUpdateOrderStatus(userId, restaurantId, orderId, requestBody);
-                        }
-                        break;
-
-                    case "orders":
-                        if (path.equals("/orders") && method.equals("POST")) {
-                            if (userId == null) throw new UnauthorizedException("Authentication is required.");
-
-                            Type orderRequestType = new TypeToken<Map<String, Object>>() {}.getType();
-                            Map<String, Object> orderRequest = gson.fromJson(body, orderRequestType);
-
-                            Order order = new Order();
-                            order.setDeliveryAddress((String) orderRequest.get("delivery_address"));
-
-                            // Treat all numbers as the generic Number class
-                            order.setRestaurantId(((Number) orderRequest.get("vendor_id")).intValue());
-                            if (orderRequest.get("coupon_id") != null) {
-                                order.setCouponId(((Number) orderRequest.get("coupon_id")).intValue());
-                            }
-
-                            List<Map<String, Object>> itemsList = (List<Map<String, Object>>) orderRequest.get("items");
-                            Map<Integer, Integer> itemsMap = new HashMap<>();
-                            for (Map<String, Object> item : itemsList) {
-                                itemsMap.put(((Number) item.get("item_id")).intValue(), ((Number) item.get("quantity")).intValue());
-                            }
-
-                            order.setItems(itemsMap);
-                            responseMap = orderController.handleCreateOrder(order, userId);
-                        } else if (pathSegments.length == 3 && method.equals("GET")) {
-                            int orderId = Integer.parseInt(pathSegments[2]);
-                            responseMap = orderController.handleGetOrderDetails(userId, orderId);
-                        } else if (path.equals("/orders/history") && method.equals("GET")) {
-                            responseMap = orderController.handleGetOrderHistory(userId, queryParams);
-                        }
-                        break;
-                    case "admin":
-                        if (path.equals("/admin/users") && method.equals("GET")) {
-                            responseMap = adminController.handleListAllUsers(userId);
-                        } else if (path.equals("/admin/orders") && method.equals("GET")) {
-                            responseMap = adminController.handleGetAllOrders(userId, queryParams);
-                        } else if (path.equals("/admin/transactions") && method.equals("GET")) {
-                            responseMap = adminController.handleGetAllTransactions(userId, queryParams);
-                        } else if (path.equals("/admin/pending-users") && method.equals("GET")) {
-                            responseMap = adminController.handleGetPendingUsers(userId);
-                        }  else if (path.equals("/admin/pending-users") && method.equals("PUT")) {
-                            Type listType = new TypeToken<List<UserStatusUpdate>>() {}.getType();
-                            List<UserStatusUpdate> userUpdates = gson.fromJson(body, listType);
-                            responseMap = adminController.handleUpdatePendingUsers(userId, userUpdates);
-                        } else if (path.equals("/admin/pending-orders") && method.equals("GET")) {
-                            responseMap = adminController.handleGetPendingOrders(userId);
-                        } else if (path.equals("/admin/pending-orders") && method.equals("PUT")) {
-                            Type listType = new TypeToken<List<OrderStatusUpdate>>() {}.getType();
-                            List<OrderStatusUpdate> orderUpdates = gson.fromJson(body, listType);
-                            responseMap = adminController.handleUpdatePendingOrders(userId, orderUpdates);
-                        } else if (path.equals("/admin/pending-restaurants") && method.equals("GET")) {
-                            responseMap = adminController.handleGetPendingRestaurants(userId);
-                        } else if (path.equals("/admin/pending-restaurants") && method.equals("PUT")) {
-                            Type listType = new TypeToken<List<RestaurantStatusUpdate>>() {}.getType();
-                            List<RestaurantStatusUpdate> restaurantUpdates = gson.fromJson(body, listType);
-                            responseMap = adminController.handleUpdatePendingRestaurants(userId, restaurantUpdates);
-                        }
-                        break;
-                    case "vendors":
-                        if (path.equals("/vendors") && method.equals("POST")) {
-                            Type type = new TypeToken<Map<String, Object>>(){}.getType();
-                            Map<String, Object> filters = gson.fromJson(body, type);
-                            responseMap = customerController.handleListVendors(userId, filters);
-                        } else if (pathSegments.length == 3 && method.equals("GET")) {
-                            int restaurantId = Integer.parseInt(pathSegments[2]);
-                            responseMap = customerController.handleGetVendorDetails(userId, restaurantId);
-                        }
-                        break;
-                    case "items":
-                        if (path.equals("/items") && method.equals("POST")) {
-                            Type type = new TypeToken<Map<String, Object>>(){}.getType();
-                            Map<String, Object> filters = gson.fromJson(body, type);
-                            responseMap = customerController.handleListItems(userId, filters);
-                        } else if (pathSegments.length == 3 && method.equals("GET")) {
-                            int itemId = Integer.parseInt(pathSegments[2]);
-                            responseMap = customerController.handleGetItemDetails(userId, itemId);
-                        }
-                        break;
-                    case "favorites":
-                        if (pathSegments.length == 3 && method.equals("PUT")) {
-                            int restaurantId = Integer.parseInt(pathSegments[2]);
-                            responseMap = customerController.handleAddFavoriteRestaurant(userId, restaurantId);
-                        } else if (path.equals("/favorites") && method.equals("GET")) {
-                            responseMap = customerController.handleGetFavoriteRestaurants(userId);
-                        } else if (pathSegments.length == 3 && method.equals("DELETE")) {
-                            int restaurantId = Integer.parseInt(pathSegments[2]);
-                            responseMap = customerController.handleRemoveFavoriteRestaurant(userId, restaurantId);
+                RouteMatch<RouteHandler> match = ROUTE_MATCH.get();
+                switch (context.getRouter().match(method, path, match)) {
+                    case FOUND:
+                        routeTemplate = match.getTemplate();
+                        checkContentType(method, path, routeTemplate);
+                        RequestDeadline deadline = RequestDeadline.start(admittedNanos, RouteTable.budgetMs(method, routeTemplate));
+                        if (deadline.isExpired()) {
+                            throw new DeadlineExceededException("The request waited too long to be handled.");
                         }
+                        RouteContext routeContext = new RouteContext(context, request, match, queryParams, userId, token, deadline,
+                                connection.getLocalPort() == context.getConfig().getMetricsPort());
+                        trace.add(RequestTrace.Phase.ROUTE, System.nanoTime() - startNanos);
+                        responseMap = invoke(match.getHandler(), routeContext);
+                        routeHeaders = routeContext.getResponseHeaders();
+                        responseFile = routeContext.getResponseFile();
+                        responseText = routeContext.getResponseText();
+                        responseType = routeContext.getResponseType();
                         break;
-                    case "ratings":
-                        if (path.equals("/ratings") && method.equals("POST")) {
-                            Rating rating = gson.fromJson(body, Rating.class);
-                            responseMap = customerController.handleSubmitRating(userId, rating);
-                        } else if (pathSegments.length == 3 && method.equals("GET")) {
-                            int orderId = Integer.parseInt(pathSegments[2]);
-                            responseMap = customerController.handleGetRatingByOrderId(userId, orderId);
-                        }
-                        break;
-                    case "deliveries":
-                        if (path.equals("/deliveries/available") && method.equals("GET")) {
-                            responseMap = courierController.handleGetAvailableDeliveries(userId);
-                        } else if (path.equals("/deliveries/history") && method.equals("GET")) {
-                            responseMap = courierController.handleGetDeliveryHistory(userId, queryParams);
-                        } else if (pathSegments.length == 3 && method.equals("PATCH")) {
-                            int orderId = Integer.parseInt(pathSegments[2]);
-                            Map<String, String> requestBody = gson.fromJson(body, Map.class);
-                            responseMap = courierController.handleUpdateDeliveryStatus(userId, orderId, requestBody);
-                        }
-                        break;
-                    case "wallet":
-                        if (path.equals("/wallet/top-up") && method.equals("POST")) {
-                            Type type = new TypeToken<Map<String, Double>>(){}.getType();
-                            Map<String, Double> requestBody = gson.fromJson(body, type);
-                            responseMap = walletController.handleTopUp(userId, requestBody);
-                        }
-                        break;
-                    case "payment":
-                        if (path.equals("/payment/online") && method.equals("POST")) {
-                            Type type = new TypeToken<Map<String, Object>>(){}.getType();
-                            Map<String, Object> requestBody = gson.fromJson(body, type);
-                            responseMap = walletController.handlePayment(userId, requestBody);
-                        }
-                        break;
-                    case "transactions":
-                        if (path.equals("/transactions") && method.equals("GET")) {
-                            responseMap = walletController.handleGetTransactionHistory(userId);
-                        }
+                    case METHOD_NOT_ALLOWED:
+                        statusCode = 405;
+                        allowedMethods = match.getAllowedMethods();
+                        responseMap = Map.of("error", "Method Not Allowed");
                         break;
+                    case BAD_PARAMETER:
+                        throw new NumberFormatException("Invalid path variable in " + path);
                     default:
                         statusCode = 404;
                         responseMap = Map.of("error", "Not Found");
@@ -406,6 +239,10 @@ public class RequestHandler implements Runnable {
             } catch (TooManyRequestsException e) {
                 statusCode = 429;
                 responseMap = Map.of("error", e.getMessage());
+            } catch (DeadlineExceededException e) {
+                statusCode = 503;
+                routeHeaders = Map.of("Retry-After", DEADLINE_RETRY_AFTER);
+                responseMap = Map.of("error", "The server is busy. Please try again shortly.");
             } catch (SQLException e) {
                 statusCode = 500;
                 responseMap = Map.of("error", "A database error occurred.");
@@ -421,39 +258,149 @@ public class RequestHandler implements Runnable {
                 e.printStackTrace();
             }
 
-            String statusText = getStatusText(statusCode);
-            String jsonResponse = gson.toJson(responseMap);
-            httpResponse = "HTTP/1.1 " + statusCode + " " + statusText + "\r\n" +
-                    "Content-Type: application/json\r\n" +
-                    "Content-Length: " + jsonResponse.length() + "\r\n" +
-                    "\r\n" +
-                    jsonResponse;
-
         } catch (Exception e) {
-            String errorJson = gson.toJson(Map.of("error", "Error processing request."));
-            httpResponse = "HTTP/1.1 500 Internal Server Error\r\n" +
-                    "Content-Type: application/json\r\n" +
-                    "Content-Length: " + errorJson.length() + "\r\n" +
-                    "\r\n" +
-                    errorJson;
+            keepAlive = false;
+            statusCode = 500;
+            allowedMethods = null;
+            routeHeaders = null;
+            responseFile = null;
+            responseText = null;
+            responseMap = Map.of("error", "Error processing request.");
             e.printStackTrace();
         }
 
-        System.out.println("--- SERVER RESPONSE ---");
-        System.out.println(httpResponse);
-        System.out.println("-----------------------");
+        if (responseFile != null && statusCode == 200) {
+            sendFile(responseFile, responseType, routeHeaders, keepAlive, routeTemplate, startNanos);
+            return;
+        }
+        if (responseText != null && statusCode == 200) {
+            byte[] body = responseText.getBytes(StandardCharsets.UTF_8);
+            HttpResponse response = new HttpResponse(200, responseType, body);
+            response.header(REQUEST_ID_HEADER, trace.getId());
+            if (routeHeaders != null) {
+                routeHeaders.forEach(response::header);
+            }
+            connection.send(response, keepAlive);
+            finished(routeTemplate, 200, null, body.length, startNanos);
+            return;
+        }
+
+        HttpResponse head = new HttpResponse(statusCode, HttpResponse.APPLICATION_JSON, null);
+        head.header(REQUEST_ID_HEADER, trace.getId());
+        if (allowedMethods != null) {
+            head.header("Allow", allowedMethods);
+        }
+        if (routeHeaders != null) {
+            routeHeaders.forEach(head::header);
+        }
+        if (statusCode == 204 || statusCode == 304) {
+            // these never carry a body
+            connection.send(head, keepAlive);
+            finished(routeTemplate, statusCode, null, 0, startNanos);
+            return;
+        }
+        ResponseStreamer streamer = new ResponseStreamer(connection, request, head, keepAlive,
+                context.getCompressor(), context.getResponseBufferPool(), context.getResponseBufferSize());
+        int sentStatus = writeResponse(streamer, responseMap, statusCode);
+
+        finished(routeTemplate, sentStatus, streamer.getBodyPrefix(), streamer.getBytesWritten(), startNanos);
+    }
+
+    /**
+     * Records a request that has been answered in the access log, the request
+     * metrics and, if it was slow, the slow-request log. The metrics time it from
+     * admission, so time spent waiting for a worker is included.
+     */
+    private void finished(String routeTemplate, int statusCode, byte[] bodyPrefix, long bodyBytes, long startNanos) {
+        long durationNanos = System.nanoTime() - admittedNanos;
+        context.getAccessLog().record(request, trace.getId(), routeTemplate, statusCode, bodyPrefix, bodyBytes, startNanos, connection);
+        context.getRequestMetrics().record(request.getMethod(), routeTemplate, statusCode,
+                durationNanos, request.getBody().length, bodyBytes);
+        context.getSlowRequestLog().record(request, routeTemplate, statusCode, durationNanos, trace);
+    }
+
+    /**
+     * Requests that change data carry JSON, except image uploads, which carry the raw image.
+     */
+    private void checkContentType(String method, String path, String routeTemplate) throws UnsupportedMediaTypeException {
+        if (!(method.equals("POST") || method.equals("PUT") || method.equals("PATCH")) || path.equals("/auth/logout")) {
+            return;
+        }
+        String contentType = request.getHeader("content-type");
+        String type = contentType == null ? "" : contentType.toLowerCase();
+        if (RouteTable.acceptsImage(method, routeTemplate)) {
+            if (!type.startsWith("application/octet-stream") && !type.startsWith("image/")) {
+                throw new UnsupportedMediaTypeException("Content-Type header must be 'application/octet-stream' or an image type for this request.");
+            }
+        } else if (!type.startsWith("application/json")) {
+            throw new UnsupportedMediaTypeException("Content-Type header must be 'application/json' for this request.");
+        }
+    }
 
+    /**
+     * Sends a file chosen by the route handler. Only the headers are built here;
+     * the selector thread hands the file itself to the kernel with
+     * {@link FileChannel#transferTo}, so its bytes are never copied into the heap.
+     * Files are already compressed images, so they are sent as they are.
+     */
+    private void sendFile(Path file, String contentType, Map<String, String> routeHeaders, boolean keepAlive,
+                          String routeTemplate, long startNanos) {
+        FileChannel channel;
+        long size;
         try {
-            ByteBuffer responseBuffer = ByteBuffer.wrap(httpResponse.getBytes());
-            clientChannel.write(responseBuffer);
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
         } catch (IOException e) {
-            System.err.println("Error sending response to client: " + e.getMessage());
-        } finally {
-            try {
-                clientChannel.close();
-            } catch (IOException e) {
-                System.err.println("Could not close client channel cleanly: " + e.getMessage());
+            e.printStackTrace();
+            HttpResponse error = buildErrorResponse(gson, 500, "An unexpected error occurred.");
+            error.header(REQUEST_ID_HEADER, trace.getId());
+            connection.send(error, keepAlive);
+            finished(routeTemplate, 500, error.getBody(), error.getBody().length, startNanos);
+            return;
+        }
+        HttpResponse head = new HttpResponse(200, contentType, null);
+        head.header(REQUEST_ID_HEADER, trace.getId());
+        if (routeHeaders != null) {
+            routeHeaders.forEach(head::header);
+        }
+        connection.write(head.encodeHead(keepAlive, size));
+        connection.writeFile(channel, 0, size);
+        connection.finish(keepAlive);
+        finished(routeTemplate, 200, null, size, startNanos);
+    }
+
+    /**
+     * Serializes the response map straight into the connection's output. Small
+     * bodies are sent with a Content-Length; large ones are sent in chunks as Gson
+     * produces them, so no full copy of the JSON is ever held in memory.
+     * The selector thread does the socket writes; this worker only waits if the
+     * client falls several chunks behind.
+     *
+     * @return The status code the client was sent.
+     */
+    private int writeResponse(ResponseStreamer streamer, Map<String, Object> responseMap, int statusCode) {
+        long startNanos = System.nanoTime();
+        long writeNanos = trace.get(RequestTrace.Phase.WRITE);
+        try {
+            JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(streamer, StandardCharsets.UTF_8));
+            gson.toJson(responseMap, responseMap.getClass(), writer);
+            writer.close();
+        } catch (JsonIOException | IOException e) {
+            // the client went away while we were streaming to it
+            streamer.abort();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            if (!streamer.abort()) {
+                // nothing was sent yet, so the client can still get a proper error
+                connection.send(buildErrorResponse(gson, 500, "Error processing request.")
+                        .header(REQUEST_ID_HEADER, trace.getId()), false);
+                return 500;
             }
+        } finally {
+            // time spent waiting for the client to read is traced separately
+            long waitedNanos = trace.get(RequestTrace.Phase.WRITE) - writeNanos;
+            trace.add(RequestTrace.Phase.SERIALIZE, System.nanoTime() - startNanos - waitedNanos);
         }
+        return statusCode;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,300 @@
+package com.snappfood.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses response bodies with gzip or deflate when the client's
+ * Accept-Encoding allows it.
+ * <p>
+ * Bodies below a size threshold are sent as they are, since the headers and
+ * CPU cost outweigh the saving. Deflaters hold native memory, so they are
+ * borrowed from a bounded pool instead of being created per response or kept
+ * per thread (which would mean one per virtual thread).
+ */
+public class ResponseCompressor {
+
+    private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9c};
+
+    private final int threshold;
+    private final int level;
+    private final int maxPooled;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param threshold The smallest body, in bytes, that is compressed.
+     * @param level     The deflate level, from 1 (fastest) to 9 (smallest).
+     * @param maxPooled How many idle deflaters are kept for reuse.
+     */
+    public ResponseCompressor(int threshold, int level, int maxPooled) {
+        this.threshold = threshold;
+        this.level = level;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Compresses a response if the request accepts an encoding we support.
+     * @param request  The request being answered.
+     * @param response The uncompressed response.
+     * @return A compressed copy of the response, or the response itself.
+     */
+    public HttpResponse compress(HttpRequest request, HttpResponse response) {
+        byte[] body = response.getBody();
+        if (body.length < threshold || !isCompressible(response.getContentType())
+                || response.getHeader("Content-Encoding") != null) {
+            return response;
+        }
+        response.header("Vary", "Accept-Encoding");
+
+        String encoding = negotiate(request.getHeader("accept-encoding"));
+        if (encoding == null) {
+            return response;
+        }
+        byte[] compressed = encoding.equals("gzip") ? gzip(body) : deflate(body);
+        if (compressed.length >= body.length) {
+            return response;
+        }
+        return response.withBody(compressed).header("Content-Encoding", encoding);
+    }
+
+    /**
+     * Chooses an encoding for a response whose body is streamed, so its size is
+     * not known up front. Adds Vary whenever the content type is compressible.
+     * @param request The request being answered.
+     * @param head    The response head; its body is ignored.
+     * @return "gzip", "deflate", or null to send the body as it is.
+     */
+    String encodingFor(HttpRequest request, HttpResponse head) {
+        if (!isCompressible(head.getContentType()) || head.getHeader("Content-Encoding") != null) {
+            return null;
+        }
+        head.header("Vary", "Accept-Encoding");
+        return negotiate(request.getHeader("accept-encoding"));
+    }
+
+    /**
+     * Wraps a stream so that everything written to it is compressed on the way through.
+     * Closing the returned stream writes the trailer and closes the underlying one;
+     * a response given up on must be {@link CompressingStream#abort() aborted} instead.
+     * @param out      Where the compressed bytes go.
+     * @param encoding "gzip" or "deflate".
+     * @return The compressing stream.
+     */
+    CompressingStream compressing(OutputStream out, String encoding) throws IOException {
+        boolean gzip = encoding.equals("gzip");
+        out.write(gzip ? GZIP_HEADER : ZLIB_HEADER);
+        return new CompressingStream(out, borrow(), gzip);
+    }
+
+    /**
+     * Picks gzip or deflate from an Accept-Encoding header, honouring q=0.
+     * @return The chosen encoding, or null if neither is acceptable.
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        int start = 0;
+        while (start < acceptEncoding.length()) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end < 0) {
+                end = acceptEncoding.length();
+            }
+            String token = acceptEncoding.substring(start, end).trim();
+            start = end + 1;
+
+            double q = 1.0;
+            int semicolon = token.indexOf(';');
+            if (semicolon >= 0) {
+                q = parseQuality(token.substring(semicolon + 1));
+                token = token.substring(0, semicolon).trim();
+            }
+            if (token.equalsIgnoreCase("gzip") || token.equalsIgnoreCase("x-gzip")) {
+                gzip = q;
+            } else if (token.equalsIgnoreCase("deflate")) {
+                deflate = q;
+            } else if (token.equals("*")) {
+                wildcard = q;
+            }
+        }
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return "gzip";
+        }
+        return deflate > 0 ? "deflate" : null;
+    }
+
+    private static double parseQuality(String parameter) {
+        String p = parameter.trim();
+        if (!p.startsWith("q=")) {
+            return 1.0;
+        }
+        try {
+            return Double.parseDouble(p.substring(2).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType != null
+                && (contentType.startsWith("application/json") || contentType.startsWith("text/"));
+    }
+
+    private byte[] gzip(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        byte[] out = deflateRaw(body, GZIP_HEADER, 8);
+        int trailer = out.length - 8;
+        writeIntLE(out, trailer, (int) crc.getValue());
+        writeIntLE(out, trailer + 4, body.length);
+        return out;
+    }
+
+    /**
+     * HTTP "deflate" is the zlib format: a two-byte header, raw deflate data and an Adler-32 checksum.
+     */
+    private byte[] deflate(byte[] body) {
+        Adler32 adler = new Adler32();
+        adler.update(body);
+        byte[] out = deflateRaw(body, ZLIB_HEADER, 4);
+        int checksum = (int) adler.getValue();
+        int trailer = out.length - 4;
+        out[trailer] = (byte) (checksum >>> 24);
+        out[trailer + 1] = (byte) (checksum >>> 16);
+        out[trailer + 2] = (byte) (checksum >>> 8);
+        out[trailer + 3] = (byte) checksum;
+        return out;
+    }
+
+    /**
+     * Writes header + raw deflate data and leaves room for a trailer of the given size.
+     */
+    private byte[] deflateRaw(byte[] body, byte[] header, int trailerSize) {
+        Deflater deflater = borrow();
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] out = new byte[header.length + body.length / 2 + 64];
+            System.arraycopy(header, 0, out, 0, header.length);
+            int length = header.length;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length + trailerSize);
+        } finally {
+            giveBack(deflater);
+        }
+    }
+
+    private Deflater borrow() {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            return new Deflater(level, true);
+        }
+        pooled.decrementAndGet();
+        return deflater;
+    }
+
+    private void giveBack(Deflater deflater) {
+        deflater.reset();
+        if (pooled.incrementAndGet() <= maxPooled) {
+            deflaters.offer(deflater);
+        } else {
+            pooled.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Raw deflate output framed as gzip or zlib; the header is written by the caller.
+     */
+    final class CompressingStream extends DeflaterOutputStream {
+        private final boolean gzip;
+        private final Checksum checksum;
+        private long inputLength;
+        private boolean closed;
+
+        CompressingStream(OutputStream out, Deflater deflater, boolean gzip) {
+            super(out, deflater, 8192);
+            this.gzip = gzip;
+            this.checksum = gzip ? new CRC32() : new Adler32();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checksum.update(b, off, len);
+            inputLength += len;
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+                byte[] trailer = new byte[gzip ? 8 : 4];
+                int value = (int) checksum.getValue();
+                if (gzip) {
+                    writeIntLE(trailer, 0, value);
+                    writeIntLE(trailer, 4, (int) inputLength);
+                } else {
+                    trailer[0] = (byte) (value >>> 24);
+                    trailer[1] = (byte) (value >>> 16);
+                    trailer[2] = (byte) (value >>> 8);
+                    trailer[3] = (byte) value;
+                }
+                out.write(trailer);
+            } finally {
+                giveBack(def);
+            }
+            out.close();
+        }
+
+        /**
+         * Gives up on the stream without writing the trailer, returning its
+         * deflater to the pool. The underlying stream is left to the caller.
+         */
+        void abort() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            giveBack(def);
+        }
+    }
+
+    private static void writeIntLE(byte[] out, int offset, int value) {
+        out[offset] = (byte) value;
+        out[offset + 1] = (byte) (value >>> 8);
+        out[offset + 2] = (byte) (value >>> 16);
+        out[offset + 3] = (byte) (value >>> 24);
+    }
+}
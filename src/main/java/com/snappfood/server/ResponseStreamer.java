@@ -0,0 +1,153 @@
+package com.snappfood.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The body of one response, written by a serializer that does not know how big
+ * it will get.
+ * <p>
+ * The first bytes are kept in a small heap buffer. If the body ends there, it is
+ * sent in one piece with a Content-Length, exactly as before. If it grows past
+ * the buffer, the head is committed with chunked transfer encoding and the rest
+ * is compressed (when the client accepts it) and copied into pooled buffers
+ * that the selector thread writes out as they fill. The encoded body then never
+ * exists in memory as a whole: it takes at most the buffer plus the connection's
+ * chunk queue, however large it is. The result it is serialized from is another
+ * matter: controllers still load a whole list, such as every order for
+ * /admin/orders, before it is written, so that part grows with the result.
+ * HTTP/1.0 clients cannot read chunked bodies, so theirs are buffered whole.
+ * <p>
+ * Used by one worker thread at a time.
+ */
+class ResponseStreamer extends OutputStream {
+
+    private final ClientConnection connection;
+    private final HttpRequest request;
+    private final HttpResponse head;
+    private final boolean keepAlive;
+    private final ResponseCompressor compressor;
+    private final BufferPool pool;
+
+    private byte[] spool;
+    private int spooled;
+    private long bytesWritten;
+    private ChunkedChannelOutput chunks;
+    private ResponseCompressor.CompressingStream compressed;
+    private OutputStream downstream;
+    private boolean closed;
+
+    /**
+     * @param connection The connection to answer on.
+     * @param request    The request being answered.
+     * @param head       The status, content type and headers of the response.
+     * @param keepAlive  Whether the connection stays open after the response.
+     * @param compressor Compresses the body if the client accepts it.
+     * @param pool       The pool chunk buffers are borrowed from.
+     * @param spoolSize  How many bytes are buffered before switching to chunked encoding.
+     */
+    ResponseStreamer(ClientConnection connection, HttpRequest request, HttpResponse head, boolean keepAlive,
+                     ResponseCompressor compressor, BufferPool pool, int spoolSize) {
+        this.connection = connection;
+        this.request = request;
+        this.head = head;
+        this.keepAlive = keepAlive;
+        this.compressor = compressor;
+        this.pool = pool;
+        this.spool = new byte[spoolSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        bytesWritten += len;
+        if (downstream != null) {
+            downstream.write(b, off, len);
+            return;
+        }
+        if (spooled + len > spool.length) {
+            if (!"HTTP/1.1".equals(request.getVersion())) {
+                spool = Arrays.copyOf(spool, Math.max(spool.length * 2, spooled + len));
+            } else {
+                startStreaming();
+                downstream.write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, spool, spooled, len);
+        spooled += len;
+    }
+
+    /**
+     * Sends the response, or the rest of it if streaming has started.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (downstream != null) {
+            downstream.close();
+        } else {
+            HttpResponse response = head.withBody(Arrays.copyOf(spool, spooled));
+            connection.send(compressor.compress(request, response), keepAlive);
+        }
+    }
+
+    /**
+     * Gives up on the response. If nothing has been sent yet the caller may still
+     * send a different one; otherwise the connection is closed after what was queued.
+     * @return true if part of this response has already been committed.
+     */
+    boolean abort() {
+        closed = true;
+        if (chunks == null) {
+            return false;
+        }
+        if (compressed != null) {
+            compressed.abort();
+        }
+        chunks.abort();
+        return true;
+    }
+
+    /**
+     * @return true once the head has been committed and the body is being sent in chunks.
+     */
+    boolean isStreamed() {
+        return chunks != null;
+    }
+
+    /**
+     * @return The start of the body, at most the spool size, for logging.
+     */
+    byte[] getBodyPrefix() {
+        return Arrays.copyOf(spool, spooled);
+    }
+
+    /**
+     * @return The uncompressed body length written so far.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void startStreaming() throws IOException {
+        String encoding = compressor.encodingFor(request, head);
+        if (encoding != null) {
+            head.header("Content-Encoding", encoding);
+        }
+        chunks = new ChunkedChannelOutput(connection, pool, head.encodeHead(keepAlive, -1), keepAlive);
+        if (encoding != null) {
+            compressed = compressor.compressing(chunks, encoding);
+        }
+        downstream = compressed != null ? compressed : chunks;
+        downstream.write(spool, 0, spooled);
+    }
+}
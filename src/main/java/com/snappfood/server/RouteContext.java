@@ -0,0 +1,220 @@
+package com.snappfood.server;
+
+import com.google.gson.Gson;
+import com.snappfood.controller.*;
+import com.snappfood.dao.CatalogVersions;
+import com.snappfood.database.RequestDeadline;
+import com.snappfood.server.routing.RouteMatch;
+import com.snappfood.storage.ImageStore;
+import com.snappfood.storage.ThumbnailGenerator;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Everything a {@link RouteHandler} needs to answer one request: the request
+ * itself, the caller's identity, the matched path variables and the controllers.
+ */
+public class RouteContext {
+
+    private final ApplicationContext app;
+    private final HttpRequest request;
+    private final RouteMatch<RouteHandler> match;
+    private final Map<String, String> queryParams;
+    private final Integer userId;
+    private final String token;
+    private final RequestDeadline deadline;
+    private final boolean metricsPort;
+    private Map<String, String> responseHeaders;
+    private Path responseFile;
+    private String responseText;
+    private String responseType;
+
+    RouteContext(ApplicationContext app, HttpRequest request, RouteMatch<RouteHandler> match,
+                 Map<String, String> queryParams, Integer userId, String token, RequestDeadline deadline,
+                 boolean metricsPort) {
+        this.app = app;
+        this.request = request;
+        this.match = match;
+        this.queryParams = queryParams;
+        this.userId = userId;
+        this.token = token;
+        this.deadline = deadline;
+        this.metricsPort = metricsPort;
+    }
+
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return The body decoded as UTF-8 text.
+     */
+    public String getBody() {
+        return request.getBodyAsString();
+    }
+
+    /**
+     * @return The raw body, for routes that take binary uploads.
+     */
+    public byte[] getBodyBytes() {
+        return request.getBody();
+    }
+
+    public Map<String, String> getQueryParams() {
+        return queryParams;
+    }
+
+    /**
+     * @return The authenticated user's ID, or null if the request carried no valid token.
+     */
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return When the request must be done. Database calls made on this thread already honour it.
+     */
+    public RequestDeadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * @return true if the request came in on the metrics port rather than the public API port.
+     */
+    public boolean isMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * @param name The name of an int path variable, such as "id" in {id:int}.
+     * @return The value of the variable.
+     */
+    public int pathInt(String name) {
+        return match.getInt(name);
+    }
+
+    /**
+     * @param name The name of a path variable.
+     * @return The raw text of the variable.
+     */
+    public String pathString(String name) {
+        return match.getString(name);
+    }
+
+    /**
+     * Adds a header to the response. Content-Type, Content-Length and Connection are set by the server.
+     */
+    public void responseHeader(String name, String value) {
+        if (responseHeaders == null) {
+            responseHeaders = new LinkedHashMap<>();
+        }
+        responseHeaders.put(name, value);
+    }
+
+    /**
+     * @return The headers added by the handler, or null if there are none.
+     */
+    Map<String, String> getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * Answers with the contents of a file instead of JSON. The map the handler
+     * returns is then only used for its "status" entry.
+     * @param file        The file to send.
+     * @param contentType The file's media type.
+     */
+    public void respondWithFile(Path file, String contentType) {
+        this.responseFile = file;
+        this.responseType = contentType;
+    }
+
+    /**
+     * Answers with plain text instead of JSON. The map the handler returns is
+     * then only used for its "status" entry.
+     * @param text        The body.
+     * @param contentType The body's media type.
+     */
+    public void respondWithText(String text, String contentType) {
+        this.responseText = text;
+        this.responseType = contentType;
+    }
+
+    /**
+     * @return The file set by {@link #respondWithFile}, or null if the response is JSON.
+     */
+    Path getResponseFile() {
+        return responseFile;
+    }
+
+    /**
+     * @return The text set by {@link #respondWithText}, or null if the response is JSON.
+     */
+    String getResponseText() {
+        return responseText;
+    }
+
+    /**
+     * @return The media type of the file or text the response carries.
+     */
+    String getResponseType() {
+        return responseType;
+    }
+
+    /**
+     * @return The whole application, for server routes that report on it.
+     */
+    ApplicationContext app() {
+        return app;
+    }
+
+    public ImageStore images() {
+        return app.getImageStore();
+    }
+
+    public ThumbnailGenerator thumbnails() {
+        return app.getThumbnailGenerator();
+    }
+
+    public CatalogVersions catalogVersions() {
+        return app.getCatalogVersions();
+    }
+
+    public Gson gson() {
+        return app.getGson();
+    }
+
+    public UserController users() {
+        return app.getUserController();
+    }
+
+    public AdminController admin() {
+        return app.getAdminController();
+    }
+
+    public RestaurantController restaurants() {
+        return app.getRestaurantController();
+    }
+
+    public OrderController orders() {
+        return app.getOrderController();
+    }
+
+    public CustomerController customers() {
+        return app.getCustomerController();
+    }
+
+    public CourierController couriers() {
+        return app.getCourierController();
+    }
+
+    public WalletController wallet() {
+        return app.getWalletController();
+    }
+}
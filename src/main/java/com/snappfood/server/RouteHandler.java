@@ -0,0 +1,18 @@
+package com.snappfood.server;
+
+import java.util.Map;
+
+/**
+ * Handles the requests of one route. The returned map becomes the JSON body;
+ * a "status" entry, if present, sets the response status.
+ */
+@FunctionalInterface
+public interface RouteHandler {
+
+    /**
+     * @param context The request being handled.
+     * @return The response body.
+     * @throws Exception to be mapped to an error response by {@link RequestHandler}.
+     */
+    Map<String, Object> handle(RouteContext context) throws Exception;
+}
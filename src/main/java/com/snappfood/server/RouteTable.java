@@ -0,0 +1,285 @@
+package com.snappfood.server;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.snappfood.exception.InvalidInputException;
+import com.snappfood.exception.ResourceNotFoundException;
+import com.snappfood.exception.UnauthorizedException;
+import com.snappfood.metrics.PrometheusWriter;
+import com.snappfood.model.*;
+import com.snappfood.server.routing.Router;
+import com.snappfood.storage.ImageStore;
+
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The API's routes, declared in one place and compiled into a {@link Router}.
+ */
+final class RouteTable {
+
+    private static final Type STRING_MAP = new TypeToken<Map<String, String>>() {}.getType();
+    private static final Type DOUBLE_MAP = new TypeToken<Map<String, Double>>() {}.getType();
+    private static final Type OBJECT_MAP = new TypeToken<Map<String, Object>>() {}.getType();
+    private static final Type USER_UPDATES = new TypeToken<List<UserStatusUpdate>>() {}.getType();
+    private static final Type ORDER_UPDATES = new TypeToken<List<OrderStatusUpdate>>() {}.getType();
+    private static final Type RESTAURANT_UPDATES = new TypeToken<List<RestaurantStatusUpdate>>() {}.getType();
+
+    // customers may see a catalog change up to 30 seconds late; sellers editing their own always revalidate
+    private static final String CATALOG_CACHE = "private, max-age=30";
+    private static final String OWNER_CACHE = "private, no-cache";
+    // an image id is the hash of its bytes, so the same URL can never serve different content
+    private static final String IMAGE_CACHE = "public, max-age=31536000, immutable";
+
+    // how long a request may take from admission, including its wait for a worker
+    private static final long DEFAULT_BUDGET_MS = 5000;
+    private static final Map<String, Long> BUDGETS_MS = Map.of(
+            "GET /vendors/{id:int}", 2000L,
+            "GET /items/{id:int}", 2000L,
+            "GET /restaurants/{id:int}/items", 2000L,
+            "POST /vendors", 3000L,
+            "POST /items", 3000L,
+            "POST /orders", 10000L,
+            "GET /admin/orders", 15000L,
+            "GET /admin/transactions", 15000L,
+            "GET /admin/users", 15000L);
+
+    // routes whose body is a raw image rather than JSON
+    private static final Set<String> IMAGE_UPLOADS = Set.of(
+            "PUT /auth/profile/image",
+            "PUT /restaurants/{id:int}/logo",
+            "PUT /restaurants/{id:int}/item/{itemId:int}/image");
+
+    private RouteTable() {
+    }
+
+    /**
+     * @param method   The request method.
+     * @param template The matched route template.
+     * @return true if the route takes a raw image body instead of JSON.
+     */
+    static boolean acceptsImage(String method, String template) {
+        return IMAGE_UPLOADS.contains(method + " " + template);
+    }
+
+    /**
+     * @param method   The request method.
+     * @param template The matched route template.
+     * @return How long a request to the route may take, in milliseconds.
+     */
+    static long budgetMs(String method, String template) {
+        return BUDGETS_MS.getOrDefault(method + " " + template, DEFAULT_BUDGET_MS);
+    }
+
+    /**
+     * @return A router holding every route of the API.
+     */
+    static Router<RouteHandler> build() {
+        Router<RouteHandler> router = new Router<>();
+
+        // auth
+        router.add("POST", "/auth/register", ctx ->
+                ctx.users().handleSignup(ctx.gson().fromJson(ctx.getBody(), User.class)));
+        router.add("POST", "/auth/login", ctx -> {
+            Map<String, String> loginData = ctx.gson().fromJson(ctx.getBody(), STRING_MAP);
+            if (loginData == null || loginData.get("phone") == null) {
+                throw new InvalidInputException("Invalid phone");
+            }
+            if (loginData.get("password") == null) {
+                throw new InvalidInputException("Invalid password");
+            }
+            return ctx.users().handleLogin(loginData.get("phone"), loginData.get("password"));
+        });
+        router.add("GET", "/auth/profile", ctx -> ctx.users().handleGetProfile(ctx.getUserId()));
+        router.add("PUT", "/auth/profile", ctx -> ctx.users().handleUpdateProfile(ctx.getUserId(), ctx.getBody()));
+        router.add("POST", "/auth/logout", ctx -> ctx.users().handleLogout(ctx.getToken()));
+        router.add("PUT", "/auth/profile/image", ctx -> ctx.users().handleUploadProfileImage(ctx.getUserId(), ctx.getBodyBytes()));
+
+        // restaurants
+        router.add("POST", "/restaurants", ctx ->
+                ctx.restaurants().handleCreateRestaurant(ctx.gson().fromJson(ctx.getBody(), Restaurant.class), ctx.getUserId()));
+        router.add("GET", "/restaurants/mine", ctx -> ctx.restaurants().handleGetMyRestaurants(ctx.getUserId()));
+        router.add("PUT", "/restaurants/{id:int}", ctx ->
+                ctx.restaurants().handleUpdateRestaurant(ctx.pathInt("id"), ctx.gson().fromJson(ctx.getBody(), Restaurant.class), ctx.getUserId()));
+        router.add("PUT", "/restaurants/{id:int}/logo", ctx -> {
+            requireUser(ctx, "Authentication required. Please log in.");
+            return ctx.restaurants().handleUploadLogo(ctx.pathInt("id"), ctx.getUserId(), ctx.getBodyBytes());
+        });
+        router.add("GET", "/restaurants/{id:int}/items", ConditionalGet.byPath(OWNER_CACHE, "id",
+                ctx -> ctx.restaurants().authorizeMasterFoodList(ctx.getUserId(), ctx.pathInt("id")), ctx -> {
+            requireUser(ctx, "Authentication required. Please log in.");
+            return ctx.restaurants().handleGetMasterFoodList(ctx.getUserId(), ctx.pathInt("id"));
+        }));
+        router.add("POST", "/restaurants/{id:int}/item", ctx -> {
+            requireUser(ctx, "Authentication required. Please log in.");
+            Food food = ctx.gson().fromJson(ctx.getBody(), Food.class);
+            return ctx.restaurants().handleAddFoodItemToMasterList(ctx.pathInt("id"), ctx.getUserId(), food);
+        });
+        router.add("PUT", "/restaurants/{id:int}/item/{itemId:int}", ctx ->
+                ctx.restaurants().handleUpdateMasterFoodItem(ctx.pathInt("id"), ctx.pathInt("itemId"), ctx.getUserId(),
+                        ctx.gson().fromJson(ctx.getBody(), Food.class)));
+        router.add("PUT", "/restaurants/{id:int}/item/{itemId:int}/image", ctx -> {
+            requireUser(ctx, "Authentication required. Please log in.");
+            return ctx.restaurants().handleUploadFoodImage(ctx.pathInt("id"), ctx.pathInt("itemId"), ctx.getUserId(), ctx.getBodyBytes());
+        });
+        router.add("DELETE", "/restaurants/{id:int}/item/{itemId:int}", ctx ->
+                ctx.restaurants().handleDeleteMasterFoodItem(ctx.pathInt("id"), ctx.pathInt("itemId"), ctx.getUserId()));
+        router.add("POST", "/restaurants/{id:int}/menu", ctx -> {
+            requireUser(ctx, "Authentication is required.");
+            Map<String, String> requestBody = ctx.gson().fromJson(ctx.getBody(), STRING_MAP);
+            if (requestBody == null) {
+                throw new InvalidInputException("Request body is missing.");
+            }
+            return ctx.restaurants().handleCreateMenu(ctx.pathInt("id"), ctx.getUserId(), requestBody.get("title"));
+        });
+        router.add("DELETE", "/restaurants/{id:int}/menu/{title}", ctx ->
+                ctx.restaurants().handleDeleteTitledMenu(ctx.pathInt("id"), ctx.getUserId(), ctx.pathString("title")));
+        router.add("PUT", "/restaurants/{id:int}/menu/{title}", ctx -> {
+            Map<String, Double> requestBody = ctx.gson().fromJson(ctx.getBody(), DOUBLE_MAP);
+            Integer itemId = requestBody != null ? requestBody.get("item_id").intValue() : null;
+            return ctx.restaurants().handleAddItemToTitledMenu(ctx.pathInt("id"), ctx.getUserId(), ctx.pathString("title"), itemId);
+        });
+        router.add("DELETE", "/restaurants/{id:int}/menu/{title}/{itemId:int}", ctx ->
+                ctx.restaurants().handleRemoveItemFromTitledMenu(ctx.pathInt("id"), ctx.getUserId(), ctx.pathString("title"), ctx.pathInt("itemId")));
+        router.add("GET", "/restaurants/{id:int}/orders", ctx ->
+                ctx.restaurants().handleGetRestaurantOrders(ctx.getUserId(), ctx.pathInt("id"), ctx.getQueryParams()));
+        router.add("PATCH", "/restaurants/{id:int}/orders/{orderId:int}", ctx ->
+                ctx.restaurants().handleUpdateOrderStatus(ctx.getUserId(), ctx.pathInt("id"), ctx.pathInt("orderId"),
+                        ctx.gson().fromJson(ctx.getBody(), STRING_MAP)));
+
+        // orders
+        router.add("POST", "/orders", ctx -> {
+            requireUser(ctx, "Authentication is required.");
+            return ctx.orders().handleCreateOrder(parseOrder(ctx.gson(), ctx.getBody()), ctx.getUserId());
+        });
+        router.add("GET", "/orders/history", ctx -> ctx.orders().handleGetOrderHistory(ctx.getUserId(), ctx.getQueryParams()));
+        router.add("GET", "/orders/{id:int}", ctx -> ctx.orders().handleGetOrderDetails(ctx.getUserId(), ctx.pathInt("id")));
+
+        // admin
+        router.add("GET", "/admin/users", ctx -> ctx.admin().handleListAllUsers(ctx.getUserId()));
+        router.add("GET", "/admin/orders", ctx -> ctx.admin().handleGetAllOrders(ctx.getUserId(), ctx.getQueryParams()));
+        router.add("GET", "/admin/transactions", ctx -> ctx.admin().handleGetAllTransactions(ctx.getUserId(), ctx.getQueryParams()));
+        router.add("GET", "/admin/pending-users", ctx -> ctx.admin().handleGetPendingUsers(ctx.getUserId()));
+        router.add("PUT", "/admin/pending-users", ctx ->
+                ctx.admin().handleUpdatePendingUsers(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), USER_UPDATES)));
+        router.add("GET", "/admin/pending-orders", ctx -> ctx.admin().handleGetPendingOrders(ctx.getUserId()));
+        router.add("PUT", "/admin/pending-orders", ctx ->
+                ctx.admin().handleUpdatePendingOrders(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), ORDER_UPDATES)));
+        router.add("GET", "/admin/pending-restaurants", ctx -> ctx.admin().handleGetPendingRestaurants(ctx.getUserId()));
+        router.add("PUT", "/admin/pending-restaurants", ctx ->
+                ctx.admin().handleUpdatePendingRestaurants(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), RESTAURANT_UPDATES)));
+
+        // customers
+        router.add("POST", "/vendors", ctx ->
+                ctx.customers().handleListVendors(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), OBJECT_MAP)));
+        router.add("GET", "/vendors/{id:int}", ConditionalGet.byPath(CATALOG_CACHE, "id",
+                ctx -> ctx.customers().handleGetVendorDetails(ctx.getUserId(), ctx.pathInt("id"))));
+        router.add("POST", "/items", ctx ->
+                ctx.customers().handleListItems(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), OBJECT_MAP)));
+        router.add("GET", "/items/{id:int}", ConditionalGet.byResult(CATALOG_CACHE,
+                result -> ((Food) result.get("food_item")).getRestaurantId(),
+                ctx -> ctx.customers().handleGetItemDetails(ctx.getUserId(), ctx.pathInt("id"))));
+        router.add("GET", "/favorites", ctx -> ctx.customers().handleGetFavoriteRestaurants(ctx.getUserId()));
+        router.add("PUT", "/favorites/{id:int}", ctx -> ctx.customers().handleAddFavoriteRestaurant(ctx.getUserId(), ctx.pathInt("id")));
+        router.add("DELETE", "/favorites/{id:int}", ctx -> ctx.customers().handleRemoveFavoriteRestaurant(ctx.getUserId(), ctx.pathInt("id")));
+        router.add("POST", "/ratings", ctx ->
+                ctx.customers().handleSubmitRating(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), Rating.class)));
+        router.add("GET", "/ratings/{id:int}", ctx -> ctx.customers().handleGetRatingByOrderId(ctx.getUserId(), ctx.pathInt("id")));
+
+        // couriers
+        router.add("GET", "/deliveries/available", ctx -> ctx.couriers().handleGetAvailableDeliveries(ctx.getUserId()));
+        router.add("GET", "/deliveries/history", ctx -> ctx.couriers().handleGetDeliveryHistory(ctx.getUserId(), ctx.getQueryParams()));
+        router.add("PATCH", "/deliveries/{id:int}", ctx ->
+                ctx.couriers().handleUpdateDeliveryStatus(ctx.getUserId(), ctx.pathInt("id"), ctx.gson().fromJson(ctx.getBody(), STRING_MAP)));
+
+        // images
+        router.add("GET", "/images/{id}", ctx -> {
+            String id = ctx.pathString("id");
+            Path file = ctx.images().locate(id);
+            if (file == null) {
+                serveOriginalForMissingThumbnail(ctx, id);
+                return Map.of();
+            }
+            String etag = "\"" + id + "\"";
+            ctx.responseHeader("Cache-Control", IMAGE_CACHE);
+            ctx.responseHeader("ETag", etag);
+            if (etag.equals(ctx.getRequest().getHeader("if-none-match"))) {
+                return Map.of("status", 304);
+            }
+            ctx.respondWithFile(file, ImageStore.typeOf(id).getContentType());
+            return Map.of();
+        });
+
+        // monitoring, only on the metrics port: the API port is public
+        router.add("GET", "/metrics", ctx -> {
+            if (!ctx.isMetricsPort()) {
+                throw new ResourceNotFoundException("Not Found");
+            }
+            ctx.responseHeader("Cache-Control", "no-store");
+            ctx.respondWithText(MetricsReport.render(ctx.app()), PrometheusWriter.CONTENT_TYPE);
+            return Map.of();
+        });
+
+        // wallet
+        router.add("POST", "/wallet/top-up", ctx ->
+                ctx.wallet().handleTopUp(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), DOUBLE_MAP)));
+        router.add("POST", "/payment/online", ctx ->
+                ctx.wallet().handlePayment(ctx.getUserId(), ctx.gson().fromJson(ctx.getBody(), OBJECT_MAP)));
+        router.add("GET", "/transactions", ctx -> ctx.wallet().handleGetTransactionHistory(ctx.getUserId()));
+
+        return router;
+    }
+
+    /**
+     * Serves the full image in place of a thumbnail that has not been made yet,
+     * and queues the thumbnail. The response must not be cached, or the URL
+     * would go on serving the full image once the thumbnail exists.
+     */
+    private static void serveOriginalForMissingThumbnail(RouteContext ctx, String id) throws ResourceNotFoundException {
+        String originalId = ImageStore.originalOf(id);
+        Path original = ctx.images().locate(originalId);
+        if (original == null) {
+            throw new ResourceNotFoundException("Image not found.");
+        }
+        ctx.thumbnails().generateMissing(originalId);
+        ctx.responseHeader("Cache-Control", "no-cache");
+        ctx.respondWithFile(original, ImageStore.typeOf(originalId).getContentType());
+    }
+
+    private static void requireUser(RouteContext ctx, String message) {
+        if (ctx.getUserId() == null) {
+            throw new UnauthorizedException(message);
+        }
+    }
+
+    /**
+     * Reads the body of {@code POST /orders}: the vendor, the address, an
+     * optional coupon and the items with their quantities.
+     */
+    @SuppressWarnings("unchecked")
+    static Order parseOrder(Gson gson, String body) {
+        Map<String, Object> orderRequest = gson.fromJson(body, OBJECT_MAP);
+
+        Order order = new Order();
+        order.setDeliveryAddress((String) orderRequest.get("delivery_address"));
+
+        // Treat all numbers as the generic Number class
+        order.setRestaurantId(((Number) orderRequest.get("vendor_id")).intValue());
+        if (orderRequest.get("coupon_id") != null) {
+            order.setCouponId(((Number) orderRequest.get("coupon_id")).intValue());
+        }
+
+        List<Map<String, Object>> itemsList = (List<Map<String, Object>>) orderRequest.get("items");
+        Map<Integer, Integer> itemsMap = new HashMap<>();
+        for (Map<String, Object> item : itemsList) {
+            itemsMap.put(((Number) item.get("item_id")).intValue(), ((Number) item.get("quantity")).intValue());
+        }
+
+        order.setItems(itemsMap);
+        return order;
+    }
+}
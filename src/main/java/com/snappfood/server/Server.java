@@ -1,86 +1,199 @@
 package com.snappfood.server;
 
+import com.snappfood.database.DatabaseManager;
+
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.SocketAddress;
-import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
-import java.util.Iterator;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class Server {
 
-    private static final int PORT = 8080;
-    private static final int THREAD_POOL_SIZE = 10;
+    private static final long LOG_CLOSE_TIMEOUT_MS = 2000;
+    private static final long DRAIN_POLL_MS = 50;
+
+    private final ServerConfig config;
+    private Reactor[] reactors;
+    private Thread[] reactorThreads;
+    private ApplicationContext context;
+    private ServerSocketChannel serverSocketChannel;
+    private ServerSocketChannel metricsSocketChannel;
+    private Thread acceptorThread;
+
+    public Server(ServerConfig config) {
+        this.config = config;
+    }
 
     public static void main(String[] args) {
+        ServerConfig config;
         try {
-            //a non-blocking server socket channel
-            ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
-            serverSocketChannel.configureBlocking(false);
-            serverSocketChannel.socket().bind(new InetSocketAddress(PORT));
-
-            //selector to monitor the channel
-            Selector selector = Selector.open();
-            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
-
-            //Creates a fixed-size thread pool for worker threads
-            ExecutorService executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-
-            System.out.println("Server started on port: " + PORT);
-
-            while (true) {
-                selector.select(); // Waita for network activity
-
-                Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                Iterator<SelectionKey> iterator = selectedKeys.iterator();
-
-                while (iterator.hasNext()) {
-                    SelectionKey key = iterator.next();
-                    iterator.remove();
-
-                    if (key.isAcceptable()) {
-                        ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
-                        SocketChannel clientChannel = serverChannel.accept();
-                        clientChannel.configureBlocking(false);
-                        clientChannel.register(selector, SelectionKey.OP_READ);
-                        System.out.println("New client connected: " + clientChannel.getRemoteAddress());
-                    } else if (key.isReadable()) {
-                        //Reads data from a client
-                        SocketChannel clientChannel = (SocketChannel) key.channel();
-
-                        // Geta the address before reading, in case the read causes a disconnect.
-                        SocketAddress remoteAddress = clientChannel.getRemoteAddress();
-
-                        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024 * 1024);
-                        int bytesRead;
-
-                        try {
-                            bytesRead = clientChannel.read(buffer);
-                        } catch (IOException e) {
-                            // This can happen if the client disconnects abruptly.
-                            bytesRead = -1;
-                        }
-
-
-                        if (bytesRead == -1) {
-                            System.out.println("Client disconnected: " + remoteAddress);
-                            clientChannel.close(); // Now it's safe to close.
-                            continue;
-                        }
-
-                        //Hands off the request to a worker thread
-                        executorService.submit(new RequestHandler(new String(buffer.array(), 0, bytesRead), clientChannel));
-                    }
-                }
-            }
+            config = ServerConfig.fromArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(ServerConfig.usage());
+            return;
+        }
+        try {
+            new Server(config).run();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Starts one thread per reactor and an acceptor thread that deals accepted
+     * connections out to them, and registers a shutdown hook that stops them
+     * gracefully. Blocks until the acceptor stops, which happens on shutdown.
+     */
+    public void run() throws IOException {
+        context = new ApplicationContext(config);
+
+        reactors = new Reactor[config.getReactorThreads()];
+        reactorThreads = new Thread[reactors.length];
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor(i, context);
+            reactorThreads[i] = new Thread(reactors[i], "reactor-" + i);
+            reactorThreads[i].start();
+        }
+
+        //a blocking server socket channel, served by the acceptor thread only
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.socket().bind(new InetSocketAddress(config.getPort()));
+
+        acceptorThread = new Thread(new Acceptor(serverSocketChannel, reactors), "acceptor");
+        acceptorThread.start();
+
+        // metrics get a listener of their own, on a private address, served by the same reactors
+        metricsSocketChannel = ServerSocketChannel.open();
+        metricsSocketChannel.socket().bind(new InetSocketAddress(config.getMetricsHost(), config.getMetricsPort()));
+        new Thread(new Acceptor(metricsSocketChannel, reactors), "metrics-acceptor").start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "shutdown"));
+        if (config.isMigrateImages()) {
+            new Thread(this::migrateImages, "image-migration").start();
+        }
+
+        System.out.println("Server started on port: " + config.getPort() + ", metrics on "
+                + config.getMetricsHost() + ":" + config.getMetricsPort() + " (" + config + ")");
+
+        try {
+            acceptorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the server without cutting off requests that are already being handled:
+     * <ol>
+     *   <li>stops accepting connections and closes idle ones;</li>
+     *   <li>lets admitted requests finish and their responses drain, sent with Connection: close;</li>
+     *   <li>at the shutdown timeout, closes whatever is left and drops requests still queued;</li>
+     *   <li>flushes the access log and closes the database pool.</li>
+     * </ol>
+     * Prints a summary of anything that had to be abandoned.
+     */
+    public void shutdown() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(config.getShutdownTimeoutSeconds());
+        System.out.println("Shutting down; waiting up to " + config.getShutdownTimeoutSeconds() + "s for in-flight requests.");
+
+        context.startDraining();
+        try {
+            serverSocketChannel.close();
+            metricsSocketChannel.close();
+        } catch (IOException e) {
+            System.err.println("Could not close the server socket: " + e.getMessage());
+        }
+        for (Reactor reactor : reactors) {
+            reactor.drain();
+        }
+
+        ConcurrencyLimiter limiter = context.getAdmissionLimiter();
+        int inFlightAtStart = limiter.getInFlight();
+        while (limiter.getInFlight() > 0 && System.nanoTime() < deadline) {
+            sleep(DRAIN_POLL_MS);
+        }
+        int unfinished = limiter.getInFlight();
+
+        for (int i = 0; i < reactors.length; i++) {
+            join(reactorThreads[i], deadline);
+            if (reactorThreads[i].isAlive()) {
+                reactors[i].stop();
+                join(reactorThreads[i], System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        int forceClosed = 0;
+        for (Reactor reactor : reactors) {
+            forceClosed += reactor.getForceClosed();
+        }
+
+        ExecutorService executor = context.getRequestExecutor();
+        int neverStarted = executor.shutdownNow().size();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        String summary = "Shutdown finished in " + elapsedMs + " ms: "
+                + (inFlightAtStart - unfinished) + " of " + inFlightAtStart + " in-flight requests completed, "
+                + (unfinished - neverStarted) + " abandoned while running, "
+                + neverStarted + " abandoned before starting, "
+                + forceClosed + " connections force-closed, "
+                + context.getLogger().getDropped() + " log lines dropped.";
+        context.getLogger().info(summary);
+        context.getLogger().close(LOG_CLOSE_TIMEOUT_MS);
+        try {
+            DatabaseManager.close();
+        } catch (RuntimeException | LinkageError e) {
+            System.err.println("Could not close the database pool: " + e);
+        }
+        System.out.println(summary);
+    }
+
+    private void migrateImages() {
+        try {
+            int moved = context.migrateLegacyImages();
+            System.out.println("Moved " + moved + " images from the database into the image store.");
+        } catch (Exception | LinkageError e) {
+            System.err.println("Image migration stopped: " + e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void join(Thread thread, long deadlineNanos) {
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remainingMs <= 0) {
+            return;
+        }
+        try {
+            thread.join(remainingMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The application's shared components, or null before {@link #run()}.
+     */
+    public ApplicationContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return The reactors serving client connections, or null before {@link #run()}.
+     */
+    public Reactor[] getReactors() {
+        return reactors;
+    }
 }
@@ -0,0 +1,283 @@
+package com.snappfood.server;
+
+/**
+ * Startup options for the {@link Server}, parsed from command-line flags.
+ * <p>
+ * Supported flags:
+ * <ul>
+ *   <li>{@code --port=N} - the port to listen on (default 8080)</li>
+ *   <li>{@code --metrics-port=N} - the port {@code GET /metrics} is served on, and the only
+ *       one; it is not served on the API port (default 9090)</li>
+ *   <li>{@code --metrics-host=address} - the address the metrics port is bound to
+ *       (default 127.0.0.1, so only the local host can scrape it)</li>
+ *   <li>{@code --mode=pooled|virtual} - run request handlers on a fixed thread pool
+ *       or on one virtual thread per request (default pooled)</li>
+ *   <li>{@code --workers=N} - the size of the fixed pool in pooled mode (default 10)</li>
+ *   <li>{@code --reactors=N} - the number of selector threads (default one per core)</li>
+ *   <li>{@code --log-dir=path} - where access logs are written (default logs)</li>
+ *   <li>{@code --image-dir=path} - where uploaded images are stored (default images)</li>
+ *   <li>{@code --image-max-bytes=N} - the largest image accepted for upload (default 5 MB;
+ *       request bodies are capped at 8 MB regardless)</li>
+ *   <li>{@code --image-max-width=N}, {@code --image-max-height=N} - the largest image
+ *       dimensions accepted, in pixels (default 4096)</li>
+ *   <li>{@code --image-decode-threads=N} - how many images may be decoded at once for thumbnails (default 2)</li>
+ *   <li>{@code --migrate-images=true|false} - move images still stored in the database
+ *       into the image store after startup (default false)</li>
+ *   <li>{@code --slow-request-ms=N} - requests taking at least this long are logged with their
+ *       phase timings (default 1000)</li>
+ *   <li>{@code --shutdown-timeout=N} - seconds to let in-flight requests finish on shutdown (default 20)</li>
+ * </ul>
+ */
+public class ServerConfig {
+
+    /**
+     * How request handlers are scheduled.
+     */
+    public enum ExecutionMode {
+        /** A fixed pool of platform threads. */
+        POOLED,
+        /** One virtual thread per request. */
+        VIRTUAL
+    }
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_METRICS_PORT = 9090;
+    private static final int DEFAULT_WORKERS = 10;
+    private static final int DEFAULT_SHUTDOWN_TIMEOUT_SECONDS = 20;
+    private static final int DEFAULT_IMAGE_MAX_BYTES = 5 * 1024 * 1024;
+    private static final int DEFAULT_IMAGE_MAX_DIMENSION = 4096;
+    private static final int DEFAULT_IMAGE_DECODE_THREADS = 2;
+    private static final int DEFAULT_SLOW_REQUEST_MS = 1000;
+
+    // every flag fromArgs accepts, with an example value, in the order the usage line shows them
+    private static final String[][] OPTIONS = {
+            {"port", "8080"},
+            {"metrics-port", "9090"},
+            {"metrics-host", "127.0.0.1"},
+            {"mode", "pooled|virtual"},
+            {"workers", "10"},
+            {"reactors", "N"},
+            {"log-dir", "logs"},
+            {"image-dir", "images"},
+            {"image-max-bytes", "N"},
+            {"image-max-width", "4096"},
+            {"image-max-height", "4096"},
+            {"image-decode-threads", "2"},
+            {"migrate-images", "true|false"},
+            {"slow-request-ms", "1000"},
+            {"shutdown-timeout", "20"},
+    };
+
+    private int port = DEFAULT_PORT;
+    private int metricsPort = DEFAULT_METRICS_PORT;
+    private String metricsHost = "127.0.0.1";
+    private ExecutionMode executionMode = ExecutionMode.POOLED;
+    private int workerThreads = DEFAULT_WORKERS;
+    private int reactorThreads = Runtime.getRuntime().availableProcessors();
+    private String logDirectory = "logs";
+    private String imageDirectory = "images";
+    private int imageMaxBytes = DEFAULT_IMAGE_MAX_BYTES;
+    private int imageMaxWidth = DEFAULT_IMAGE_MAX_DIMENSION;
+    private int imageMaxHeight = DEFAULT_IMAGE_MAX_DIMENSION;
+    private int imageDecodeThreads = DEFAULT_IMAGE_DECODE_THREADS;
+    private boolean migrateImages;
+    private int slowRequestMs = DEFAULT_SLOW_REQUEST_MS;
+    private int shutdownTimeoutSeconds = DEFAULT_SHUTDOWN_TIMEOUT_SECONDS;
+
+    /**
+     * Parses the given command-line flags. Unknown flags are rejected so that a
+     * typo does not silently run a benchmark in the wrong mode.
+     *
+     * @param args The arguments passed to main.
+     * @return The parsed configuration.
+     * @throws IllegalArgumentException if a flag is unknown or has an invalid value.
+     */
+    public static ServerConfig fromArgs(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if (!isOption(name)) {
+                throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+            switch (name) {
+                case "port":
+                    config.port = parsePositive(name, value);
+                    break;
+                case "metrics-port":
+                    config.metricsPort = parsePositive(name, value);
+                    break;
+                case "metrics-host":
+                    config.metricsHost = value;
+                    break;
+                case "mode":
+                    config.executionMode = parseMode(value);
+                    break;
+                case "workers":
+                    config.workerThreads = parsePositive(name, value);
+                    break;
+                case "reactors":
+                    config.reactorThreads = parsePositive(name, value);
+                    break;
+                case "log-dir":
+                    config.logDirectory = value;
+                    break;
+                case "image-dir":
+                    config.imageDirectory = value;
+                    break;
+                case "image-max-bytes":
+                    config.imageMaxBytes = parsePositive(name, value);
+                    break;
+                case "image-max-width":
+                    config.imageMaxWidth = parsePositive(name, value);
+                    break;
+                case "image-max-height":
+                    config.imageMaxHeight = parsePositive(name, value);
+                    break;
+                case "image-decode-threads":
+                    config.imageDecodeThreads = parsePositive(name, value);
+                    break;
+                case "migrate-images":
+                    config.migrateImages = parseBoolean(name, value);
+                    break;
+                case "slow-request-ms":
+                    config.slowRequestMs = parsePositive(name, value);
+                    break;
+                case "shutdown-timeout":
+                    config.shutdownTimeoutSeconds = parsePositive(name, value);
+                    break;
+                default:
+                    throw new IllegalStateException("--" + name + " is listed in OPTIONS but never parsed");
+            }
+        }
+        if (config.metricsPort == config.port) {
+            throw new IllegalArgumentException("--metrics-port must differ from --port, or the metrics would be public.");
+        }
+        return config;
+    }
+
+    /**
+     * @return A usage line listing every supported flag.
+     */
+    public static String usage() {
+        StringBuilder usage = new StringBuilder("Usage: Server");
+        for (String[] option : OPTIONS) {
+            usage.append(" [--").append(option[0]).append('=').append(option[1]).append(']');
+        }
+        return usage.toString();
+    }
+
+    private static boolean isOption(String name) {
+        for (String[] option : OPTIONS) {
+            if (option[0].equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public String getMetricsHost() {
+        return metricsHost;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getReactorThreads() {
+        return reactorThreads;
+    }
+
+    public String getLogDirectory() {
+        return logDirectory;
+    }
+
+    public String getImageDirectory() {
+        return imageDirectory;
+    }
+
+    public int getImageMaxBytes() {
+        return imageMaxBytes;
+    }
+
+    public int getImageMaxWidth() {
+        return imageMaxWidth;
+    }
+
+    public int getImageMaxHeight() {
+        return imageMaxHeight;
+    }
+
+    public int getImageDecodeThreads() {
+        return imageDecodeThreads;
+    }
+
+    public boolean isMigrateImages() {
+        return migrateImages;
+    }
+
+    public int getSlowRequestMs() {
+        return slowRequestMs;
+    }
+
+    public int getShutdownTimeoutSeconds() {
+        return shutdownTimeoutSeconds;
+    }
+
+    private static ExecutionMode parseMode(String value) {
+        switch (value.toLowerCase()) {
+            case "pooled":
+                return ExecutionMode.POOLED;
+            case "virtual":
+                return ExecutionMode.VIRTUAL;
+            default:
+                throw new IllegalArgumentException("--mode must be 'pooled' or 'virtual' but got: " + value);
+        }
+    }
+
+    private static boolean parseBoolean(String name, String value) {
+        switch (value.toLowerCase()) {
+            case "true":
+                return true;
+            case "false":
+                return false;
+            default:
+                throw new IllegalArgumentException("--" + name + " must be 'true' or 'false' but got: " + value);
+        }
+    }
+
+    private static int parsePositive(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed <= 0) {
+                throw new IllegalArgumentException("--" + name + " must be positive but got: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number but got: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConfig[port=" + port + ", mode=" + executionMode.name().toLowerCase()
+                + (executionMode == ExecutionMode.POOLED ? ", workers=" + workerThreads : "")
+                + ", reactors=" + reactorThreads + "]";
+    }
+}
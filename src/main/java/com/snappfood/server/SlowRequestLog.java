@@ -0,0 +1,75 @@
+package com.snappfood.server;
+
+import com.snappfood.logging.AsyncLogger;
+import com.snappfood.logging.LogEvent;
+import com.snappfood.metrics.RequestTrace;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes one structured line for each request that took longer than a
+ * threshold, with the time its trace spent in each phase, so a slow request
+ * can be told apart as slow to queue, to query or to write. Lines go through
+ * the same {@link AsyncLogger} as the access log and share its trace ids.
+ */
+public class SlowRequestLog {
+
+    private final AsyncLogger logger;
+    private final long thresholdNanos;
+
+    /**
+     * @param logger      The logger lines are written to.
+     * @param thresholdMs How long a request may take before it is logged.
+     */
+    public SlowRequestLog(AsyncLogger logger, long thresholdMs) {
+        this.logger = logger;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    }
+
+    /**
+     * Logs a finished request if it was slow.
+     * @param request       The request.
+     * @param template      The matched route template, or null if no route matched.
+     * @param status        The response status.
+     * @param durationNanos How long the request took from admission.
+     * @param trace         The request's trace.
+     */
+    public void record(HttpRequest request, String template, int status, long durationNanos, RequestTrace trace) {
+        if (durationNanos < thresholdNanos) {
+            return;
+        }
+        logger.log(new Entry(System.currentTimeMillis(), request, template, status, durationNanos / 1000, trace));
+    }
+
+    private static final class Entry implements LogEvent {
+        private final long timestamp;
+        private final HttpRequest request;
+        private final String template;
+        private final int status;
+        private final long durationMicros;
+        private final RequestTrace trace;
+
+        Entry(long timestamp, HttpRequest request, String template, int status, long durationMicros, RequestTrace trace) {
+            this.timestamp = timestamp;
+            this.request = request;
+            this.template = template;
+            this.status = status;
+            this.durationMicros = durationMicros;
+            this.trace = trace;
+        }
+
+        @Override
+        public void format(StringBuilder out) {
+            out.append(Instant.ofEpochMilli(timestamp))
+                    .append(" slow_request id=").append(trace.getId())
+                    .append(" method=").append(request.getMethod())
+                    .append(" path=");
+            AccessLog.appendQuoted(out, request.getPath());
+            out.append(" route=").append(template != null ? template : "-")
+                    .append(" status=").append(status)
+                    .append(" duration_us=").append(durationMicros);
+            trace.describe(out);
+        }
+    }
+}
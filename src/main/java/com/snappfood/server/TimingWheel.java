@@ -0,0 +1,153 @@
+package com.snappfood.server;
+
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel: a ring of slots, each holding a doubly linked list of
+ * timeouts that fall due on a tick mapping to that slot. Scheduling and
+ * cancelling a timeout are O(1), and each tick only looks at one slot, so the
+ * cost of timing out connections does not grow with the number that are open.
+ * Timeouts further away than one turn of the wheel wait in their slot until
+ * the tick they are due on comes round.
+ * <p>
+ * The wheel is not thread-safe; a reactor's wheel is only touched by its own
+ * selector thread.
+ *
+ * @param <T> The type of object a timeout belongs to.
+ */
+class TimingWheel<T> {
+
+    /**
+     * One schedulable timeout. An owner keeps a single instance and reschedules
+     * it, so moving a deadline allocates nothing.
+     */
+    static final class Timeout<T> {
+        private final T owner;
+        private long deadlineTick;
+        private int slot = -1;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        Timeout(T owner) {
+            this.owner = owner;
+        }
+
+        boolean isScheduled() {
+            return slot >= 0;
+        }
+    }
+
+    private final long tickMs;
+    private final int mask;
+    private final Timeout<T>[] heads;
+    private long currentTick;
+    private int scheduled;
+
+    /**
+     * @param tickMs   The resolution of the wheel in milliseconds.
+     * @param slots    The number of slots; rounded up to a power of two.
+     * @param nowMs    The current time, which becomes tick zero.
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, int slots, long nowMs) {
+        if (tickMs <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("Tick and slot count must be positive.");
+        }
+        int size = Integer.highestOneBit(slots);
+        if (size < slots) {
+            size <<= 1;
+        }
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.heads = (Timeout<T>[]) new Timeout[size];
+        this.currentTick = nowMs / tickMs;
+    }
+
+    /**
+     * Schedules a timeout, moving it if it was already scheduled.
+     * It fires on the first tick at least delayMs from now.
+     */
+    void schedule(Timeout<T> timeout, long delayMs) {
+        cancel(timeout);
+        long ticks = Math.max(1, (delayMs + tickMs - 1) / tickMs);
+        timeout.deadlineTick = currentTick + ticks;
+        link(timeout, (int) (timeout.deadlineTick & mask));
+        scheduled++;
+    }
+
+    /**
+     * Removes a timeout from the wheel; does nothing if it is not scheduled.
+     */
+    void cancel(Timeout<T> timeout) {
+        if (!timeout.isScheduled()) {
+            return;
+        }
+        unlink(timeout);
+        scheduled--;
+    }
+
+    /**
+     * Moves the wheel forward to the given time and hands every timeout that
+     * fell due to the callback. Each is unscheduled before the callback runs,
+     * so the callback may schedule it again.
+     *
+     * @param nowMs   The current time.
+     * @param expired Called once for the owner of each expired timeout.
+     * @return How many timeouts expired.
+     */
+    int advance(long nowMs, Consumer<T> expired) {
+        long targetTick = nowMs / tickMs;
+        if (targetTick <= currentTick) {
+            return 0;
+        }
+        // After a long stall there is no point walking the same slots more than once.
+        long firstTick = Math.max(currentTick + 1, targetTick - mask);
+        currentTick = targetTick;
+        int count = 0;
+        for (long tick = firstTick; tick <= targetTick; tick++) {
+            Timeout<T> timeout = heads[(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                if (timeout.deadlineTick <= targetTick) {
+                    cancel(timeout);
+                    count++;
+                    expired.accept(timeout.owner);
+                }
+                timeout = next;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return How many timeouts are currently scheduled.
+     */
+    int size() {
+        return scheduled;
+    }
+
+    private void link(Timeout<T> timeout, int slot) {
+        Timeout<T> head = heads[slot];
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        heads[slot] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            heads[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+}
@@ -0,0 +1,112 @@
+package com.snappfood.server.routing;
+
+import java.util.StringJoiner;
+
+/**
+ * One segment position in the route trie. Static children are kept in an
+ * open-addressing table keyed by segment text and probed with a range of the
+ * request path, so looking up a child costs one hash of the segment no matter
+ * how many siblings it has. A node has at most one variable child.
+ */
+final class Node<H> {
+
+    private String[] keys = new String[4];
+    private Node<H>[] children = newArray(4);
+    private int size;
+
+    Node<H> paramChild;
+    String paramName;
+    ParamType paramType;
+    int paramIndex;
+
+    final Object[] handlers = new Object[Router.METHODS.length];
+    String template;
+    String[] paramNames;
+    String allowedMethods;
+
+    /**
+     * Finds the static child whose key equals path[start, end).
+     */
+    Node<H> staticChild(String path, int start, int end) {
+        int length = end - start;
+        int mask = keys.length - 1;
+        int slot = hash(path, start, end) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+                return children[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the static child for the given segment, creating it if needed.
+     */
+    Node<H> staticChildOrCreate(String segment) {
+        Node<H> existing = staticChild(segment, 0, segment.length());
+        if (existing != null) {
+            return existing;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        Node<H> child = new Node<>();
+        insert(segment, child);
+        size++;
+        return child;
+    }
+
+    boolean hasHandlers() {
+        return template != null;
+    }
+
+    /**
+     * Rebuilds the Allow header value after a handler is added.
+     */
+    void updateAllowedMethods() {
+        StringJoiner allow = new StringJoiner(", ");
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] != null) {
+                allow.add(Router.METHODS[i]);
+            }
+        }
+        allowedMethods = allow.toString();
+    }
+
+    private void insert(String key, Node<H> child) {
+        int mask = keys.length - 1;
+        int slot = hash(key, 0, key.length()) & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        children[slot] = child;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        Node<H>[] oldChildren = children;
+        keys = new String[oldKeys.length * 2];
+        children = newArray(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(oldKeys[i], oldChildren[i]);
+            }
+        }
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <H> Node<H>[] newArray(int length) {
+        return (Node<H>[]) new Node[length];
+    }
+}
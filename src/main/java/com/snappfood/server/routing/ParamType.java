@@ -0,0 +1,48 @@
+package com.snappfood.server.routing;
+
+/**
+ * The type of a path variable in a route template, written as {@code {name:type}}.
+ * A variable without a type is a {@link #STRING}.
+ */
+public enum ParamType {
+    /** Any non-empty segment. */
+    STRING,
+    /** A non-negative decimal number that fits in an int. */
+    INT;
+
+    static ParamType fromName(String name) {
+        switch (name) {
+            case "string":
+                return STRING;
+            case "int":
+                return INT;
+            default:
+                throw new IllegalArgumentException("Unknown path variable type: " + name);
+        }
+    }
+
+    /**
+     * Checks a segment of the path against this type without allocating.
+     * @return true if the characters in [start, end) are a valid value.
+     */
+    boolean accepts(String path, int start, int end) {
+        if (end <= start) {
+            return false;
+        }
+        if (this == STRING) {
+            return true;
+        }
+        if (end - start > 10) {
+            return false;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value <= Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,117 @@
+package com.snappfood.server.routing;
+
+/**
+ * The result of a {@link Router} lookup. Path variables are recorded as
+ * offsets into the request path and only turned into values when asked for,
+ * so a lookup allocates nothing. A match can be reused for another lookup.
+ */
+public final class RouteMatch<H> {
+
+    /**
+     * How a lookup ended.
+     */
+    public enum Status {
+        /** A route matched the path and method. */
+        FOUND,
+        /** No route matched the path. */
+        NOT_FOUND,
+        /** A route matched the path but not the method. */
+        METHOD_NOT_ALLOWED,
+        /** The path only failed to match because a typed variable had the wrong format. */
+        BAD_PARAMETER
+    }
+
+    private Status status = Status.NOT_FOUND;
+    private String path;
+    private H handler;
+    private String template;
+    private String[] paramNames;
+    private String allowedMethods;
+    final int[] starts = new int[Router.MAX_PARAMS];
+    final int[] ends = new int[Router.MAX_PARAMS];
+    boolean badParameter;
+
+    void reset(String path) {
+        this.status = Status.NOT_FOUND;
+        this.path = path;
+        this.handler = null;
+        this.template = null;
+        this.paramNames = null;
+        this.allowedMethods = null;
+        this.badParameter = false;
+    }
+
+    @SuppressWarnings("unchecked")
+    Status complete(Node<H> node, int methodIndex) {
+        if (node == null) {
+            status = badParameter ? Status.BAD_PARAMETER : Status.NOT_FOUND;
+            return status;
+        }
+        template = node.template;
+        paramNames = node.paramNames;
+        allowedMethods = node.allowedMethods;
+        handler = methodIndex >= 0 ? (H) node.handlers[methodIndex] : null;
+        status = handler != null ? Status.FOUND : Status.METHOD_NOT_ALLOWED;
+        return status;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The handler of the matched route, or null unless the status is FOUND.
+     */
+    public H getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return The template of the matched route, such as "/restaurants/{id:int}/menu".
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return The methods the matched path accepts, formatted for an Allow header.
+     */
+    public String getAllowedMethods() {
+        return allowedMethods;
+    }
+
+    /**
+     * @param name The name of an int path variable.
+     * @return The value of the variable.
+     * @throws IllegalArgumentException if the route has no such variable.
+     */
+    public int getInt(String name) {
+        int index = indexOf(name);
+        int value = 0;
+        for (int i = starts[index]; i < ends[index]; i++) {
+            value = value * 10 + (path.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @param name The name of a path variable.
+     * @return The raw text of the variable's segment.
+     * @throws IllegalArgumentException if the route has no such variable.
+     */
+    public String getString(String name) {
+        int index = indexOf(name);
+        return path.substring(starts[index], ends[index]);
+    }
+
+    private int indexOf(String name) {
+        if (paramNames != null) {
+            for (int i = 0; i < paramNames.length; i++) {
+                if (paramNames[i].equals(name)) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Route " + template + " has no path variable '" + name + "'");
+    }
+}
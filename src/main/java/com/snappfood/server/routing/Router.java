@@ -0,0 +1,165 @@
+package com.snappfood.server.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps a method and path to a handler using a trie compiled from route templates.
+ * <p>
+ * Templates are declared once at startup, for example
+ * {@code /restaurants/{id:int}/menu/{title}}. Each segment is either literal
+ * text or a variable written as {@code {name}} or {@code {name:type}}.
+ * Literal segments win over variables at the same position, so
+ * {@code /orders/history} is matched before {@code /orders/{id:int}}.
+ * <p>
+ * A lookup walks one trie node per path segment, so its cost depends on the
+ * length of the path, not on the number of routes. It does not allocate: the
+ * result goes into a {@link RouteMatch} the caller owns and can keep reusing.
+ * Routes must all be added before the router is shared between threads.
+ *
+ * @param <H> The handler type.
+ */
+public final class Router<H> {
+
+    static final String[] METHODS = {"GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS"};
+    static final int MAX_PARAMS = 8;
+
+    private final Node<H> root = new Node<>();
+    private int routeCount;
+
+    /**
+     * Adds a route.
+     * @param method   The HTTP method.
+     * @param template The path template.
+     * @param handler  The handler to return for matching requests.
+     * @return this router, for chaining.
+     * @throws IllegalArgumentException if the template is malformed.
+     * @throws IllegalStateException if the route conflicts with one already added.
+     */
+    public Router<H> add(String method, String template, H handler) {
+        int methodIndex = methodIndex(method);
+        if (methodIndex < 0) {
+            throw new IllegalArgumentException("Unsupported method: " + method);
+        }
+        if (!template.startsWith("/")) {
+            throw new IllegalArgumentException("Route template must start with '/': " + template);
+        }
+
+        Node<H> node = root;
+        List<String> paramNames = new ArrayList<>();
+        for (String segment : template.substring(1).split("/", -1)) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("Empty segment in route template: " + template);
+            }
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                node = paramChild(node, segment.substring(1, segment.length() - 1), paramNames.size(), template);
+                paramNames.add(node.paramName);
+                if (paramNames.size() > MAX_PARAMS) {
+                    throw new IllegalArgumentException("Too many path variables in: " + template);
+                }
+            } else {
+                node = node.staticChildOrCreate(segment);
+            }
+        }
+
+        if (node.handlers[methodIndex] != null) {
+            throw new IllegalStateException("Duplicate route: " + method + " " + template);
+        }
+        node.handlers[methodIndex] = handler;
+        if (node.template == null) {
+            node.template = template;
+            node.paramNames = paramNames.toArray(new String[0]);
+        }
+        node.updateAllowedMethods();
+        routeCount++;
+        return this;
+    }
+
+    /**
+     * Looks up the route for a request.
+     * @param method The request method.
+     * @param path   The request path, without the query string.
+     * @param match  Receives the result; any previous result is discarded.
+     * @return The status of the lookup, also available from the match.
+     */
+    public RouteMatch.Status match(String method, String path, RouteMatch<H> match) {
+        match.reset(path);
+        Node<H> node = null;
+        if (!path.isEmpty() && path.charAt(0) == '/') {
+            node = find(root, path, 1, match);
+        }
+        return match.complete(node, methodIndex(method));
+    }
+
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    /**
+     * Matches the segment starting at {@code start} against the children of a node,
+     * trying the literal child before the variable child.
+     */
+    private Node<H> find(Node<H> node, String path, int start, RouteMatch<H> match) {
+        int slash = path.indexOf('/', start);
+        int end = slash < 0 ? path.length() : slash;
+
+        Node<H> child = node.staticChild(path, start, end);
+        if (child != null) {
+            Node<H> found = slash < 0 ? terminal(child) : find(child, path, slash + 1, match);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        child = node.paramChild;
+        if (child != null) {
+            if (!child.paramType.accepts(path, start, end)) {
+                match.badParameter |= end > start;
+                return null;
+            }
+            match.starts[child.paramIndex] = start;
+            match.ends[child.paramIndex] = end;
+            return slash < 0 ? terminal(child) : find(child, path, slash + 1, match);
+        }
+        return null;
+    }
+
+    private Node<H> terminal(Node<H> node) {
+        return node.hasHandlers() ? node : null;
+    }
+
+    private Node<H> paramChild(Node<H> node, String spec, int index, String template) {
+        int colon = spec.indexOf(':');
+        String name = colon < 0 ? spec : spec.substring(0, colon);
+        ParamType type = colon < 0 ? ParamType.STRING : ParamType.fromName(spec.substring(colon + 1));
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Unnamed path variable in: " + template);
+        }
+
+        Node<H> child = node.paramChild;
+        if (child == null) {
+            child = new Node<>();
+            child.paramName = name;
+            child.paramType = type;
+            child.paramIndex = index;
+            node.paramChild = child;
+        } else if (!child.paramName.equals(name) || child.paramType != type) {
+            throw new IllegalStateException("Path variable {" + spec + "} in " + template
+                    + " conflicts with {" + child.paramName + "} declared by another route");
+        }
+        return child;
+    }
+
+    static int methodIndex(String method) {
+        switch (method) {
+            case "GET": return 0;
+            case "POST": return 1;
+            case "PUT": return 2;
+            case "PATCH": return 3;
+            case "DELETE": return 4;
+            case "HEAD": return 5;
+            case "OPTIONS": return 6;
+            default: return -1;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.snappfood.storage;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs work that decodes images into pixels, such as making thumbnails, on a
+ * small pool of its own. A full decode costs tens of megabytes and a lot of
+ * CPU for a large photo, so the number running at once is capped by the pool
+ * size, and the number waiting by a bounded queue; beyond that, new work is
+ * refused rather than queued without limit.
+ */
+public class ImageDecoder {
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads       How many images may be decoded at once.
+     * @param queueCapacity How many decodes may wait for a thread.
+     */
+    public ImageDecoder(int threads, int queueCapacity) {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "image-decoder-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues work on images to run on the pool.
+     * @param task The work.
+     * @throws RejectedExecutionException if the queue is full.
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * @return How many decodes are waiting for a thread.
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return How many decodes are running.
+     */
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+}
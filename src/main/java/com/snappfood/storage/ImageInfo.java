@@ -0,0 +1,66 @@
+package com.snappfood.storage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * What an image's header says about it: its type and its dimensions.
+ */
+public final class ImageInfo {
+
+    private final ImageType type;
+    private final int width;
+    private final int height;
+
+    public ImageInfo(ImageType type, int width, int height) {
+        this.type = type;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Reads an image's type from its leading bytes and its dimensions from its
+     * header through an {@link ImageReader}, without decoding any pixels.
+     * @param data The image bytes.
+     * @return The image's type and size, or null if the data is not an image of a supported type.
+     */
+    public static ImageInfo read(byte[] data) {
+        ImageType type = ImageType.sniff(data);
+        if (type == null) {
+            return null;
+        }
+        // an in-memory stream; ImageIO would otherwise cache the bytes in a temp file
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new ImageInfo(type, reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public ImageType getType() {
+        return type;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
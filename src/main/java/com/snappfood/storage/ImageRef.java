@@ -0,0 +1,102 @@
+package com.snappfood.storage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * How a stored image is referred to. In the database, an image column that
+ * used to hold the image itself (as Base64 text or raw bytes) holds
+ * "image:&lt;id&gt;" instead; the colon cannot occur in Base64 and no image format
+ * starts with those bytes, so old rows and new ones can be told apart.
+ * In JSON, entities carry the URL the image is served from.
+ */
+public final class ImageRef {
+
+    private static final String COLUMN_PREFIX = "image:";
+    private static final byte[] COLUMN_PREFIX_BYTES = COLUMN_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final String URL_PREFIX = "/images/";
+
+    private ImageRef() {
+    }
+
+    /**
+     * @param id An image id.
+     * @return The value to store in an image column.
+     */
+    public static String toColumn(String id) {
+        return COLUMN_PREFIX + id;
+    }
+
+    /**
+     * @param value The value of a text image column.
+     * @return The id it refers to, or null if it holds an image itself or nothing.
+     */
+    public static String idFromColumn(String value) {
+        if (value == null || !value.startsWith(COLUMN_PREFIX)) {
+            return null;
+        }
+        String id = value.substring(COLUMN_PREFIX.length());
+        return ImageStore.isValidId(id) ? id : null;
+    }
+
+    /**
+     * @param value The value of a binary image column.
+     * @return The id it refers to, or null if it holds an image itself or nothing.
+     */
+    public static String idFromColumn(byte[] value) {
+        if (value == null || value.length <= COLUMN_PREFIX_BYTES.length) {
+            return null;
+        }
+        for (int i = 0; i < COLUMN_PREFIX_BYTES.length; i++) {
+            if (value[i] != COLUMN_PREFIX_BYTES[i]) {
+                return null;
+            }
+        }
+        return idFromColumn(new String(value, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param id An image id.
+     * @return The path the image is served from.
+     */
+    public static String url(String id) {
+        return URL_PREFIX + id;
+    }
+
+    /**
+     * @param url  An image URL, as returned by {@link #url}.
+     * @param size The thumbnail's size.
+     * @return The URL of the image's thumbnail of that size, or the URL itself
+     * if the image cannot have thumbnails.
+     */
+    public static String thumbnailUrl(String url, int size) {
+        String variantId = ImageStore.variantId(idFromUrl(url), size);
+        return variantId != null ? url(variantId) : url;
+    }
+
+    /**
+     * @param url A URL as returned by {@link #url}.
+     * @return The id in it, or null if it is not an image URL.
+     */
+    public static String idFromUrl(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            return null;
+        }
+        String id = url.substring(URL_PREFIX.length());
+        return ImageStore.isValidId(id) ? id : null;
+    }
+
+    /**
+     * Picks what to write to a text image column for an entity that may carry
+     * either a legacy Base64 image or a reference to a stored one.
+     * @param base64 The entity's Base64 image, if any.
+     * @param url    The entity's image URL, if any.
+     * @return The column value, or null if the entity has no image.
+     */
+    public static String column(String base64, String url) {
+        if (base64 != null) {
+            return base64;
+        }
+        String id = idFromUrl(url);
+        return id != null ? toColumn(id) : null;
+    }
+}
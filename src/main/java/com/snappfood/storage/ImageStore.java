@@ -0,0 +1,192 @@
+package com.snappfood.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A content-addressed store of uploaded images. An image's id is the SHA-256
+ * of its bytes plus the extension of its type, so the same image uploaded
+ * twice is stored once, and an id always names the same bytes, which lets
+ * clients cache images forever. Entities point at images through an
+ * {@link ImageRef} holding the id, so image bytes never pass through JSON or
+ * the database.
+ * <p>
+ * Files live in 256 subdirectories named after the first two hex digits of
+ * their hash. A file is written under a temporary name and moved into place
+ * once complete, so readers never see a partial image.
+ * <p>
+ * A resized copy of an image, such as a thumbnail, is stored beside it as a
+ * variant whose id is the original's hash, a dash and the size, so it can be
+ * found from the original's id without any index.
+ */
+public class ImageStore {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}\\.[a-z]{3}");
+    private static final Pattern VARIANT_ID_PATTERN = Pattern.compile("[0-9a-f]{64}-[0-9]{1,4}\\.[a-z]{3}");
+    // ids handed out before the store was content-addressed; those files sit in the root directory
+    private static final Pattern RANDOM_ID_PATTERN = Pattern.compile("[0-9a-f]{32}\\.[a-z]{3}");
+
+    private final Path root;
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    /**
+     * @param root The directory to keep images in; created if missing.
+     * @throws IOException if the directory cannot be created.
+     */
+    public ImageStore(Path root) throws IOException {
+        this.root = Files.createDirectories(root);
+    }
+
+    /**
+     * Writes an image to the store, unless the same bytes are already there.
+     * @param data The image bytes.
+     * @param type The image's type, which decides its extension.
+     * @return The image's id.
+     * @throws IOException if the file cannot be written.
+     */
+    public String save(byte[] data, ImageType type) throws IOException {
+        String id = sha256(data) + "." + type.getExtension();
+        Path target = pathOf(id);
+        if (Files.isRegularFile(target)) {
+            deduplicated.incrementAndGet();
+            return id;
+        }
+
+        write(target, data);
+        stored.incrementAndGet();
+        return id;
+    }
+
+    /**
+     * Writes a resized copy of a stored image, replacing any earlier one.
+     * @param id   The original image's id.
+     * @param size The variant's size.
+     * @param data The variant's bytes, in the original's format.
+     * @return The variant's id.
+     * @throws IOException if the file cannot be written.
+     * @throws IllegalArgumentException if the original's id cannot have variants.
+     */
+    public String saveVariant(String id, int size, byte[] data) throws IOException {
+        String variantId = variantId(id, size);
+        if (variantId == null) {
+            throw new IllegalArgumentException("Image " + id + " cannot have variants.");
+        }
+        write(pathOf(variantId), data);
+        return variantId;
+    }
+
+    /**
+     * @param id An image id, as returned by {@link #save}.
+     * @return The image's file, or null if the id is malformed or no such image exists.
+     */
+    public Path locate(String id) {
+        if (!isValidId(id)) {
+            return null;
+        }
+        Path file = pathOf(id);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * @return How many distinct images have been written since startup.
+     */
+    public long getStored() {
+        return stored.get();
+    }
+
+    /**
+     * @return How many saves found their image already stored since startup.
+     */
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    /**
+     * @param id An image id.
+     * @return The image's type, taken from the id's extension, or null if it has none.
+     */
+    public static ImageType typeOf(String id) {
+        int dot = id.lastIndexOf('.');
+        return dot < 0 ? null : ImageType.fromExtension(id.substring(dot + 1));
+    }
+
+    /**
+     * @param id   An image id.
+     * @param size The variant's size.
+     * @return The id of the image's variant of that size, or null if the image
+     * predates content addressing or is a variant itself.
+     */
+    public static String variantId(String id, int size) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+        int dot = id.lastIndexOf('.');
+        return id.substring(0, dot) + "-" + size + id.substring(dot);
+    }
+
+    /**
+     * @param id A variant id, as returned by {@link #variantId}.
+     * @return The id of the image it was made from, or null if the id is not a variant's.
+     */
+    public static String originalOf(String id) {
+        if (id == null || !VARIANT_ID_PATTERN.matcher(id).matches()) {
+            return null;
+        }
+        return id.substring(0, id.indexOf('-')) + id.substring(id.lastIndexOf('.'));
+    }
+
+    /**
+     * @param id A string that may be an image id.
+     * @return true if it has the form of an id this store hands out.
+     */
+    public static boolean isValidId(String id) {
+        return id != null
+                && (ID_PATTERN.matcher(id).matches() || VARIANT_ID_PATTERN.matcher(id).matches()
+                        || RANDOM_ID_PATTERN.matcher(id).matches())
+                && typeOf(id) != null;
+    }
+
+    private Path pathOf(String id) {
+        if (RANDOM_ID_PATTERN.matcher(id).matches()) {
+            return root.resolve(id);
+        }
+        return root.resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    private static void write(Path target, byte[] data) throws IOException {
+        Path directory = Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            // if another writer of the same image won the race, its file has the same bytes
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+}
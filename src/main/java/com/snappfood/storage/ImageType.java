@@ -0,0 +1,74 @@
+package com.snappfood.storage;
+
+/**
+ * The image formats accepted for upload, recognised by their leading bytes
+ * rather than by anything the client claims.
+ */
+public enum ImageType {
+    PNG("image/png", "png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+    JPEG("image/jpeg", "jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    GIF("image/gif", "gif", new byte[]{'G', 'I', 'F', '8'}),
+    BMP("image/bmp", "bmp", new byte[]{'B', 'M'});
+
+    private final String contentType;
+    private final String extension;
+    private final byte[] magic;
+
+    ImageType(String contentType, String extension, byte[] magic) {
+        this.contentType = contentType;
+        this.extension = extension;
+        this.magic = magic;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return The file extension used for stored images of this type, without the dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param data The first bytes of a file, or all of it.
+     * @return The type whose signature the data starts with, or null if none matches.
+     */
+    public static ImageType sniff(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        for (ImageType type : values()) {
+            if (startsWith(data, type.magic)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param extension A file extension without the dot.
+     * @return The matching type, or null if there is none.
+     */
+    public static ImageType fromExtension(String extension) {
+        for (ImageType type : values()) {
+            if (type.extension.equals(extension)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.snappfood.storage;
+
+import com.snappfood.exception.InvalidInputException;
+
+/**
+ * Checks uploaded images against the server's limits using only their first
+ * bytes and header: the byte size, the type's signature and the dimensions.
+ * No pixels are decoded here; an image is only decoded where its pixels are
+ * needed, by the {@link ThumbnailGenerator}.
+ */
+public class ImageValidator {
+
+    private final int maxBytes;
+    private final int maxWidth;
+    private final int maxHeight;
+
+    /**
+     * @param maxBytes  The largest accepted file.
+     * @param maxWidth  The widest accepted image, in pixels.
+     * @param maxHeight The tallest accepted image, in pixels.
+     */
+    public ImageValidator(int maxBytes, int maxWidth, int maxHeight) {
+        this.maxBytes = maxBytes;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Checks an image using only its header.
+     * @param data The image bytes.
+     * @return The image's type and size.
+     * @throws InvalidInputException if the image is empty, too large or not a supported image.
+     */
+    public ImageInfo checkHeader(byte[] data) throws InvalidInputException {
+        if (data == null || data.length == 0) {
+            throw new InvalidInputException("The image is empty.");
+        }
+        if (data.length > maxBytes) {
+            throw new InvalidInputException("The image must not be larger than " + maxBytes + " bytes.");
+        }
+        ImageInfo info = ImageInfo.read(data);
+        if (info == null) {
+            throw new InvalidInputException("The image must be a PNG, JPEG, GIF or BMP image.");
+        }
+        if (info.getWidth() > maxWidth || info.getHeight() > maxHeight) {
+            throw new InvalidInputException("The image must not be larger than " + maxWidth + "x" + maxHeight + " pixels.");
+        }
+        return info;
+    }
+
+    /**
+     * @param data The image bytes, or null.
+     * @return true if the image passes {@link #checkHeader}.
+     */
+    public boolean isAcceptable(byte[] data) {
+        try {
+            checkHeader(data);
+            return true;
+        } catch (InvalidInputException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.snappfood.storage;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes the fixed-size thumbnails of catalog images that list endpoints point
+ * at, so a client showing fifty restaurants downloads fifty small images
+ * rather than fifty full ones. Thumbnails are made off the request path, on
+ * the {@link ImageDecoder}'s bounded pool, and stored as variants of the
+ * original in the {@link ImageStore}.
+ * <p>
+ * Making a thumbnail is best effort: when the pool is saturated the work is
+ * dropped, and the thumbnail is made later, the first time it is asked for.
+ */
+public class ThumbnailGenerator {
+
+    /** The size of the thumbnails shown next to restaurants in lists. */
+    public static final int SMALL = 64;
+    /** The size of the thumbnails shown next to food items in lists. */
+    public static final int MEDIUM = 256;
+
+    private static final int[] SIZES = {SMALL, MEDIUM};
+
+    private final ImageStore store;
+    private final ImageDecoder decoder;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param store   Where originals are read from and thumbnails written to.
+     * @param decoder Whose pool the work runs on.
+     */
+    public ThumbnailGenerator(ImageStore store, ImageDecoder decoder) {
+        this.store = store;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Queues the thumbnails of a newly saved image, decoding it on the pool.
+     * Uploads are only checked by their header, so this is the first time the
+     * image is decoded; one that turns out to be damaged just gets no thumbnails.
+     * @param id   The image's id.
+     * @param data The image bytes, so they need not be read back from the store.
+     */
+    public void generate(String id, byte[] data) {
+        submit(id, () -> read(data));
+    }
+
+    /**
+     * Queues the thumbnails of a stored image that has none yet, reading and
+     * decoding it on the pool.
+     * @param id The image's id.
+     */
+    public void generateMissing(String id) {
+        submit(id, () -> {
+            Path file = store.locate(id);
+            if (file == null) {
+                return null;
+            }
+            return read(Files.readAllBytes(file));
+        });
+    }
+
+    /**
+     * @return How many thumbnails have been written since startup.
+     */
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    /**
+     * @return How many images were skipped because the pool was saturated.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return How many images could not be read or their thumbnails written.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void submit(String id, PixelSource source) {
+        ImageType type = ImageStore.typeOf(id);
+        if (type == null || ImageStore.variantId(id, SMALL) == null || !pending.add(id)) {
+            return;
+        }
+        try {
+            decoder.execute(() -> {
+                try {
+                    BufferedImage pixels = source.read();
+                    if (pixels == null) {
+                        failed.incrementAndGet();
+                        return;
+                    }
+                    for (int size : SIZES) {
+                        if (store.locate(ImageStore.variantId(id, size)) == null) {
+                            store.saveVariant(id, size, encode(scale(pixels, size, type), type));
+                            generated.incrementAndGet();
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                } finally {
+                    pending.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(id);
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Shrinks an image to fit a square of the given size, keeping its aspect
+     * ratio; a smaller image keeps its size. Large reductions are done by
+     * halving in steps, since a single bilinear pass over many source pixels
+     * per target pixel leaves the result aliased.
+     */
+    private static BufferedImage scale(BufferedImage source, int size, ImageType type) {
+        double ratio = Math.min(1.0, Math.min((double) size / source.getWidth(), (double) size / source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        boolean opaque = type == ImageType.JPEG || type == ImageType.BMP;
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height, opaque);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, boolean opaque) {
+        BufferedImage target = new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (opaque) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, width, height);
+            }
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private static BufferedImage read(byte[] data) throws IOException {
+        // ImageIO closes the stream itself when given one
+        return ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static byte[] encode(BufferedImage image, ImageType type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, type.getExtension(), out)) {
+            throw new IOException("No writer for " + type.getExtension() + " images.");
+        }
+        return out.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface PixelSource {
+        BufferedImage read() throws IOException;
+    }
+}
@@ -0,0 +1,122 @@
+package com.snappfood.ratelimit;
+
+import com.snappfood.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterRegistryTest {
+
+    private final RateLimiterRegistry registry = new RateLimiterRegistry();
+
+    @Test
+    void limitsEachClientSeparately() {
+        RateLimitPolicy policy = new RateLimitPolicy("POST /a", 2, Duration.ofHours(1), "Slow down.");
+
+        assertTrue(registry.tryAcquire(policy, 1));
+        assertTrue(registry.tryAcquire(policy, 1));
+        assertFalse(registry.tryAcquire(policy, 1));
+        assertTrue(registry.tryAcquire(policy, 2));
+    }
+
+    @Test
+    void limitsEachPolicySeparately() {
+        RateLimitPolicy a = new RateLimitPolicy("POST /a", 1, Duration.ofHours(1), "a");
+        RateLimitPolicy b = new RateLimitPolicy("POST /b", 1, Duration.ofHours(1), "b");
+
+        assertTrue(registry.tryAcquire(a, 1));
+        assertTrue(registry.tryAcquire(b, 1));
+        assertFalse(registry.tryAcquire(a, 1));
+    }
+
+    @Test
+    void acquireThrowsThePolicyMessage() throws Exception {
+        RateLimitPolicy policy = new RateLimitPolicy("POST /a", 1, Duration.ofHours(1), "Only one per hour.");
+        registry.acquire(policy, "k");
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class, () -> registry.acquire(policy, "k"));
+        assertEquals("Only one per hour.", e.getMessage());
+    }
+
+    @Test
+    void reportsBucketsAndRefusalsPerPolicy() {
+        RateLimitPolicy policy = new RateLimitPolicy("POST /a", 1, Duration.ofHours(1), "m");
+        for (int key = 0; key < 3; key++) {
+            registry.tryAcquire(policy, key);
+            registry.tryAcquire(policy, key);
+        }
+
+        Map<String, long[]> seen = new HashMap<>();
+        registry.forEachPolicy((p, buckets, refused) -> seen.put(p.getRoute(), new long[]{buckets, refused}));
+        assertEquals(1, seen.size());
+        assertEquals(3, seen.get("POST /a")[0]);
+        assertEquals(3, seen.get("POST /a")[1]);
+    }
+
+    @Test
+    void allowsExactlyCapacityUnderContention() throws Exception {
+        int capacity = 10_000;
+        RateLimitPolicy policy = new RateLimitPolicy("POST /a", capacity, Duration.ofHours(1), "m");
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < capacity / 4; i++) {
+                    if (registry.tryAcquire(policy, "shared")) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(capacity, allowed.get());
+    }
+
+    @Test
+    void dropsBucketsOnceTheyAreFullAgain() throws Exception {
+        // each bucket is full again 100 ms after its one call
+        RateLimitPolicy policy = new RateLimitPolicy("POST /a", 1, Duration.ofMillis(100), "m");
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(registry.tryAcquire(policy, key));
+        }
+
+        // sweeps run on the request path, once per second
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (registry.getEvicted() < 1000 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            registry.tryAcquire(policy, "sweeper");
+        }
+
+        assertTrue(registry.getEvicted() >= 1000, "evicted " + registry.getEvicted());
+        long[] buckets = new long[1];
+        registry.forEachPolicy((p, count, refused) -> buckets[0] = count);
+        assertTrue(buckets[0] <= 1, "buckets left: " + buckets[0]);
+
+        // a dropped client starts again with a full bucket
+        assertTrue(registry.tryAcquire(policy, 0));
+        assertFalse(registry.tryAcquire(policy, 0));
+    }
+}
@@ -0,0 +1,88 @@
+package com.snappfood.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    // 5 calls at once, then one more every 200 ms
+    private static final RateLimitPolicy POLICY = new RateLimitPolicy("POST /test", 5, Duration.ofSeconds(1), "Slow down.");
+
+    @Test
+    void allowsABurstOfCapacityThenRefuses() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(POLICY, "k", now);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(TokenBucket.TAKEN, bucket.tryTake(now));
+        }
+        assertEquals(TokenBucket.REFUSED, bucket.tryTake(now));
+    }
+
+    @Test
+    void refillsOneTokenPerPeriodOverCapacity() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(POLICY, "k", now);
+        for (int i = 0; i < 5; i++) {
+            bucket.tryTake(now);
+        }
+
+        assertEquals(TokenBucket.REFUSED, bucket.tryTake(now + SECOND / 5 - 1));
+        assertEquals(TokenBucket.TAKEN, bucket.tryTake(now + SECOND / 5));
+        assertEquals(TokenBucket.REFUSED, bucket.tryTake(now + SECOND / 5));
+    }
+
+    @Test
+    void idleTimeDoesNotBankMoreThanABurst() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(POLICY, "k", now);
+        long later = now + 60 * SECOND;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(TokenBucket.TAKEN, bucket.tryTake(later));
+        }
+        assertEquals(TokenBucket.REFUSED, bucket.tryTake(later));
+    }
+
+    @Test
+    void handlesNanoTimeWrappingPastZero() {
+        long now = Long.MAX_VALUE - SECOND / 10;
+        TokenBucket bucket = new TokenBucket(POLICY, "k", now);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(TokenBucket.TAKEN, bucket.tryTake(now));
+        }
+        assertEquals(TokenBucket.REFUSED, bucket.tryTake(now));
+
+        // 200 ms later, past the wrap
+        assertEquals(TokenBucket.TAKEN, bucket.tryTake(now + SECOND / 5));
+    }
+
+    @Test
+    void onlyAFullBucketIsRetired() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(POLICY, "k", now);
+        bucket.tryTake(now);
+
+        assertFalse(bucket.retireIfFull(now + SECOND / 5 - 1));
+        assertFalse(bucket.isRetired());
+        assertTrue(bucket.retireIfFull(now + SECOND / 5));
+        assertTrue(bucket.isRetired());
+
+        assertEquals(TokenBucket.RETIRED, bucket.tryTake(now + SECOND));
+        assertFalse(bucket.retireIfFull(now + SECOND));
+    }
+
+    @Test
+    void policyRejectsNonPositiveSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitPolicy("r", 0, Duration.ofSeconds(1), "m"));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitPolicy("r", 1, Duration.ZERO, "m"));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitPolicy("r", 1, Duration.ofSeconds(-1), "m"));
+    }
+}
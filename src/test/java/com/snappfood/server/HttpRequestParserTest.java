@@ -0,0 +1,179 @@
+package com.snappfood.server;
+
+import com.snappfood.exception.MalformedRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpRequestParserTest {
+
+    private static final String POST = "POST /orders?vendor=7&x HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: 11\r\n"
+            + "\r\n"
+            + "{\"a\":\"bcd\"}";
+
+    private final HttpRequestParser parser = new HttpRequestParser(1024, 64);
+
+    @Test
+    void parsesRequestInOneRead() throws Exception {
+        HttpRequest request = parser.parse(buffer(POST));
+
+        assertNotNull(request);
+        assertEquals("POST", request.getMethod());
+        assertEquals("/orders", request.getPath());
+        assertEquals("vendor=7&x", request.getQuery());
+        assertEquals("HTTP/1.1", request.getVersion());
+        assertEquals("application/json", request.getHeader("content-type"));
+        assertEquals("{\"a\":\"bcd\"}", request.getBodyAsString());
+        assertFalse(parser.isMidRequest());
+    }
+
+    @Test
+    void parsesRequestFedOneByteAtATime() throws Exception {
+        byte[] bytes = POST.getBytes(StandardCharsets.ISO_8859_1);
+        HttpRequest request = null;
+        for (int i = 0; i < bytes.length; i++) {
+            assertNull(request, "completed early at byte " + i);
+            request = parser.parse(ByteBuffer.wrap(bytes, i, 1));
+            if (request == null) {
+                assertTrue(parser.isMidRequest());
+            }
+        }
+
+        assertNotNull(request);
+        assertEquals("/orders", request.getPath());
+        assertEquals("{\"a\":\"bcd\"}", request.getBodyAsString());
+    }
+
+    @Test
+    void tracksBodyWhenSplitBetweenHeadersAndBody() throws Exception {
+        int headerEnd = POST.indexOf("\r\n\r\n") + 4;
+
+        assertNull(parser.parse(buffer(POST.substring(0, headerEnd + 3))));
+        assertTrue(parser.isReadingBody());
+        assertEquals(11, parser.getBodyLength());
+
+        HttpRequest request = parser.parse(buffer(POST.substring(headerEnd + 3)));
+        assertNotNull(request);
+        assertEquals("{\"a\":\"bcd\"}", request.getBodyAsString());
+        assertFalse(parser.isReadingBody());
+    }
+
+    @Test
+    void splitCrLfIsNotPartOfTheValue() throws Exception {
+        assertNull(parser.parse(buffer("GET /vendors HTTP/1.1\r\nHost: a\r")));
+        HttpRequest request = parser.parse(buffer("\n\r\n"));
+
+        assertNotNull(request);
+        assertEquals("a", request.getHeader("host"));
+    }
+
+    @Test
+    void leavesPipelinedRequestsInTheBuffer() throws Exception {
+        ByteBuffer in = buffer("GET /a HTTP/1.1\r\nHost: x\r\n\r\n" + POST + "\r\nGET /c HTTP/1.1\r\n\r\n");
+
+        HttpRequest first = parser.parse(in);
+        assertEquals("/a", first.getPath());
+        assertTrue(in.hasRemaining());
+
+        HttpRequest second = parser.parse(in);
+        assertEquals("/orders", second.getPath());
+        assertEquals("{\"a\":\"bcd\"}", second.getBodyAsString());
+
+        // an empty line between pipelined requests is skipped
+        HttpRequest third = parser.parse(in);
+        assertEquals("/c", third.getPath());
+        assertNull(third.getHeader("host"));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void mergesRepeatedHeadersAndLowerCasesNames() throws Exception {
+        HttpRequest request = parser.parse(buffer("GET / HTTP/1.1\r\nAccept: a\r\nACCEPT:  b \r\nX-Custom: c\r\n\r\n"));
+
+        assertEquals("a, b", request.getHeader("accept"));
+        assertEquals("c", request.getHeader("x-custom"));
+    }
+
+    @Test
+    void requestLineWithoutVersionIsHttp10() throws Exception {
+        HttpRequest request = parser.parse(buffer("GET /vendors\r\n\r\n"));
+
+        assertEquals("HTTP/1.0", request.getVersion());
+        assertEquals("/vendors", request.getPath());
+    }
+
+    @Test
+    void rejectsHeadersOverTheLimitSpreadOverManyReads() throws Exception {
+        assertNull(parser.parse(buffer("GET / HTTP/1.1\r\n")));
+        String header = "X-Filler: " + "a".repeat(100) + "\r\n";
+        MalformedRequestException e = assertThrows(MalformedRequestException.class, () -> {
+            for (int i = 0; i < 20; i++) {
+                parser.parse(buffer(header));
+            }
+        });
+        assertEquals(431, e.getStatusCode());
+    }
+
+    @Test
+    void rejectsSingleLineOverTheLimitBeforeItEnds() {
+        MalformedRequestException e = assertThrows(MalformedRequestException.class,
+                () -> parser.parse(buffer("GET /" + "a".repeat(2000))));
+        assertEquals(431, e.getStatusCode());
+    }
+
+    @Test
+    void rejectsBodyOverTheLimit() {
+        MalformedRequestException e = assertThrows(MalformedRequestException.class,
+                () -> parser.parse(buffer("POST / HTTP/1.1\r\nContent-Length: 65\r\n\r\n")));
+        assertEquals(413, e.getStatusCode());
+    }
+
+    @Test
+    void rejectsBadContentLength() {
+        for (String value : new String[]{"-1", "ten"}) {
+            MalformedRequestException e = assertThrows(MalformedRequestException.class,
+                    () -> new HttpRequestParser(1024, 64).parse(buffer("POST / HTTP/1.1\r\nContent-Length: " + value + "\r\n\r\n")));
+            assertEquals(400, e.getStatusCode());
+        }
+    }
+
+    @Test
+    void rejectsChunkedRequestBodies() {
+        MalformedRequestException e = assertThrows(MalformedRequestException.class,
+                () -> parser.parse(buffer("POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n")));
+        assertEquals(501, e.getStatusCode());
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        assertEquals(400, assertThrows(MalformedRequestException.class,
+                () -> new HttpRequestParser(1024, 64).parse(buffer(" / HTTP/1.1\r\n"))).getStatusCode());
+        assertEquals(400, assertThrows(MalformedRequestException.class,
+                () -> new HttpRequestParser(1024, 64).parse(buffer("GET / HTTP/1.1\r\nno colon\r\n"))).getStatusCode());
+    }
+
+    @Test
+    void binaryBodyIsCopiedUnchanged() throws Exception {
+        byte[] head = "PUT /auth/profile/image HTTP/1.1\r\nContent-Length: 4\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = {(byte) 0x89, 'P', '\r', '\n'};
+        ByteBuffer in = ByteBuffer.allocate(head.length + body.length).put(head).put(body).flip();
+
+        assertArrayEquals(body, parser.parse(in).getBody());
+    }
+
+    private static ByteBuffer buffer(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
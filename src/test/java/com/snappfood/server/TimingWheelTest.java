@@ -0,0 +1,128 @@
+package com.snappfood.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long TICK_MS = 100;
+    private static final int SLOTS = 8; // one turn is 800 ms
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, SLOTS, 0);
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    void firesOnTheFirstTickAtLeastTheDelayAway() {
+        wheel.schedule(new TimingWheel.Timeout<>("a"), 250);
+
+        assertEquals(0, wheel.advance(299, expired::add));
+        assertEquals(1, wheel.advance(300, expired::add));
+        assertEquals(List.of("a"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void zeroDelayStillWaitsOneTick() {
+        wheel.schedule(new TimingWheel.Timeout<>("a"), 0);
+
+        assertEquals(0, wheel.advance(99, expired::add));
+        assertEquals(1, wheel.advance(100, expired::add));
+    }
+
+    @Test
+    void timeoutsBeyondOneTurnWaitForTheirRound() {
+        TimingWheel.Timeout<String> far = new TimingWheel.Timeout<>("far");
+        // lands in the same slot as a 200 ms timeout, two turns later
+        wheel.schedule(far, 200 + 2 * SLOTS * TICK_MS);
+        wheel.schedule(new TimingWheel.Timeout<>("near"), 200);
+
+        wheel.advance(200, expired::add);
+        assertEquals(List.of("near"), expired);
+        assertTrue(far.isScheduled());
+
+        wheel.advance(200 + SLOTS * TICK_MS, expired::add);
+        assertEquals(List.of("near"), expired);
+
+        wheel.advance(200 + 2 * SLOTS * TICK_MS, expired::add);
+        assertEquals(List.of("near", "far"), expired);
+    }
+
+    @Test
+    void cancelledTimeoutNeverFires() {
+        TimingWheel.Timeout<String> a = new TimingWheel.Timeout<>("a");
+        TimingWheel.Timeout<String> b = new TimingWheel.Timeout<>("b");
+        TimingWheel.Timeout<String> c = new TimingWheel.Timeout<>("c");
+        wheel.schedule(a, 100);
+        wheel.schedule(b, 100);
+        wheel.schedule(c, 100);
+
+        // unlink from the middle of the slot's list, then cancel twice
+        wheel.cancel(b);
+        wheel.cancel(b);
+        assertFalse(b.isScheduled());
+        assertEquals(2, wheel.size());
+
+        wheel.advance(100, expired::add);
+        assertEquals(2, expired.size());
+        assertFalse(expired.contains("b"));
+    }
+
+    @Test
+    void reschedulingMovesTheDeadline() {
+        TimingWheel.Timeout<String> a = new TimingWheel.Timeout<>("a");
+        wheel.schedule(a, 100);
+        wheel.schedule(a, 500);
+        assertEquals(1, wheel.size());
+
+        assertEquals(0, wheel.advance(400, expired::add));
+        assertEquals(1, wheel.advance(500, expired::add));
+    }
+
+    @Test
+    void callbackMayRescheduleTheExpiredTimeout() {
+        TimingWheel.Timeout<String> a = new TimingWheel.Timeout<>("a");
+        wheel.schedule(a, 100);
+
+        wheel.advance(100, owner -> {
+            expired.add(owner);
+            wheel.schedule(a, 100);
+        });
+        assertEquals(1, expired.size());
+        assertTrue(a.isScheduled());
+
+        wheel.advance(200, expired::add);
+        assertEquals(2, expired.size());
+    }
+
+    @Test
+    void longStallExpiresEverythingDueExactlyOnce() {
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(new TimingWheel.Timeout<>("t" + i), i * TICK_MS);
+        }
+        TimingWheel.Timeout<String> later = new TimingWheel.Timeout<>("later");
+        wheel.schedule(later, 10_000);
+
+        // many turns at once
+        assertEquals(20, wheel.advance(5_000, expired::add));
+        assertEquals(20, expired.size());
+        assertTrue(later.isScheduled());
+        assertEquals(1, wheel.size());
+
+        assertEquals(1, wheel.advance(10_000, expired::add));
+    }
+
+    @Test
+    void timeGoingBackwardsDoesNothing() {
+        wheel.schedule(new TimingWheel.Timeout<>("a"), 100);
+        wheel.advance(50, expired::add);
+
+        assertEquals(0, wheel.advance(0, expired::add));
+        assertEquals(1, wheel.size());
+    }
+}
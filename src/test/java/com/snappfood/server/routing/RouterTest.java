@@ -0,0 +1,126 @@
+package com.snappfood.server.routing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RouterTest {
+
+    private final Router<String> router = new Router<String>()
+            .add("GET", "/orders/history", "history")
+            .add("GET", "/orders/{id:int}", "order")
+            .add("PUT", "/orders/{id:int}", "update order")
+            .add("GET", "/restaurants/{id:int}/menu/{title}", "menu")
+            .add("GET", "/restaurants/mine/menu/special", "special")
+            .add("GET", "/images/{name}", "image");
+
+    private final RouteMatch<String> match = new RouteMatch<>();
+
+    @Test
+    void literalSegmentWinsOverVariable() {
+        assertEquals(RouteMatch.Status.FOUND, router.match("GET", "/orders/history", match));
+        assertEquals("history", match.getHandler());
+        assertEquals("/orders/history", match.getTemplate());
+
+        router.match("GET", "/orders/42", match);
+        assertEquals("order", match.getHandler());
+        assertEquals(42, match.getInt("id"));
+    }
+
+    @Test
+    void backtracksToTheVariableWhenTheLiteralBranchDeadEnds() {
+        // "mine" is a literal child of /restaurants, but only /menu/special hangs off it
+        router.match("GET", "/restaurants/mine/menu/special", match);
+        assertEquals("special", match.getHandler());
+
+        assertEquals(RouteMatch.Status.BAD_PARAMETER, router.match("GET", "/restaurants/mine/menu/drinks", match));
+    }
+
+    @Test
+    void readsSeveralVariables() {
+        router.match("GET", "/restaurants/7/menu/Lunch%20Specials", match);
+
+        assertEquals("menu", match.getHandler());
+        assertEquals(7, match.getInt("id"));
+        assertEquals("Lunch%20Specials", match.getString("title"));
+        assertEquals("7", match.getString("id"));
+    }
+
+    @Test
+    void malformedIntIsBadParameter() {
+        assertEquals(RouteMatch.Status.BAD_PARAMETER, router.match("GET", "/orders/abc", match));
+        assertEquals(RouteMatch.Status.BAD_PARAMETER, router.match("GET", "/orders/-1", match));
+        // too large for an int
+        assertEquals(RouteMatch.Status.BAD_PARAMETER, router.match("GET", "/orders/2147483648", match));
+        assertEquals(RouteMatch.Status.FOUND, router.match("GET", "/orders/2147483647", match));
+        assertEquals(Integer.MAX_VALUE, match.getInt("id"));
+    }
+
+    @Test
+    void emptySegmentIsNotFoundRatherThanBadParameter() {
+        assertEquals(RouteMatch.Status.NOT_FOUND, router.match("GET", "/orders/", match));
+        assertEquals(RouteMatch.Status.NOT_FOUND, router.match("GET", "/images/", match));
+    }
+
+    @Test
+    void unknownPathsAreNotFound() {
+        assertEquals(RouteMatch.Status.NOT_FOUND, router.match("GET", "/nope", match));
+        assertEquals(RouteMatch.Status.NOT_FOUND, router.match("GET", "/orders/1/extra", match));
+        assertEquals(RouteMatch.Status.NOT_FOUND, router.match("GET", "/orders", match));
+        assertEquals(RouteMatch.Status.NOT_FOUND, router.match("GET", "", match));
+        assertEquals(RouteMatch.Status.NOT_FOUND, router.match("GET", "orders/1", match));
+        assertNull(match.getHandler());
+    }
+
+    @Test
+    void wrongMethodIsMethodNotAllowedWithAllowList() {
+        assertEquals(RouteMatch.Status.METHOD_NOT_ALLOWED, router.match("DELETE", "/orders/5", match));
+        assertEquals("GET, PUT", match.getAllowedMethods());
+        assertNull(match.getHandler());
+
+        assertEquals(RouteMatch.Status.METHOD_NOT_ALLOWED, router.match("BREW", "/orders/5", match));
+    }
+
+    @Test
+    void reusedMatchDoesNotKeepTheLastResult() {
+        router.match("GET", "/restaurants/7/menu/a", match);
+        router.match("GET", "/nope", match);
+
+        assertEquals(RouteMatch.Status.NOT_FOUND, match.getStatus());
+        assertNull(match.getTemplate());
+        assertThrows(IllegalArgumentException.class, () -> match.getInt("id"));
+    }
+
+    @Test
+    void findsEveryLiteralAmongManySiblings() {
+        Router<Integer> wide = new Router<>();
+        for (int i = 0; i < 100; i++) {
+            wide.add("GET", "/a/s" + i, i);
+        }
+        RouteMatch<Integer> result = new RouteMatch<>();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(RouteMatch.Status.FOUND, wide.match("GET", "/a/s" + i, result));
+            assertEquals(i, result.getHandler());
+        }
+        assertEquals(RouteMatch.Status.NOT_FOUND, wide.match("GET", "/a/s100", result));
+        assertEquals(100, wide.getRouteCount());
+    }
+
+    @Test
+    void rejectsConflictingRoutes() {
+        assertThrows(IllegalStateException.class, () -> router.add("GET", "/orders/{id:int}", "again"));
+        assertThrows(IllegalStateException.class, () -> router.add("GET", "/orders/{orderId:int}/items", "renamed"));
+        assertThrows(IllegalStateException.class, () -> router.add("GET", "/orders/{id}/items", "retyped"));
+    }
+
+    @Test
+    void rejectsMalformedTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> router.add("GET", "orders", "x"));
+        assertThrows(IllegalArgumentException.class, () -> router.add("GET", "/a//b", "x"));
+        assertThrows(IllegalArgumentException.class, () -> router.add("GET", "/a/{:int}", "x"));
+        assertThrows(IllegalArgumentException.class, () -> router.add("GET", "/a/{id:uuid}", "x"));
+        assertThrows(IllegalArgumentException.class, () -> router.add("BREW", "/a", "x"));
+    }
+}